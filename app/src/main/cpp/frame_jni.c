@@ -0,0 +1,270 @@
+#include <jni.h>
+
+#include "frame_ops.h"
+
+#define JNI_METHOD(name) Java_com_example_ghostcam_frame_NativeFrameOps_##name
+
+/*
+ * 内核不做边界检查，越界写会直接破坏堆 (Java 实现此时会抛 ArrayIndexOutOfBoundsException)。
+ * 每个入口在取得 critical 指针之前先核对参数和数组长度，不符合时抛 IllegalArgumentException。
+ */
+
+static int fail(JNIEnv *env, const char *message) {
+    jclass cls = (*env)->FindClass(env, "java/lang/IllegalArgumentException");
+    if (cls != NULL) {
+        (*env)->ThrowNew(env, cls, message);
+    }
+    return 0;
+}
+
+static int check_array(JNIEnv *env, jarray array, jlong required, const char *message) {
+    if (array == NULL || (*env)->GetArrayLength(env, array) < required) {
+        return fail(env, message);
+    }
+    return 1;
+}
+
+static int check_buffer(JNIEnv *env, jobject buffer, jlong required) {
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    if (capacity < 0 || capacity < required) {
+        return fail(env, "RGBA buffer too small or not direct");
+    }
+    return 1;
+}
+
+// 查找表中的取值都不能为负，*max 返回最大值；表长度不够时抛异常
+static int lut_max(JNIEnv *env, jintArray lut, jint count, jint *max) {
+    if (!check_array(env, lut, count, "Scale table too short")) {
+        return 0;
+    }
+    jint *values = (*env)->GetPrimitiveArrayCritical(env, lut, NULL);
+    if (values == NULL) {
+        return 0;
+    }
+    jint lo = 0;
+    jint hi = 0;
+    for (jint i = 0; i < count; i++) {
+        if (values[i] < lo) lo = values[i];
+        if (values[i] > hi) hi = values[i];
+    }
+    (*env)->ReleasePrimitiveArrayCritical(env, lut, values, JNI_ABORT);
+    if (lo < 0) {
+        return fail(env, "Negative scale table entry");
+    }
+    *max = hi;
+    return 1;
+}
+
+// 目标平面：dst_height 行、每行 dst_width * channels 字节，行跨度 dst_stride
+static int check_scale(JNIEnv *env, jbyteArray src, jint src_offset, jlong src_reach,
+                       jbyteArray dst, jint dst_offset, jint dst_width, jint dst_height,
+                       jint dst_stride, jint channels) {
+    if (src_offset < 0 || dst_offset < 0 || dst_width < 0 || dst_height < 0 || channels < 1
+            || (jlong) dst_width * channels > dst_stride) {
+        return fail(env, "Invalid scale geometry");
+    }
+    if (dst_width == 0 || dst_height == 0) {
+        return check_array(env, src, 0, "Null source") && check_array(env, dst, 0, "Null destination");
+    }
+    return check_array(env, src, (jlong) src_offset + src_reach, "Source plane too short")
+        && check_array(env, dst, (jlong) dst_offset + (jlong) (dst_height - 1) * dst_stride
+                                 + (jlong) dst_width * channels, "Destination plane too short");
+}
+
+// NV21 源帧和宽高的共同检查
+static int check_nv21(JNIEnv *env, jbyteArray src, jint width, jint height) {
+    if (width <= 0 || height <= 0) {
+        return fail(env, "Invalid frame size");
+    }
+    return check_array(env, src, (jlong) width * height + (jlong) width * (height / 2), "NV21 source too short");
+}
+
+JNIEXPORT void JNICALL
+JNI_METHOD(rgbaToNv21)(JNIEnv *env, jclass clazz, jobject src, jint row_stride,
+                       jint width, jint height, jbyteArray dst,
+                       jint left, jint top, jint right, jint bottom) {
+    if (width <= 0 || height <= 0 || row_stride < (jlong) width * 4
+            || left < 0 || (left & 1) || left > right || right > width
+            || top < 0 || (top & 1) || top > bottom || bottom > height) {
+        fail(env, "Invalid conversion region");
+        return;
+    }
+    if (top == bottom || left == right) {
+        return;
+    }
+    // 区域内最后一行像素也会写一行色度
+    if (!check_buffer(env, src, (jlong) (bottom - 1) * row_stride + (jlong) right * 4)
+            || !check_array(env, dst, (jlong) width * height + (jlong) width * ((bottom + 1) / 2),
+                            "NV21 destination too short")) {
+        return;
+    }
+    const uint8_t *pixels = (*env)->GetDirectBufferAddress(env, src);
+    if (pixels == NULL) {
+        return;
+    }
+    uint8_t *out = (*env)->GetPrimitiveArrayCritical(env, dst, NULL);
+    if (out == NULL) {
+        return;
+    }
+    gc_rgba_to_nv21(pixels, row_stride, width, height, out, left, top, right, bottom);
+    (*env)->ReleasePrimitiveArrayCritical(env, dst, out, 0);
+}
+
+JNIEXPORT void JNICALL
+JNI_METHOD(hashTiles)(JNIEnv *env, jclass clazz, jobject src, jint row_stride,
+                      jint width, jint height, jint tile_width, jint tile_height,
+                      jint first_row, jint last_row, jlongArray hashes) {
+    if (width <= 0 || height <= 0 || tile_width <= 0 || tile_height <= 0
+            || row_stride < (jlong) width * 4 || first_row < 0 || first_row > last_row
+            || last_row > (height + tile_height - 1) / tile_height) {
+        fail(env, "Invalid tile range");
+        return;
+    }
+    if (first_row == last_row) {
+        return;
+    }
+    // 宽度为奇数时每行最后一个 8 字节包含行尾之后的一个像素
+    jint columns = (width + tile_width - 1) / tile_width;
+    if (!check_buffer(env, src, (jlong) (height - 1) * row_stride + (jlong) ((width + 1) / 2) * 8)
+            || !check_array(env, hashes, (jlong) last_row * columns, "Tile hash array too short")) {
+        return;
+    }
+    const uint8_t *pixels = (*env)->GetDirectBufferAddress(env, src);
+    if (pixels == NULL) {
+        return;
+    }
+    uint64_t *out = (*env)->GetPrimitiveArrayCritical(env, hashes, NULL);
+    if (out == NULL) {
+        return;
+    }
+    gc_hash_tiles(pixels, row_stride, width, height, tile_width, tile_height, first_row, last_row, out);
+    (*env)->ReleasePrimitiveArrayCritical(env, hashes, out, 0);
+}
+
+JNIEXPORT void JNICALL
+JNI_METHOD(nv21ToI420)(JNIEnv *env, jclass clazz, jbyteArray src, jint width, jint height,
+                       jbyteArray dst) {
+    if (!check_nv21(env, src, width, height)
+            || !check_array(env, dst, (jlong) width * height + (jlong) (width / 2) * (height / 2) * 2,
+                            "I420 destination too short")) {
+        return;
+    }
+    uint8_t *in = (*env)->GetPrimitiveArrayCritical(env, src, NULL);
+    uint8_t *out = (*env)->GetPrimitiveArrayCritical(env, dst, NULL);
+    if (in != NULL && out != NULL) {
+        gc_nv21_to_i420(in, width, height, out);
+    }
+    if (out != NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, dst, out, 0);
+    }
+    if (in != NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, src, in, JNI_ABORT);
+    }
+}
+
+JNIEXPORT void JNICALL
+JNI_METHOD(nv21ToYv12)(JNIEnv *env, jclass clazz, jbyteArray src, jint width, jint height,
+                       jbyteArray dst, jint y_stride, jint c_stride) {
+    if (!check_nv21(env, src, width, height)) {
+        return;
+    }
+    if (y_stride < width || c_stride < width / 2) {
+        fail(env, "Invalid YV12 stride");
+        return;
+    }
+    if (!check_array(env, dst, (jlong) y_stride * height + (jlong) c_stride * (height / 2) * 2,
+                     "YV12 destination too short")) {
+        return;
+    }
+    uint8_t *in = (*env)->GetPrimitiveArrayCritical(env, src, NULL);
+    uint8_t *out = (*env)->GetPrimitiveArrayCritical(env, dst, NULL);
+    if (in != NULL && out != NULL) {
+        gc_nv21_to_yv12(in, width, height, out, y_stride, c_stride);
+    }
+    if (out != NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, dst, out, 0);
+    }
+    if (in != NULL) {
+        (*env)->ReleasePrimitiveArrayCritical(env, src, in, JNI_ABORT);
+    }
+}
+
+JNIEXPORT void JNICALL
+JNI_METHOD(scaleNearest)(JNIEnv *env, jclass clazz, jbyteArray src, jint src_offset,
+                         jbyteArray dst, jint dst_offset, jint dst_width, jint dst_stride,
+                         jint channels, jintArray cols, jintArray rows) {
+    if (rows == NULL) {
+        fail(env, "Scale table too short");
+        return;
+    }
+    jint dst_height = (*env)->GetArrayLength(env, rows);
+    jint col_max;
+    jint row_max;
+    if (channels != 1 && channels != 2) {
+        fail(env, "Unsupported channel count");
+        return;
+    }
+    if (!lut_max(env, cols, dst_width, &col_max) || !lut_max(env, rows, dst_height, &row_max)
+            || !check_scale(env, src, src_offset, (jlong) row_max + col_max + channels,
+                            dst, dst_offset, dst_width, dst_height, dst_stride, channels)) {
+        return;
+    }
+    int32_t *c = (*env)->GetPrimitiveArrayCritical(env, cols, NULL);
+    int32_t *r = (*env)->GetPrimitiveArrayCritical(env, rows, NULL);
+    uint8_t *in = (*env)->GetPrimitiveArrayCritical(env, src, NULL);
+    uint8_t *out = (*env)->GetPrimitiveArrayCritical(env, dst, NULL);
+    if (c != NULL && r != NULL && in != NULL && out != NULL) {
+        gc_scale_nearest(in + src_offset, out + dst_offset, dst_width, dst_height,
+                         dst_stride, channels, c, r);
+    }
+    if (out != NULL) (*env)->ReleasePrimitiveArrayCritical(env, dst, out, 0);
+    if (in != NULL) (*env)->ReleasePrimitiveArrayCritical(env, src, in, JNI_ABORT);
+    if (r != NULL) (*env)->ReleasePrimitiveArrayCritical(env, rows, r, JNI_ABORT);
+    if (c != NULL) (*env)->ReleasePrimitiveArrayCritical(env, cols, c, JNI_ABORT);
+}
+
+JNIEXPORT void JNICALL
+JNI_METHOD(scaleBilinear)(JNIEnv *env, jclass clazz, jbyteArray src, jint src_offset,
+                          jbyteArray dst, jint dst_offset, jint dst_width, jint dst_stride,
+                          jint channels, jintArray x0, jintArray x1, jintArray fx,
+                          jintArray y0, jintArray y1, jintArray fy) {
+    if (y0 == NULL) {
+        fail(env, "Scale table too short");
+        return;
+    }
+    jint dst_height = (*env)->GetArrayLength(env, y0);
+    jint x0_max, x1_max, y0_max, y1_max, ignored;
+    // 权重表只核对长度，取值不参与寻址
+    if (!lut_max(env, x0, dst_width, &x0_max) || !lut_max(env, x1, dst_width, &x1_max)
+            || !lut_max(env, fx, dst_width, &ignored)
+            || !lut_max(env, y0, dst_height, &y0_max) || !lut_max(env, y1, dst_height, &y1_max)
+            || !lut_max(env, fy, dst_height, &ignored)) {
+        return;
+    }
+    jlong x_max = x0_max > x1_max ? x0_max : x1_max;
+    jlong y_max = y0_max > y1_max ? y0_max : y1_max;
+    if (!check_scale(env, src, src_offset, y_max + x_max + channels,
+                     dst, dst_offset, dst_width, dst_height, dst_stride, channels)) {
+        return;
+    }
+    int32_t *ax0 = (*env)->GetPrimitiveArrayCritical(env, x0, NULL);
+    int32_t *ax1 = (*env)->GetPrimitiveArrayCritical(env, x1, NULL);
+    int32_t *afx = (*env)->GetPrimitiveArrayCritical(env, fx, NULL);
+    int32_t *ay0 = (*env)->GetPrimitiveArrayCritical(env, y0, NULL);
+    int32_t *ay1 = (*env)->GetPrimitiveArrayCritical(env, y1, NULL);
+    int32_t *afy = (*env)->GetPrimitiveArrayCritical(env, fy, NULL);
+    uint8_t *in = (*env)->GetPrimitiveArrayCritical(env, src, NULL);
+    uint8_t *out = (*env)->GetPrimitiveArrayCritical(env, dst, NULL);
+    if (ax0 && ax1 && afx && ay0 && ay1 && afy && in && out) {
+        gc_scale_bilinear(in + src_offset, out + dst_offset, dst_width, dst_height,
+                          dst_stride, channels, ax0, ax1, afx, ay0, ay1, afy);
+    }
+    if (out != NULL) (*env)->ReleasePrimitiveArrayCritical(env, dst, out, 0);
+    if (in != NULL) (*env)->ReleasePrimitiveArrayCritical(env, src, in, JNI_ABORT);
+    if (afy != NULL) (*env)->ReleasePrimitiveArrayCritical(env, fy, afy, JNI_ABORT);
+    if (ay1 != NULL) (*env)->ReleasePrimitiveArrayCritical(env, y1, ay1, JNI_ABORT);
+    if (ay0 != NULL) (*env)->ReleasePrimitiveArrayCritical(env, y0, ay0, JNI_ABORT);
+    if (afx != NULL) (*env)->ReleasePrimitiveArrayCritical(env, fx, afx, JNI_ABORT);
+    if (ax1 != NULL) (*env)->ReleasePrimitiveArrayCritical(env, x1, ax1, JNI_ABORT);
+    if (ax0 != NULL) (*env)->ReleasePrimitiveArrayCritical(env, x0, ax0, JNI_ABORT);
+}
@@ -0,0 +1,218 @@
+#include "frame_ops.h"
+
+#include <string.h>
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#include <arm_neon.h>
+#define GC_NEON 1
+#endif
+
+/*
+ * 标量实现写成便于编译器自动向量化的形式 (x86 上由 -O3 生成 SSE/AVX 代码)，
+ * ARM 上对热点循环另有 NEON 实现。所有路径与 Java 参考实现逐字节一致。
+ */
+
+static inline uint8_t luma(int r, int g, int b) {
+    return (uint8_t) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+}
+
+static inline uint8_t chroma_v(int r, int g, int b) {
+    return (uint8_t) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+}
+
+static inline uint8_t chroma_u(int r, int g, int b) {
+    return (uint8_t) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+}
+
+static void luma_row(const uint8_t *s, uint8_t *d, int width) {
+    int i = 0;
+#ifdef GC_NEON
+    const uint8x8_t cr = vdup_n_u8(66), cg = vdup_n_u8(129), cb = vdup_n_u8(25);
+    const uint16x8_t round = vdupq_n_u16(128);
+    const uint8x8_t offset = vdup_n_u8(16);
+    for (; i + 8 <= width; i += 8) {
+        uint8x8x4_t px = vld4_u8(s + i * 4);
+        uint16x8_t acc = vmlal_u8(vmlal_u8(vmlal_u8(round, px.val[0], cr), px.val[1], cg), px.val[2], cb);
+        vst1_u8(d + i, vadd_u8(vshrn_n_u16(acc, 8), offset));
+    }
+#endif
+    for (; i < width; i++) {
+        const uint8_t *p = s + i * 4;
+        d[i] = luma(p[0], p[1], p[2]);
+    }
+}
+
+static void chroma_row(const uint8_t *s, uint8_t *d, int width) {
+    int i = 0;
+#ifdef GC_NEON
+    const int16x8_t bias = vdupq_n_s16(128);
+    for (; i + 16 <= width; i += 16) {
+        // 16 个像素中取偶数位置的 8 个 (每个 2x2 块的左上角)
+        uint8x16x4_t px = vld4q_u8(s + i * 4);
+        int16x8_t r = vreinterpretq_s16_u16(vmovl_u8(vget_low_u8(vuzpq_u8(px.val[0], px.val[0]).val[0])));
+        int16x8_t g = vreinterpretq_s16_u16(vmovl_u8(vget_low_u8(vuzpq_u8(px.val[1], px.val[1]).val[0])));
+        int16x8_t b = vreinterpretq_s16_u16(vmovl_u8(vget_low_u8(vuzpq_u8(px.val[2], px.val[2]).val[0])));
+
+        // 中间值在 [-28432, 28688] 内，int16 不会溢出；算术右移与 Java 的 >> 一致
+        int16x8_t v = vmlsq_n_s16(vmlsq_n_s16(vmlaq_n_s16(bias, r, 112), g, 94), b, 18);
+        int16x8_t u = vmlaq_n_s16(vmlsq_n_s16(vmlsq_n_s16(bias, r, 38), g, 74), b, 112);
+        uint8x8x2_t vu;
+        vu.val[0] = vqmovun_s16(vaddq_s16(vshrq_n_s16(v, 8), bias));
+        vu.val[1] = vqmovun_s16(vaddq_s16(vshrq_n_s16(u, 8), bias));
+        vst2_u8(d + i, vu);
+    }
+#endif
+    for (; i + 1 < width; i += 2) {
+        const uint8_t *p = s + i * 4;
+        d[i] = chroma_v(p[0], p[1], p[2]);
+        d[i + 1] = chroma_u(p[0], p[1], p[2]);
+    }
+}
+
+void gc_rgba_to_nv21(const uint8_t *src, int row_stride, int width, int height,
+                     uint8_t *dst, int left, int top, int right, int bottom) {
+    int count = right - left;
+    for (int j = top; j < bottom; j++) {
+        luma_row(src + (size_t) j * row_stride + (size_t) left * 4, dst + (size_t) j * width + left, count);
+    }
+    uint8_t *uv = dst + (size_t) width * height;
+    for (int j = top; j < bottom; j += 2) {
+        chroma_row(src + (size_t) j * row_stride + (size_t) left * 4, uv + (size_t) (j >> 1) * width + left, count);
+    }
+}
+
+/*
+ * 每个块的哈希：块内每一像素行按 8 字节 (小端，两个像素) 分给四路累加器 a = (a ^ word) * GC_TILE_PRIME，
+ * 四路互不依赖，乘法延迟可以重叠；行末把四路依次并入该块的哈希。
+ * 外层按像素行遍历，一行内依次更新该行经过的各块，源数据顺序读取。
+ */
+void gc_hash_tiles(const uint8_t *src, int row_stride, int width, int height,
+                   int tile_width, int tile_height, int first_row, int last_row, uint64_t *hashes) {
+    int columns = (width + tile_width - 1) / tile_width;
+    for (int row = first_row; row < last_row; row++) {
+        uint64_t *h = hashes + (size_t) row * columns;
+        for (int c = 0; c < columns; c++) {
+            h[c] = GC_TILE_SEED;
+        }
+        int top = row * tile_height;
+        int bottom = top + tile_height < height ? top + tile_height : height;
+        for (int j = top; j < bottom; j++) {
+            const uint8_t *s = src + (size_t) j * row_stride;
+            for (int c = 0; c < columns; c++) {
+                int x = c * tile_width;
+                int end = x + tile_width < width ? x + tile_width : width;
+                // 四路独立累加，块内第 k 个 8 字节归入第 (k % 4) 路，行末再按顺序合并
+                uint64_t a0 = GC_TILE_SEED, a1 = GC_TILE_SEED, a2 = GC_TILE_SEED, a3 = GC_TILE_SEED;
+                uint64_t word;
+                for (; x + 8 <= end; x += 8) {
+                    const uint8_t *p = s + (size_t) x * 4;
+                    memcpy(&word, p, 8);
+                    a0 = (a0 ^ word) * GC_TILE_PRIME;
+                    memcpy(&word, p + 8, 8);
+                    a1 = (a1 ^ word) * GC_TILE_PRIME;
+                    memcpy(&word, p + 16, 8);
+                    a2 = (a2 ^ word) * GC_TILE_PRIME;
+                    memcpy(&word, p + 24, 8);
+                    a3 = (a3 ^ word) * GC_TILE_PRIME;
+                }
+                for (int k = 0; x < end; x += 2, k++) {
+                    memcpy(&word, s + (size_t) x * 4, 8);
+                    if (k == 0) {
+                        a0 = (a0 ^ word) * GC_TILE_PRIME;
+                    } else if (k == 1) {
+                        a1 = (a1 ^ word) * GC_TILE_PRIME;
+                    } else if (k == 2) {
+                        a2 = (a2 ^ word) * GC_TILE_PRIME;
+                    } else {
+                        a3 = (a3 ^ word) * GC_TILE_PRIME;
+                    }
+                }
+                h[c] = (((((h[c] ^ a0) * GC_TILE_PRIME) ^ a1) * GC_TILE_PRIME ^ a2) * GC_TILE_PRIME ^ a3) * GC_TILE_PRIME;
+            }
+        }
+    }
+}
+
+// 拆分交错的 VU 行
+static void split_vu(const uint8_t *vu, uint8_t *u, uint8_t *v, int pairs) {
+    int i = 0;
+#ifdef GC_NEON
+    for (; i + 16 <= pairs; i += 16) {
+        uint8x16x2_t px = vld2q_u8(vu + i * 2);
+        vst1q_u8(v + i, px.val[0]);
+        vst1q_u8(u + i, px.val[1]);
+    }
+#endif
+    for (; i < pairs; i++) {
+        v[i] = vu[i * 2];
+        u[i] = vu[i * 2 + 1];
+    }
+}
+
+void gc_nv21_to_i420(const uint8_t *src, int width, int height, uint8_t *dst) {
+    size_t y_size = (size_t) width * height;
+    int cw = width / 2;
+    int ch = height / 2;
+    memcpy(dst, src, y_size);
+    uint8_t *u = dst + y_size;
+    uint8_t *v = u + (size_t) cw * ch;
+    for (int j = 0; j < ch; j++) {
+        split_vu(src + y_size + (size_t) j * width, u + (size_t) j * cw, v + (size_t) j * cw, cw);
+    }
+}
+
+void gc_nv21_to_yv12(const uint8_t *src, int width, int height, uint8_t *dst,
+                     int y_stride, int c_stride) {
+    int cw = width / 2;
+    int ch = height / 2;
+    for (int j = 0; j < height; j++) {
+        memcpy(dst + (size_t) j * y_stride, src + (size_t) j * width, width);
+    }
+    const uint8_t *vu = src + (size_t) width * height;
+    uint8_t *v = dst + (size_t) y_stride * height;
+    uint8_t *u = v + (size_t) c_stride * ch;
+    for (int j = 0; j < ch; j++) {
+        split_vu(vu + (size_t) j * width, u + (size_t) j * c_stride, v + (size_t) j * c_stride, cw);
+    }
+}
+
+void gc_scale_nearest(const uint8_t *src, uint8_t *dst, int dst_width, int dst_height,
+                      int dst_stride, int channels, const int32_t *cols, const int32_t *rows) {
+    for (int y = 0; y < dst_height; y++) {
+        const uint8_t *row = src + rows[y];
+        uint8_t *d = dst + (size_t) y * dst_stride;
+        if (channels == 1) {
+            for (int x = 0; x < dst_width; x++) {
+                d[x] = row[cols[x]];
+            }
+        } else {
+            for (int x = 0; x < dst_width; x++) {
+                const uint8_t *s = row + cols[x];
+                d[x * 2] = s[0];
+                d[x * 2 + 1] = s[1];
+            }
+        }
+    }
+}
+
+void gc_scale_bilinear(const uint8_t *src, uint8_t *dst, int dst_width, int dst_height,
+                       int dst_stride, int channels,
+                       const int32_t *x0, const int32_t *x1, const int32_t *fx,
+                       const int32_t *y0, const int32_t *y1, const int32_t *fy) {
+    for (int y = 0; y < dst_height; y++) {
+        const uint8_t *top = src + y0[y];
+        const uint8_t *bottom = src + y1[y];
+        int wy = fy[y];
+        uint8_t *d = dst + (size_t) y * dst_stride;
+        for (int x = 0; x < dst_width; x++) {
+            int wx = fx[x];
+            int l = x0[x];
+            int r = x1[x];
+            for (int c = 0; c < channels; c++) {
+                int t = top[l + c] * (256 - wx) + top[r + c] * wx;
+                int b = bottom[l + c] * (256 - wx) + bottom[r + c] * wx;
+                *d++ = (uint8_t) ((t * (256 - wy) + b * wy + 32768) >> 16);
+            }
+        }
+    }
+}
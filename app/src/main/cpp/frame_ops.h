@@ -0,0 +1,36 @@
+#ifndef GHOSTCAM_FRAME_OPS_H
+#define GHOSTCAM_FRAME_OPS_H
+
+#include <stdint.h>
+
+/*
+ * GhostCam 像素内核。与 com.example.ghostcam.frame 中的 Java 实现逐字节一致，
+ * 不依赖 JNI，便于在主机上单独编译。
+ */
+
+// RGBA_8888 (像素步长 4) -> NV21，只处理 [left, right) x [top, bottom) 区域，left 和 top 必须为偶数
+void gc_rgba_to_nv21(const uint8_t *src, int row_stride, int width, int height,
+                     uint8_t *dst, int left, int top, int right, int bottom);
+
+// 与 TileHashes 中的常量一致
+#define GC_TILE_SEED 0xcbf29ce484222325ULL
+#define GC_TILE_PRIME 0x9e3779b97f4a7c15ULL
+
+// 计算第 [first_row, last_row) 行块的哈希，写入 hashes[row * columns + column]；width 必须为偶数
+void gc_hash_tiles(const uint8_t *src, int row_stride, int width, int height,
+                   int tile_width, int tile_height, int first_row, int last_row, uint64_t *hashes);
+
+void gc_nv21_to_i420(const uint8_t *src, int width, int height, uint8_t *dst);
+
+void gc_nv21_to_yv12(const uint8_t *src, int width, int height, uint8_t *dst,
+                     int y_stride, int c_stride);
+
+void gc_scale_nearest(const uint8_t *src, uint8_t *dst, int dst_width, int dst_height,
+                      int dst_stride, int channels, const int32_t *cols, const int32_t *rows);
+
+void gc_scale_bilinear(const uint8_t *src, uint8_t *dst, int dst_width, int dst_height,
+                       int dst_stride, int channels,
+                       const int32_t *x0, const int32_t *x1, const int32_t *fx,
+                       const int32_t *y0, const int32_t *y1, const int32_t *fy);
+
+#endif
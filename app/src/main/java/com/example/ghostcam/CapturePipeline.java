@@ -0,0 +1,200 @@
+package com.example.ghostcam;
+
+import android.media.Image;
+
+import com.example.ghostcam.frame.DropOldestQueue;
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.RgbaToNv21Converter;
+import com.example.ghostcam.frame.TileHashes;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 屏幕录制的分级流水线：取图 (ImageReader 回调线程) -> 转换 -> 发布，各级在各自的线程上并行。
+ *
+ * 相邻两级之间是有界的 DropOldestQueue，下游跟不上时丢弃最旧的一帧，
+ * 持续吞吐量取决于最慢的一级而不是三级耗时之和。NV21 缓冲区在转换和发布两级之间循环使用。
+ *
+ * 每个缓冲区用 TileHashes 记录自己持有的内容，转换时只重新转换与之不同的块；
+ * 整帧与上一帧相同时不再发布，只按 REFRESH_INTERVAL_NS 定期重发一次。
+ */
+final class CapturePipeline {
+
+    interface FrameSink {
+        void onFrame(byte[] nv21, int width, int height, long ptsUs);
+    }
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    // 缓冲池最多保留的空闲缓冲区个数
+    private static final int MAX_POOLED = 4;
+    // 画面静止时仍然定期重发，保证流传输按帧数计算的关键帧间隔不会无限拉长
+    private static final long REFRESH_INTERVAL_NS = 1_000_000_000L;
+
+    private final RgbaToNv21Converter converter;
+    private final FrameSink sink;
+    private final FrameMetrics metrics = FrameMetrics.get();
+    private final DropOldestQueue<Image> images;
+    private final DropOldestQueue<Buffer> converted;
+    private final ConcurrentLinkedQueue<Buffer> pool = new ConcurrentLinkedQueue<>();
+    // 以下只在转换线程访问：上一帧的块哈希、最近一次送出的时刻、是否有送出的帧被丢弃
+    private TileHashes previous;
+    private long lastSubmitNanos;
+    private boolean republish;
+    private volatile boolean running;
+    private Thread convertThread;
+    private Thread publishThread;
+
+    private static final class Buffer {
+        byte[] data;
+        int width;
+        int height;
+        long ptsUs;
+        // data 当前内容对应的块哈希
+        TileHashes tiles;
+        // 开始转换的时刻，用于统计从转换到发布完成的整体耗时
+        long startNanos;
+    }
+
+    // imageDepth 为取图与转换之间最多排队的 Image 数，加上正在转换的一张不能超过 ImageReader 的 maxImages - 1
+    CapturePipeline(RgbaToNv21Converter converter, FrameSink sink, int imageDepth) {
+        this.converter = converter;
+        this.sink = sink;
+        images = new DropOldestQueue<>(imageDepth, image -> {
+            image.close();
+            metrics.increment(FrameMetrics.Counter.FRAMES_DROPPED);
+        });
+        // offer 只在转换线程调用，被丢弃的帧可能含有变化，下一帧无论是否变化都要发布
+        converted = new DropOldestQueue<>(1, buffer -> {
+            republish = true;
+            recycle(buffer);
+            metrics.increment(FrameMetrics.Counter.FRAMES_DROPPED);
+        });
+    }
+
+    void start() {
+        running = true;
+        convertThread = new Thread(this::convertLoop, "GhostCamConvert");
+        publishThread = new Thread(this::publishLoop, "GhostCamPublish");
+        convertThread.start();
+        publishThread.start();
+    }
+
+    // 在 ImageReader 回调线程调用，Image 的所有权交给流水线
+    void submit(Image image) {
+        if (!running) {
+            image.close();
+            return;
+        }
+        images.offer(image);
+    }
+
+    // 关闭 ImageReader 之前调用：丢弃排队中的 Image，并等待正在转换的那张完成
+    void flush() {
+        images.flush();
+    }
+
+    void stop() {
+        running = false;
+        join(convertThread);
+        join(publishThread);
+        convertThread = null;
+        publishThread = null;
+        images.clear();
+        converted.clear();
+        pool.clear();
+    }
+
+    private void convertLoop() {
+        while (running) {
+            // flush 之前取出、还没开始转换的 Image 由队列的 onDrop 关闭
+            images.process(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS, this::convertImage);
+        }
+    }
+
+    private void convertImage(Image image) {
+        try {
+            Buffer buffer = convert(image);
+            if (buffer != null) {
+                converted.offer(buffer);
+            }
+        } catch (IllegalStateException e) {
+            // ImageReader 已被关闭
+        } finally {
+            image.close();
+        }
+    }
+
+    private Buffer convert(Image image) {
+        long start = System.nanoTime();
+        Image.Plane plane = image.getPlanes()[0];
+        int w = image.getWidth() & ~1;
+        int h = image.getHeight() & ~1;
+        Buffer buffer = obtain(w * h * 3 / 2);
+        // 尺寸变化 (包括面积相同的横竖切换) 后哈希全部作废，整帧重新转换
+        if (buffer.tiles == null || !buffer.tiles.matches(w, h)) {
+            buffer.tiles = new TileHashes(w, h);
+        }
+        if (previous == null || !previous.matches(w, h)) {
+            previous = new TileHashes(w, h);
+        }
+        int changed = converter.convertChanged(plane.getBuffer(), plane.getRowStride(), plane.getPixelStride(),
+                w, h, buffer.data, previous, buffer.tiles);
+        metrics.timer(FrameMetrics.Timer.CAPTURE_CONVERT).recordSince(start);
+        if (changed == 0 && !republish && start - lastSubmitNanos < REFRESH_INTERVAL_NS) {
+            recycle(buffer);
+            metrics.increment(FrameMetrics.Counter.FRAMES_UNCHANGED);
+            return null;
+        }
+        republish = false;
+        lastSubmitNanos = start;
+        buffer.width = w;
+        buffer.height = h;
+        buffer.ptsUs = image.getTimestamp() / 1000;
+        buffer.startNanos = start;
+        return buffer;
+    }
+
+    private void publishLoop() {
+        while (running) {
+            Buffer buffer = converted.take(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (buffer == null) {
+                continue;
+            }
+            sink.onFrame(buffer.data, buffer.width, buffer.height, buffer.ptsUs);
+            metrics.timer(FrameMetrics.Timer.CAPTURE_FRAME).recordSince(buffer.startNanos);
+            recycle(buffer);
+        }
+    }
+
+    // 采集尺寸变化后旧尺寸的缓冲区被丢弃
+    private Buffer obtain(int size) {
+        Buffer buffer;
+        while ((buffer = pool.poll()) != null) {
+            if (buffer.data.length == size) {
+                return buffer;
+            }
+        }
+        buffer = new Buffer();
+        buffer.data = new byte[size];
+        metrics.increment(FrameMetrics.Counter.ALLOCATIONS);
+        return buffer;
+    }
+
+    private void recycle(Buffer buffer) {
+        if (pool.size() < MAX_POOLED) {
+            pool.offer(buffer);
+        }
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.ghostcam;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * GhostCamConfig 配置文件的唯一入口，MainActivity 与 ScreenCaptureService 都从这里打开。
+ *
+ * 文件需要对 hook 进程可读 (HookConfig 通过 XSharedPreferences 读取)，因此优先以 MODE_WORLD_READABLE 打开；
+ * 框架不支持时 (targetSdk 24 起会抛出 SecurityException) 退回 MODE_PRIVATE。
+ * 同一个文件只用一种模式打开，避免一处以私有模式写回后把文件权限改掉。
+ */
+final class ConfigPrefs {
+
+    static final String NAME = "GhostCamConfig";
+
+    private ConfigPrefs() {
+    }
+
+    @SuppressWarnings("deprecation")
+    static SharedPreferences open(Context context) {
+        try {
+            return context.getSharedPreferences(NAME, Context.MODE_WORLD_READABLE);
+        } catch (SecurityException e) {
+            return context.getSharedPreferences(NAME, Context.MODE_PRIVATE);
+        }
+    }
+}
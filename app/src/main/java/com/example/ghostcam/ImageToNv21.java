@@ -0,0 +1,72 @@
+package com.example.ghostcam;
+
+import android.graphics.Rect;
+import android.media.Image;
+
+import com.example.ghostcam.frame.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把解码器输出的 YUV_420_888 Image 按裁剪区域转换为 NV21，兼容任意 rowStride / pixelStride。
+ * 行缓冲在实例内复用，非线程安全。
+ */
+public final class ImageToNv21 {
+
+    private byte[] rowU = new byte[0];
+    private byte[] rowV = new byte[0];
+
+    // 转换结果写入 out 的 data/width/height/length，sequence 由调用方设置
+    public boolean convert(Image image, Frame out) {
+        Rect crop = image.getCropRect();
+        int left = crop != null ? crop.left & ~1 : 0;
+        int top = crop != null ? crop.top & ~1 : 0;
+        int width = (crop != null ? crop.width() : image.getWidth()) & ~1;
+        int height = (crop != null ? crop.height() : image.getHeight()) & ~1;
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        Image.Plane[] planes = image.getPlanes();
+        int frameSize = width * height * 3 / 2;
+        byte[] nv21 = out.ensureCapacity(frameSize);
+
+        ByteBuffer y = planes[0].getBuffer();
+        int yStride = planes[0].getRowStride();
+        for (int row = 0; row < height; row++) {
+            y.position((top + row) * yStride + left);
+            y.get(nv21, row * width, width);
+        }
+
+        ByteBuffer u = planes[1].getBuffer();
+        ByteBuffer v = planes[2].getBuffer();
+        int uStride = planes[1].getRowStride();
+        int vStride = planes[2].getRowStride();
+        int uPixel = planes[1].getPixelStride();
+        int vPixel = planes[2].getPixelStride();
+        int chromaWidth = width / 2;
+        int uRowBytes = (chromaWidth - 1) * uPixel + 1;
+        int vRowBytes = (chromaWidth - 1) * vPixel + 1;
+        if (rowU.length < uRowBytes) {
+            rowU = new byte[uRowBytes];
+        }
+        if (rowV.length < vRowBytes) {
+            rowV = new byte[vRowBytes];
+        }
+        int offset = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            u.position((top / 2 + row) * uStride + (left / 2) * uPixel);
+            u.get(rowU, 0, uRowBytes);
+            v.position((top / 2 + row) * vStride + (left / 2) * vPixel);
+            v.get(rowV, 0, vRowBytes);
+            for (int x = 0; x < chromaWidth; x++) {
+                nv21[offset++] = rowV[x * vPixel];
+                nv21[offset++] = rowU[x * uPixel];
+            }
+        }
+
+        out.width = width;
+        out.height = height;
+        out.length = frameSize;
+        return true;
+    }
+}
@@ -9,28 +9,63 @@ import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.media.projection.MediaProjectionManager;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.DisplayMetrics;
+import android.view.View;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.Spinner;
 import android.widget.Switch;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.ghostcam.frame.FrameRateGovernor;
+import com.example.ghostcam.frame.FrameTransport;
+import com.example.ghostcam.frame.MetricsTable;
+import com.example.ghostcam.frame.ScaleMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class MainActivity extends Activity {
 
     private static final int REQUEST_MEDIA_PROJECTION = 1001;
+    private static final int REQUEST_VIDEO_FILE = 1002;
+    private static final int REQUEST_STILL_IMAGE = 1003;
     private static final String PREFS_NAME = "GhostCamPrefs";
-    private static final String CONFIG_PREFS = "GhostCamConfig";
-
-    private Switch switch1, switch2, switch3;
-    private Spinner appSpinner;
-    private Button selectVideoButton, createGhostCamButton, logoutButton;
+    private static final int[] FPS_OPTIONS = {15, 24, 30, 60};
+    private static final int[] CAPTURE_BUFFER_OPTIONS = {2, 3, 4, 6};
+    // 除 target_package 外额外 hook 的应用，以及按应用覆盖的设置 (pkg.<包名>.<键>)，由 HookConfig 读取
+    private static final String PREF_TARGET_PACKAGES = "target_packages";
+    private static final String PACKAGE_PREFIX = "pkg.";
+    // 按应用的读帧帧率上限和源帧边长上限，0 表示沿用全局设置 (不限)
+    private static final int[] APP_FPS_OPTIONS = {0, 10, 15, 24, 30};
+    private static final int[] APP_SIZE_OPTIONS = {0, 480, 720, 1080};
+    private static final long METRICS_REFRESH_MS = 1000;
+    private static final long METRICS_ACTIVE_MS = 10_000;
+    private static final String METRICS_REPORT_FILE = "ghostcam_metrics.txt";
+
+    private Switch switch1, switch2, switch3, mirrorSwitch;
+    private Spinner appSpinner, scaleModeSpinner, fpsSpinner, transportSpinner, captureBuffersSpinner;
+    private Spinner appFpsSpinner, appSizeSpinner, appScaleModeSpinner;
+    private Button selectVideoButton, playVideoButton, stillImageButton, createGhostCamButton, logoutButton, dumpMetricsButton;
+    private Button addTargetButton, clearTargetsButton;
+    private TextView metricsText, targetPackagesText;
+    private MetricsTable metricsTable;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
 
     private MediaProjectionManager projectionManager;
     private ScreenCaptureService screenCaptureService;
@@ -60,11 +95,7 @@ public class MainActivity extends Activity {
         try {
             setContentView(R.layout.activity_main);
 
-            try {
-                configPrefs = getSharedPreferences(CONFIG_PREFS, MODE_WORLD_READABLE);
-            } catch (SecurityException e) {
-                configPrefs = getSharedPreferences(CONFIG_PREFS, MODE_PRIVATE);
-            }
+            configPrefs = ConfigPrefs.open(this);
             projectionManager = (MediaProjectionManager) getSystemService(Context.MEDIA_PROJECTION_SERVICE);
 
             initViews();
@@ -82,10 +113,25 @@ public class MainActivity extends Activity {
         switch1 = findViewById(R.id.switch1);
         switch2 = findViewById(R.id.switch2);
         switch3 = findViewById(R.id.switch3);
+        mirrorSwitch = findViewById(R.id.mirror_switch);
         appSpinner = findViewById(R.id.app_spinner);
+        scaleModeSpinner = findViewById(R.id.scale_mode_spinner);
+        fpsSpinner = findViewById(R.id.fps_spinner);
+        transportSpinner = findViewById(R.id.transport_spinner);
+        captureBuffersSpinner = findViewById(R.id.capture_buffers_spinner);
+        targetPackagesText = findViewById(R.id.target_packages_text);
+        addTargetButton = findViewById(R.id.add_target_button);
+        clearTargetsButton = findViewById(R.id.clear_targets_button);
+        appFpsSpinner = findViewById(R.id.app_fps_spinner);
+        appSizeSpinner = findViewById(R.id.app_size_spinner);
+        appScaleModeSpinner = findViewById(R.id.app_scale_mode_spinner);
         selectVideoButton = findViewById(R.id.select_video_button);
+        playVideoButton = findViewById(R.id.play_video_button);
+        stillImageButton = findViewById(R.id.still_image_button);
         createGhostCamButton = findViewById(R.id.upload_video_button);
         logoutButton = findViewById(R.id.logout_button);
+        metricsText = findViewById(R.id.metrics_text);
+        dumpMetricsButton = findViewById(R.id.dump_metrics_button);
 
         // 更新按钮文字为屏幕录制模式
         selectVideoButton.setText("Start Screen Capture");
@@ -96,6 +142,163 @@ public class MainActivity extends Activity {
         switch1.setChecked(configPrefs.getBoolean("warn_permission", true));
         switch2.setChecked(configPrefs.getBoolean("disable_ghostcam", false));
         switch3.setChecked(configPrefs.getBoolean("play_sound", false));
+        mirrorSwitch.setChecked(configPrefs.getBoolean("mirror_front_camera", false));
+
+        // 缩放档位：速度优先 -> 质量优先
+        List<String> modeNames = new ArrayList<>();
+        for (ScaleMode mode : ScaleMode.values()) {
+            modeNames.add(mode.name());
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(
+            this, android.R.layout.simple_spinner_item, modeNames);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        scaleModeSpinner.setAdapter(adapter);
+        scaleModeSpinner.setSelection(
+            ScaleMode.fromName(configPrefs.getString(ScaleMode.PREF_KEY, null)).ordinal());
+
+        List<String> fpsNames = new ArrayList<>();
+        int savedFps = configPrefs.getInt(FrameRateGovernor.PREF_TARGET_FPS, FrameRateGovernor.DEFAULT_TARGET_FPS);
+        int fpsIndex = 0;
+        for (int i = 0; i < FPS_OPTIONS.length; i++) {
+            fpsNames.add(FPS_OPTIONS[i] + " fps");
+            if (FPS_OPTIONS[i] == savedFps) {
+                fpsIndex = i;
+            }
+        }
+        ArrayAdapter<String> fpsAdapter = new ArrayAdapter<>(
+            this, android.R.layout.simple_spinner_item, fpsNames);
+        fpsAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        fpsSpinner.setAdapter(fpsAdapter);
+        fpsSpinner.setSelection(fpsIndex);
+
+        // 传输方式在下次开始屏幕录制时生效
+        List<String> transportNames = new ArrayList<>();
+        for (FrameTransport transport : FrameTransport.values()) {
+            transportNames.add(transport.name());
+        }
+        ArrayAdapter<String> transportAdapter = new ArrayAdapter<>(
+            this, android.R.layout.simple_spinner_item, transportNames);
+        transportAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        transportSpinner.setAdapter(transportAdapter);
+        transportSpinner.setSelection(
+            FrameTransport.fromName(configPrefs.getString(FrameTransport.PREF_KEY, null)).ordinal());
+
+        // 采集队列深度同样在下次开始屏幕录制时生效
+        List<String> bufferNames = new ArrayList<>();
+        int savedBuffers = configPrefs.getInt(ScreenCaptureService.PREF_CAPTURE_BUFFERS,
+            ScreenCaptureService.DEFAULT_CAPTURE_BUFFERS);
+        int bufferIndex = 0;
+        for (int i = 0; i < CAPTURE_BUFFER_OPTIONS.length; i++) {
+            bufferNames.add(String.valueOf(CAPTURE_BUFFER_OPTIONS[i]));
+            if (CAPTURE_BUFFER_OPTIONS[i] == savedBuffers) {
+                bufferIndex = i;
+            }
+        }
+        ArrayAdapter<String> bufferAdapter = new ArrayAdapter<>(
+            this, android.R.layout.simple_spinner_item, bufferNames);
+        bufferAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        captureBuffersSpinner.setAdapter(bufferAdapter);
+        captureBuffersSpinner.setSelection(bufferIndex);
+
+        // 按应用覆盖的选项，选中的值在切换应用时由 loadAppOverrides 恢复
+        List<String> appFpsNames = new ArrayList<>();
+        for (int fps : APP_FPS_OPTIONS) {
+            appFpsNames.add(fps == 0 ? "No limit" : fps + " fps");
+        }
+        appFpsSpinner.setAdapter(spinnerAdapter(appFpsNames));
+        List<String> appSizeNames = new ArrayList<>();
+        for (int size : APP_SIZE_OPTIONS) {
+            appSizeNames.add(size == 0 ? "No limit" : size + " px");
+        }
+        appSizeSpinner.setAdapter(spinnerAdapter(appSizeNames));
+        List<String> appModeNames = new ArrayList<>();
+        appModeNames.add("Default");
+        appModeNames.addAll(modeNames);
+        appScaleModeSpinner.setAdapter(spinnerAdapter(appModeNames));
+        showTargetPackages();
+    }
+
+    private ArrayAdapter<String> spinnerAdapter(List<String> names) {
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, names);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        return adapter;
+    }
+
+    private String selectedPackage() {
+        int position = appSpinner.getSelectedItemPosition();
+        return position >= 0 && position < appPackageNames.size() ? appPackageNames.get(position) : null;
+    }
+
+    private static int indexOf(int[] options, int value) {
+        for (int i = 0; i < options.length; i++) {
+            if (options[i] == value) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    // 读取选中应用的覆盖项；未设置的项显示为不限 / 默认
+    private void loadAppOverrides() {
+        String packageName = selectedPackage();
+        if (packageName == null) {
+            return;
+        }
+        String prefix = PACKAGE_PREFIX + packageName + ".";
+        appFpsSpinner.setSelection(indexOf(APP_FPS_OPTIONS, configPrefs.getInt(prefix + "target_fps", 0)));
+        appSizeSpinner.setSelection(indexOf(APP_SIZE_OPTIONS, configPrefs.getInt(prefix + "max_width", 0)));
+        String mode = configPrefs.getString(prefix + ScaleMode.PREF_KEY, null);
+        appScaleModeSpinner.setSelection(mode == null ? 0 : ScaleMode.fromName(mode).ordinal() + 1);
+    }
+
+    // 选择不限 / 默认时删除对应的键，该应用回到全局设置
+    private void saveAppOverrides() {
+        String packageName = selectedPackage();
+        if (packageName == null) {
+            return;
+        }
+        String prefix = PACKAGE_PREFIX + packageName + ".";
+        SharedPreferences.Editor editor = configPrefs.edit();
+        int fps = APP_FPS_OPTIONS[appFpsSpinner.getSelectedItemPosition()];
+        if (fps > 0) {
+            editor.putInt(prefix + "target_fps", fps);
+        } else {
+            editor.remove(prefix + "target_fps");
+        }
+        // 宽高用同一个上限，即限制源帧的长边
+        int size = APP_SIZE_OPTIONS[appSizeSpinner.getSelectedItemPosition()];
+        if (size > 0) {
+            editor.putInt(prefix + "max_width", size);
+            editor.putInt(prefix + "max_height", size);
+        } else {
+            editor.remove(prefix + "max_width");
+            editor.remove(prefix + "max_height");
+        }
+        int mode = appScaleModeSpinner.getSelectedItemPosition();
+        if (mode > 0) {
+            editor.putString(prefix + ScaleMode.PREF_KEY, ScaleMode.values()[mode - 1].name());
+        } else {
+            editor.remove(prefix + ScaleMode.PREF_KEY);
+        }
+        editor.apply();
+    }
+
+    // getStringSet 返回的集合不能修改，每次写入新的副本
+    private void updateTargetPackages(String add, boolean clear) {
+        Set<String> targets = clear ? new HashSet<>()
+            : new HashSet<>(configPrefs.getStringSet(PREF_TARGET_PACKAGES, new HashSet<>()));
+        if (add != null) {
+            targets.add(add);
+        }
+        configPrefs.edit().putStringSet(PREF_TARGET_PACKAGES, targets).apply();
+        showTargetPackages();
+    }
+
+    private void showTargetPackages() {
+        Set<String> targets = new TreeSet<>(configPrefs.getStringSet(PREF_TARGET_PACKAGES, new HashSet<>()));
+        targetPackagesText.setText(targets.isEmpty()
+            ? "Additional targets: none"
+            : "Additional targets: " + String.join(", ", targets));
     }
 
     private void saveSettings() {
@@ -103,6 +306,14 @@ public class MainActivity extends Activity {
         editor.putBoolean("warn_permission", switch1.isChecked());
         editor.putBoolean("disable_ghostcam", switch2.isChecked());
         editor.putBoolean("play_sound", switch3.isChecked());
+        editor.putBoolean("mirror_front_camera", mirrorSwitch.isChecked());
+        editor.putString(ScaleMode.PREF_KEY,
+            ScaleMode.values()[scaleModeSpinner.getSelectedItemPosition()].name());
+        editor.putInt(FrameRateGovernor.PREF_TARGET_FPS, FPS_OPTIONS[fpsSpinner.getSelectedItemPosition()]);
+        editor.putString(FrameTransport.PREF_KEY,
+            FrameTransport.values()[transportSpinner.getSelectedItemPosition()].name());
+        editor.putInt(ScreenCaptureService.PREF_CAPTURE_BUFFERS,
+            CAPTURE_BUFFER_OPTIONS[captureBuffersSpinner.getSelectedItemPosition()]);
         
         int selectedPosition = appSpinner.getSelectedItemPosition();
         if (selectedPosition >= 0 && selectedPosition < appPackageNames.size()) {
@@ -170,10 +381,13 @@ public class MainActivity extends Activity {
         if (index >= 0) {
             appSpinner.setSelection(index);
         }
+        loadAppOverrides();
     }
 
     private void setupListeners() {
         selectVideoButton.setOnClickListener(v -> requestScreenCapture());
+        playVideoButton.setOnClickListener(v -> requestVideoFile());
+        stillImageButton.setOnClickListener(v -> requestStillImage());
 
         createGhostCamButton.setOnClickListener(v -> {
             saveSettings();
@@ -185,9 +399,98 @@ public class MainActivity extends Activity {
             finish();
         });
 
+        dumpMetricsButton.setOnClickListener(v -> dumpMetrics());
+        addTargetButton.setOnClickListener(v -> updateTargetPackages(selectedPackage(), false));
+        clearTargetsButton.setOnClickListener(v -> updateTargetPackages(null, true));
+
         switch1.setOnCheckedChangeListener((buttonView, isChecked) -> saveSettings());
         switch2.setOnCheckedChangeListener((buttonView, isChecked) -> saveSettings());
         switch3.setOnCheckedChangeListener((buttonView, isChecked) -> saveSettings());
+        mirrorSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> saveSettings());
+
+        AdapterView.OnItemSelectedListener saveOnSelect = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                saveSettings();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        scaleModeSpinner.setOnItemSelectedListener(saveOnSelect);
+        fpsSpinner.setOnItemSelectedListener(saveOnSelect);
+        transportSpinner.setOnItemSelectedListener(saveOnSelect);
+        captureBuffersSpinner.setOnItemSelectedListener(saveOnSelect);
+
+        appSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                loadAppOverrides();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        AdapterView.OnItemSelectedListener saveOverrideOnSelect = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                saveAppOverrides();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        };
+        appFpsSpinner.setOnItemSelectedListener(saveOverrideOnSelect);
+        appSizeSpinner.setOnItemSelectedListener(saveOverrideOnSelect);
+        appScaleModeSpinner.setOnItemSelectedListener(saveOverrideOnSelect);
+    }
+
+    // 每秒刷新一次采集服务和各被 hook 进程的指标
+    private final Runnable metricsRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if (metricsText == null) {
+                return;
+            }
+            metricsText.setText(buildMetricsReport());
+            uiHandler.postDelayed(this, METRICS_REFRESH_MS);
+        }
+    };
+
+    private String buildMetricsReport() {
+        if (metricsTable == null) {
+            try {
+                metricsTable = MetricsTable.create(new File(getExternalFilesDir(null), MetricsTable.METRICS_FILE));
+            } catch (IOException e) {
+                return "Metrics unavailable: " + e.getMessage();
+            }
+        }
+        return MetricsTable.report(metricsTable.read(System.currentTimeMillis(), METRICS_ACTIVE_MS));
+    }
+
+    private void dumpMetrics() {
+        File file = new File(getExternalFilesDir(null), METRICS_REPORT_FILE);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buildMetricsReport().getBytes(StandardCharsets.UTF_8));
+            Toast.makeText(this, "Metrics saved to " + file.getPath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        uiHandler.post(metricsRefresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        uiHandler.removeCallbacks(metricsRefresh);
     }
 
     private void requestScreenCapture() {
@@ -199,6 +502,20 @@ public class MainActivity extends Activity {
         }
     }
 
+    private void requestVideoFile() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("video/*");
+        startActivityForResult(intent, REQUEST_VIDEO_FILE);
+    }
+
+    private void requestStillImage() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("image/*");
+        startActivityForResult(intent, REQUEST_STILL_IMAGE);
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
@@ -210,6 +527,16 @@ public class MainActivity extends Activity {
             } else {
                 Toast.makeText(this, "Screen capture permission denied", Toast.LENGTH_SHORT).show();
             }
+        } else if (requestCode == REQUEST_VIDEO_FILE) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                startFileSourceService(data.getData());
+                Toast.makeText(this, "Video playback started!", Toast.LENGTH_SHORT).show();
+            }
+        } else if (requestCode == REQUEST_STILL_IMAGE) {
+            if (resultCode == RESULT_OK && data != null && data.getData() != null) {
+                startFileSourceService(data.getData());
+                Toast.makeText(this, "Still image source started!", Toast.LENGTH_SHORT).show();
+            }
         }
     }
 
@@ -223,7 +550,24 @@ public class MainActivity extends Activity {
         serviceIntent.putExtra("width", metrics.widthPixels);
         serviceIntent.putExtra("height", metrics.heightPixels);
         serviceIntent.putExtra("dpi", metrics.densityDpi);
+        startCaptureService(serviceIntent);
+    }
 
+    // 视频和图片都交给服务，由服务按 MIME 类型选择帧源
+    private void startFileSourceService(Uri uri) {
+        // 保留读取权限，服务重启后仍能打开同一个文件
+        try {
+            getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            e.printStackTrace();
+        }
+        Intent serviceIntent = new Intent(this, ScreenCaptureService.class);
+        serviceIntent.setData(uri);
+        serviceIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startCaptureService(serviceIntent);
+    }
+
+    private void startCaptureService(Intent serviceIntent) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             startForegroundService(serviceIntent);
         } else {
@@ -246,5 +590,12 @@ public class MainActivity extends Activity {
         if (serviceBound) {
             unbindService(serviceConnection);
         }
+        if (metricsTable != null) {
+            try {
+                metricsTable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 }
@@ -7,7 +7,9 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.PixelFormat;
 import android.hardware.display.DisplayManager;
 import android.hardware.display.VirtualDisplay;
@@ -15,38 +17,89 @@ import android.media.Image;
 import android.media.ImageReader;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
+import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Process;
+import android.view.Surface;
+
+import com.example.ghostcam.frame.ConsumerTable;
+import com.example.ghostcam.frame.DeflateVideoCodec;
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.FrameRateGovernor;
+import com.example.ghostcam.frame.FrameRing;
+import com.example.ghostcam.frame.FrameRingWriter;
+import com.example.ghostcam.frame.FrameTransport;
+import com.example.ghostcam.frame.ImagePyramid;
+import com.example.ghostcam.frame.ImagePyramidWriter;
+import com.example.ghostcam.frame.MetricsTable;
+import com.example.ghostcam.frame.PacketRing;
+import com.example.ghostcam.frame.PacketRingWriter;
+import com.example.ghostcam.frame.RgbaToNv21Converter;
+import com.example.ghostcam.frame.ScaleMode;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class ScreenCaptureService extends Service {
 
     private static final String CHANNEL_ID = "GhostCamChannel";
     private static final int NOTIFICATION_ID = 1;
-    private static final String FRAME_FILE = "ghostcam_frame.dat";
+    private static final long DEMAND_CHECK_INTERVAL_MS = 1000;
+    private static final long CONSUMER_ACTIVE_MS = 5000;
+    // ImageReader 的 maxImages，取图、排队、转换各占一张
+    static final String PREF_CAPTURE_BUFFERS = "capture_buffers";
+    static final int DEFAULT_CAPTURE_BUFFERS = 3;
 
     private final IBinder binder = new LocalBinder();
+    // 帧源和采集对象只在采集线程 (handler) 上创建、调整和释放，启动、停止与 demandCheck 中的尺寸调整不会交错
     private MediaProjection mediaProjection;
     private VirtualDisplay virtualDisplay;
     private ImageReader imageReader;
     private HandlerThread handlerThread;
     private Handler handler;
-
+    private FrameRingWriter frameWriter;
+    private RgbaToNv21Converter converter;
+    // 屏幕录制的转换和发布在流水线自己的线程上进行
+    private CapturePipeline capturePipeline;
+    private int captureBuffers;
+    private ConsumerTable consumerTable;
+    private final ConsumerTable.Demand demand = new ConsumerTable.Demand();
+    private FrameRateGovernor governor;
+    private final FrameMetrics metrics = FrameMetrics.get();
+    private MetricsTable metricsTable;
+    private SharedPreferences configPrefs;
+    private FrameTransport transport = FrameTransport.RAW;
+    private PacketRingWriter packetWriter;
+    // 编码传输优先使用硬件编码器，不可用时退回软件编码
+    private SurfaceEncoder surfaceEncoder;
+    private DeflateVideoCodec.Encoder softwareEncoder;
+    // 视频文件帧源，与屏幕录制二选一
+    private VideoFileSource videoSource;
+    // 静态图片帧源：解码一次后写成多尺寸金字塔，之后没有周期性工作
+    private ImagePyramidWriter stillWriter;
+    private byte[] stillNv21;
+    private int stillWidth;
+    private int stillHeight;
+    private final List<int[]> stillSizes = new ArrayList<>();
+    // 空闲时把 VirtualDisplay 的输出断开，系统不再为我们合成画面
+    private boolean capturePaused;
+
+    // 屏幕尺寸
     private int width;
     private int height;
     private int dpi;
+    // 当前采集尺寸，按消费者需要的预览尺寸缩小
+    private int captureWidth;
+    private int captureHeight;
 
-    // 静态变量用于 Xposed 模块访问
-    private static volatile byte[] latestFrameNV21;
-    private static volatile int frameWidth;
-    private static volatile int frameHeight;
     private static Context appContext;
 
     public class LocalBinder extends Binder {
@@ -64,6 +117,19 @@ public class ScreenCaptureService extends Service {
         handlerThread = new HandlerThread("ScreenCapture");
         handlerThread.start();
         handler = new Handler(handlerThread.getLooper());
+
+        frameWriter = new FrameRingWriter(new File(getExternalFilesDir(null), FrameRing.FRAME_FILE));
+        converter = new RgbaToNv21Converter(RgbaToNv21Converter.defaultThreadCount());
+        configPrefs = ConfigPrefs.open(this);
+        governor = new FrameRateGovernor(
+            configPrefs.getInt(FrameRateGovernor.PREF_TARGET_FPS, FrameRateGovernor.DEFAULT_TARGET_FPS),
+            configPrefs.getInt(FrameRateGovernor.PREF_IDLE_TIMEOUT, FrameRateGovernor.DEFAULT_IDLE_TIMEOUT_SEC) * 1000L);
+        try {
+            consumerTable = ConsumerTable.create(new File(getExternalFilesDir(null), ConsumerTable.CONSUMER_FILE));
+            metricsTable = MetricsTable.create(new File(getExternalFilesDir(null), MetricsTable.METRICS_FILE));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -74,14 +140,32 @@ public class ScreenCaptureService extends Service {
         }
 
         startForeground(NOTIFICATION_ID, createNotification());
+        handler.post(() -> handleStart(intent));
+        return START_STICKY;
+    }
 
+    // 在采集线程上执行
+    private void handleStart(Intent intent) {
         int resultCode = intent.getIntExtra("resultCode", -1);
         Intent data = intent.getParcelableExtra("data");
-        width = intent.getIntExtra("width", 720);
-        height = intent.getIntExtra("height", 1280);
+        // NV21 要求宽高为偶数
+        width = intent.getIntExtra("width", 720) & ~1;
+        height = intent.getIntExtra("height", 1280) & ~1;
         dpi = intent.getIntExtra("dpi", 320);
-
-        if (resultCode != -1 && data != null) {
+        transport = FrameTransport.fromName(configPrefs.getString(FrameTransport.PREF_KEY, null));
+
+        // 切换帧源前先停掉正在运行的采集
+        Uri sourceUri = intent.getData();
+        if (sourceUri != null) {
+            stopCapture();
+            String type = getContentResolver().getType(sourceUri);
+            if (type != null && type.startsWith("image/")) {
+                startStillImage(sourceUri);
+            } else {
+                startVideoSource(sourceUri);
+            }
+        } else if (resultCode != -1 && data != null) {
+            stopCapture();
             MediaProjectionManager projectionManager = 
                 (MediaProjectionManager) getSystemService(Context.MEDIA_PROJECTION_SERVICE);
             mediaProjection = projectionManager.getMediaProjection(resultCode, data);
@@ -90,20 +174,171 @@ public class ScreenCaptureService extends Service {
                 startCapture();
             }
         }
-
-        return START_STICKY;
     }
 
 
     private void startCapture() {
-        imageReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 2);
-        
-        imageReader.setOnImageAvailableListener(reader -> {
+        captureWidth = width;
+        captureHeight = height;
+        capturePaused = false;
+        if (transport == FrameTransport.ENCODED) {
+            packetWriter = createPacketWriter();
+            surfaceEncoder = createSurfaceEncoder(captureWidth, captureHeight);
+            if (surfaceEncoder != null) {
+                captureWidth = surfaceEncoder.getWidth();
+                captureHeight = surfaceEncoder.getHeight();
+            } else {
+                // 每秒一个关键帧
+                softwareEncoder = new DeflateVideoCodec.Encoder(targetFps());
+            }
+        }
+        if (surfaceEncoder == null) {
+            captureBuffers = Math.max(2, Math.min(8,
+                configPrefs.getInt(PREF_CAPTURE_BUFFERS, DEFAULT_CAPTURE_BUFFERS)));
+            capturePipeline = new CapturePipeline(converter, this::onCapturedFrame, Math.max(1, captureBuffers - 2));
+            capturePipeline.start();
+            imageReader = createImageReader(captureWidth, captureHeight);
+        }
+
+        virtualDisplay = mediaProjection.createVirtualDisplay(
+            "GhostCamCapture",
+            captureWidth, captureHeight, dpi,
+            DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
+            outputSurface(),
+            null, handler
+        );
+
+        handler.postDelayed(demandCheck, DEMAND_CHECK_INTERVAL_MS);
+    }
+
+    // 视频文件没有 Surface 输入，编码传输时使用软件编码器
+    private void startVideoSource(Uri uri) {
+        capturePaused = false;
+        if (transport == FrameTransport.ENCODED) {
+            packetWriter = createPacketWriter();
+            softwareEncoder = new DeflateVideoCodec.Encoder(targetFps());
+        }
+        videoSource = new VideoFileSource(this, uri, this::deliverFrame, governor);
+        videoSource.start();
+        handler.postDelayed(demandCheck, DEMAND_CHECK_INTERVAL_MS);
+    }
+
+    // 图片只解码和转换一次，按常见预览尺寸写成金字塔
+    private void startStillImage(Uri uri) {
+        stillSizes.clear();
+        stillSizes.addAll(Arrays.asList(ImagePyramid.COMMON_SIZES));
+        if (!decodeStillImage(uri)) {
+            stillNv21 = null;
+            return;
+        }
+        stillWriter = new ImagePyramidWriter(new File(getExternalFilesDir(null), ImagePyramid.STILL_FILE),
+            ScaleMode.AREA);
+        writeStillPyramid();
+        handler.postDelayed(demandCheck, DEMAND_CHECK_INTERVAL_MS);
+    }
+
+    private boolean decodeStillImage(Uri uri) {
+        long start = System.nanoTime();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = getContentResolver().openInputStream(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        // 按 2 的幂缩小解码，只要不小于金字塔中最大的尺寸即可
+        int[] largest = ImagePyramid.COMMON_SIZES[ImagePyramid.COMMON_SIZES.length - 1];
+        int sample = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sample * 2) >= Math.max(largest[0], largest[1])
+                && Math.min(options.outWidth, options.outHeight) / (sample * 2) >= Math.min(largest[0], largest[1])) {
+            sample *= 2;
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        Bitmap bitmap;
+        try (InputStream in = getContentResolver().openInputStream(uri)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (bitmap == null) {
+            return false;
+        }
+
+        int w = bitmap.getWidth() & ~1;
+        int h = bitmap.getHeight() & ~1;
+        int[] argb = new int[w * h];
+        bitmap.getPixels(argb, 0, w, 0, 0, w, h);
+        bitmap.recycle();
+        stillNv21 = new byte[w * h * 3 / 2];
+        long convertStart = System.nanoTime();
+        converter.convert(argb, w, w, h, stillNv21);
+        metrics.timer(FrameMetrics.Timer.CAPTURE_CONVERT).recordSince(convertStart);
+        stillWidth = w;
+        stillHeight = h;
+        metrics.increment(FrameMetrics.Counter.FRAMES_PRODUCED);
+        metrics.timer(FrameMetrics.Timer.CAPTURE_FRAME).recordSince(start);
+        return true;
+    }
+
+    private void writeStillPyramid() {
+        long start = System.nanoTime();
+        try {
+            stillWriter.write(stillNv21, stillWidth, stillHeight, stillSizes);
+            metrics.timer(FrameMetrics.Timer.CAPTURE_PUBLISH).recordSince(start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void retireStillImage() {
+        if (stillWriter != null) {
+            stillWriter.retire();
+            stillWriter = null;
+        }
+        stillNv21 = null;
+    }
+
+    private PacketRingWriter createPacketWriter() {
+        return new PacketRingWriter(new File(getExternalFilesDir(null), PacketRing.STREAM_FILE));
+    }
+
+    private int targetFps() {
+        return configPrefs.getInt(FrameRateGovernor.PREF_TARGET_FPS, FrameRateGovernor.DEFAULT_TARGET_FPS);
+    }
+
+    // 硬件编码器一般要求宽高按 16 对齐；创建失败时返回 null
+    private SurfaceEncoder createSurfaceEncoder(int w, int h) {
+        try {
+            return SurfaceEncoder.create(Math.max(16, w & ~15), Math.max(16, h & ~15), targetFps(),
+                packetWriter, handler);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private Surface outputSurface() {
+        return surfaceEncoder != null ? surfaceEncoder.getInputSurface() : imageReader.getSurface();
+    }
+
+    private ImageReader createImageReader(int w, int h) {
+        ImageReader reader = ImageReader.newInstance(w, h, PixelFormat.RGBA_8888, captureBuffers);
+        reader.setOnImageAvailableListener(r -> {
             Image image = null;
             try {
-                image = reader.acquireLatestImage();
+                image = r.acquireLatestImage();
+                // 在转换之前按目标帧率丢帧
                 if (image != null) {
-                    processImage(image);
+                    if (governor.shouldProcess(System.nanoTime())) {
+                        // Image 交给流水线，由转换线程负责关闭
+                        capturePipeline.submit(image);
+                        image = null;
+                    } else {
+                        metrics.increment(FrameMetrics.Counter.FRAMES_DROPPED);
+                    }
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -113,118 +348,134 @@ public class ScreenCaptureService extends Service {
                 }
             }
         }, handler);
-
-        virtualDisplay = mediaProjection.createVirtualDisplay(
-            "GhostCamCapture",
-            width, height, dpi,
-            DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
-            imageReader.getSurface(),
-            null, handler
-        );
+        return reader;
     }
 
-    private void processImage(Image image) {
-        Image.Plane[] planes = image.getPlanes();
-        ByteBuffer buffer = planes[0].getBuffer();
-        int pixelStride = planes[0].getPixelStride();
-        int rowStride = planes[0].getRowStride();
-        int rowPadding = rowStride - pixelStride * width;
-
-        // 创建 Bitmap
-        Bitmap bitmap = Bitmap.createBitmap(
-            width + rowPadding / pixelStride, height, 
-            Bitmap.Config.ARGB_8888
-        );
-        bitmap.copyPixelsFromBuffer(buffer);
-
-        // 裁剪到正确尺寸
-        if (bitmap.getWidth() != width) {
-            Bitmap cropped = Bitmap.createBitmap(bitmap, 0, 0, width, height);
-            bitmap.recycle();
-            bitmap = cropped;
+    // 定期检查消费者需要的尺寸，按需调整采集分辨率
+    private final Runnable demandCheck = new Runnable() {
+        @Override
+        public void run() {
+            if (virtualDisplay == null && videoSource == null && stillWriter == null) {
+                return;
+            }
+            // 帧率配置可能在 MainActivity 中被修改
+            governor.setTargetFps(configPrefs.getInt(
+                FrameRateGovernor.PREF_TARGET_FPS, FrameRateGovernor.DEFAULT_TARGET_FPS));
+            governor.setIdleTimeoutMs(configPrefs.getInt(
+                FrameRateGovernor.PREF_IDLE_TIMEOUT, FrameRateGovernor.DEFAULT_IDLE_TIMEOUT_SEC) * 1000L);
+
+            if (consumerTable != null) {
+                long now = System.currentTimeMillis();
+                consumerTable.aggregate(now, CONSUMER_ACTIVE_MS, demand);
+                governor.updateDemand(demand.consumers, demand.maxReadsPerSecond, demand.lastReadMillis, now);
+                if (virtualDisplay != null && demand.consumers > 0 && demand.maxWidth > 0 && demand.maxHeight > 0) {
+                    resizeCapture(demand.maxWidth, demand.maxHeight);
+                }
+                // 消费者请求的尺寸不在金字塔中时追加一份，之后它也能直接取用
+                if (stillWriter != null && demand.consumers > 0 && demand.maxWidth > 0 && demand.maxHeight > 0
+                        && !stillWriter.hasSize(demand.maxWidth, demand.maxHeight)) {
+                    stillSizes.add(new int[]{demand.maxWidth, demand.maxHeight});
+                    writeStillPyramid();
+                }
+                setCapturePaused(governor.isIdle());
+            }
+            if (metricsTable != null) {
+                metricsTable.publish(Process.myPid(), "capture", metrics, System.currentTimeMillis());
+            }
+            handler.postDelayed(this, DEMAND_CHECK_INTERVAL_MS);
+        }
+    };
+
+    // 按屏幕比例缩小到刚好覆盖消费者的预览尺寸；预览可能是横向的，两种朝向都要满足
+    private void resizeCapture(int requestedWidth, int requestedHeight) {
+        float scale = Math.max(
+            Math.max((float) requestedWidth / width, (float) requestedHeight / height),
+            Math.max((float) requestedWidth / height, (float) requestedHeight / width));
+        scale = Math.min(1f, scale);
+        int w = Math.max(2, Math.round(width * scale) & ~1);
+        int h = Math.max(2, Math.round(height * scale) & ~1);
+        if (surfaceEncoder != null) {
+            w = Math.max(16, w & ~15);
+            h = Math.max(16, h & ~15);
+        }
+        if (w == captureWidth && h == captureHeight) {
+            return;
         }
 
-        // 转换为 NV21 格式并保存
-        byte[] nv21Data = bitmapToNV21(bitmap);
-        latestFrameNV21 = nv21Data;
-        frameWidth = width;
-        frameHeight = height;
-
-        // 保存到文件供 Xposed 模块读取
-        saveFrameToFile(nv21Data);
+        if (surfaceEncoder != null) {
+            // 编码器尺寸不能动态修改，换一个新的编码器
+            SurfaceEncoder encoder = createSurfaceEncoder(w, h);
+            if (encoder == null) {
+                return;
+            }
+            SurfaceEncoder oldEncoder = surfaceEncoder;
+            surfaceEncoder = encoder;
+            virtualDisplay.resize(w, h, Math.max(1, Math.round(dpi * scale)));
+            virtualDisplay.setSurface(capturePaused ? null : encoder.getInputSurface());
+            oldEncoder.release();
+            captureWidth = w;
+            captureHeight = h;
+            return;
+        }
 
-        bitmap.recycle();
+        ImageReader oldReader = imageReader;
+        imageReader = createImageReader(w, h);
+        virtualDisplay.resize(w, h, Math.max(1, Math.round(dpi * scale)));
+        virtualDisplay.setSurface(capturePaused ? null : imageReader.getSurface());
+        capturePipeline.flush();
+        oldReader.close();
+        captureWidth = w;
+        captureHeight = h;
     }
 
-    private byte[] bitmapToNV21(Bitmap bitmap) {
-        int w = bitmap.getWidth();
-        int h = bitmap.getHeight();
-        int[] pixels = new int[w * h];
-        bitmap.getPixels(pixels, 0, w, 0, 0, w, h);
-
-        int ySize = w * h;
-        int uvSize = w * h / 2;
-        byte[] nv21 = new byte[ySize + uvSize];
-
-        int yIndex = 0;
-        int uvIndex = ySize;
-
-        for (int j = 0; j < h; j++) {
-            for (int i = 0; i < w; i++) {
-                int pixel = pixels[j * w + i];
-                int r = (pixel >> 16) & 0xff;
-                int g = (pixel >> 8) & 0xff;
-                int b = pixel & 0xff;
-
-                // RGB to YUV conversion
-                int y = ((66 * r + 129 * g + 25 * b + 128) >> 8) + 16;
-                int u = ((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128;
-                int v = ((112 * r - 94 * g - 18 * b + 128) >> 8) + 128;
-
-                nv21[yIndex++] = (byte) clamp(y, 0, 255);
-
-                // NV21 格式: VUVU...
-                if (j % 2 == 0 && i % 2 == 0 && uvIndex < nv21.length - 1) {
-                    nv21[uvIndex++] = (byte) clamp(v, 0, 255);
-                    nv21[uvIndex++] = (byte) clamp(u, 0, 255);
-                }
+    private void setCapturePaused(boolean paused) {
+        if (paused != capturePaused) {
+            capturePaused = paused;
+            if (videoSource != null) {
+                videoSource.setPaused(paused);
+            }
+            if (virtualDisplay != null) {
+                virtualDisplay.setSurface(paused ? null : outputSurface());
             }
         }
-        return nv21;
     }
 
-    private int clamp(int value, int min, int max) {
-        return Math.max(min, Math.min(max, value));
+    // 在流水线的发布线程上调用
+    private void onCapturedFrame(byte[] data, int w, int h, long ptsUs) {
+        deliverFrame(data, w, h, ptsUs);
     }
 
-    private void saveFrameToFile(byte[] data) {
+    private void publishFrame(byte[] data, int w, int h, long ptsUs) {
+        long start = System.nanoTime();
         try {
-            File file = new File(getExternalFilesDir(null), FRAME_FILE);
-            FileOutputStream fos = new FileOutputStream(file);
-            // 写入宽高信息
-            fos.write((width >> 8) & 0xff);
-            fos.write(width & 0xff);
-            fos.write((height >> 8) & 0xff);
-            fos.write(height & 0xff);
-            // 写入帧数据
-            fos.write(data);
-            fos.close();
+            frameWriter.publish(data, data.length, w, h, ptsUs, 0);
+            metrics.add(FrameMetrics.Counter.BYTES_COPIED, data.length);
+            metrics.timer(FrameMetrics.Timer.CAPTURE_PUBLISH).recordSince(start);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    // 供 Xposed 模块调用的静态方法
-    public static byte[] getLatestFrameNV21() {
-        return latestFrameNV21;
-    }
-
-    public static int getFrameWidth() {
-        return frameWidth;
+    // 屏幕录制和视频文件两种帧源的共同出口
+    private void deliverFrame(byte[] data, int w, int h, long ptsUs) {
+        metrics.increment(FrameMetrics.Counter.FRAMES_PRODUCED);
+        if (softwareEncoder != null) {
+            encodeFrame(data, w, h, ptsUs);
+        } else {
+            // 发布到共享帧环供 Xposed 模块读取
+            publishFrame(data, w, h, ptsUs);
+        }
     }
 
-    public static int getFrameHeight() {
-        return frameHeight;
+    private void encodeFrame(byte[] data, int w, int h, long ptsUs) {
+        long start = System.nanoTime();
+        try {
+            int size = softwareEncoder.encode(data, data.length, w, h, ptsUs, packetWriter);
+            metrics.add(FrameMetrics.Counter.BYTES_COPIED, size);
+            metrics.timer(FrameMetrics.Timer.CAPTURE_PUBLISH).recordSince(start);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     public static Context getAppContext() {
@@ -278,21 +529,61 @@ public class ScreenCaptureService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        stopCapture();
-        if (handlerThread != null) {
-            handlerThread.quitSafely();
-        }
+        // 排在已提交的启动和尺寸调整之后，quitSafely 会先处理完这些消息再退出
+        handler.post(() -> {
+            stopCapture();
+            converter.close();
+            try {
+                frameWriter.close();
+                if (consumerTable != null) {
+                    consumerTable.close();
+                }
+                if (metricsTable != null) {
+                    metricsTable.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        handlerThread.quitSafely();
     }
 
     private void stopCapture() {
+        handler.removeCallbacks(demandCheck);
+        if (videoSource != null) {
+            videoSource.stop();
+            videoSource = null;
+        }
+        retireStillImage();
         if (virtualDisplay != null) {
             virtualDisplay.release();
             virtualDisplay = null;
         }
+        // 先停流水线，发布线程可能还在使用下面的编码器和写入器
+        if (capturePipeline != null) {
+            capturePipeline.stop();
+            capturePipeline = null;
+        }
         if (imageReader != null) {
             imageReader.close();
             imageReader = null;
         }
+        if (surfaceEncoder != null) {
+            surfaceEncoder.release();
+            surfaceEncoder = null;
+        }
+        if (softwareEncoder != null) {
+            softwareEncoder.close();
+            softwareEncoder = null;
+        }
+        if (packetWriter != null) {
+            try {
+                packetWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            packetWriter = null;
+        }
         if (mediaProjection != null) {
             mediaProjection.stop();
             mediaProjection = null;
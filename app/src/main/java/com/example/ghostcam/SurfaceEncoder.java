@@ -0,0 +1,140 @@
+package com.example.ghostcam;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Surface;
+
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.PacketRing;
+import com.example.ghostcam.frame.PacketRingWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 硬件 H.264 编码器：VirtualDisplay 直接渲染到编码器的输入 Surface，CPU 不接触像素，
+ * 编码输出写入 PacketRing 供 hook 端解码。
+ */
+final class SurfaceEncoder {
+
+    private static final int I_FRAME_INTERVAL_SEC = 1;
+    // 画面静止时编码器也按这个间隔重复上一帧，消费端不会长时间等不到新包
+    private static final long REPEAT_FRAME_AFTER_US = 100_000;
+    private static final float BITS_PER_PIXEL = 0.1f;
+
+    private final MediaCodec codec;
+    private final Surface inputSurface;
+    private final PacketRingWriter writer;
+    private final int width;
+    private final int height;
+    private byte[] configBuffer = new byte[0];
+
+    private SurfaceEncoder(MediaCodec codec, Surface inputSurface, PacketRingWriter writer, int width, int height) {
+        this.codec = codec;
+        this.inputSurface = inputSurface;
+        this.writer = writer;
+        this.width = width;
+        this.height = height;
+    }
+
+    // 创建并启动编码器；设备没有可用的硬件编码器时抛出 IOException
+    static SurfaceEncoder create(int width, int height, int fps, PacketRingWriter writer, Handler handler)
+            throws IOException {
+        MediaFormat format = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, Math.round(width * height * fps * BITS_PER_PIXEL));
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, fps);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SEC);
+        format.setLong(MediaFormat.KEY_REPEAT_PREVIOUS_FRAME_AFTER, REPEAT_FRAME_AFTER_US);
+        // 限制送入编码器的帧率 (API 29 起生效，旧系统忽略该键)
+        format.setInteger("max-fps-to-encoder", fps);
+
+        MediaCodec codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_VIDEO_AVC);
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            Surface surface = codec.createInputSurface();
+            SurfaceEncoder encoder = new SurfaceEncoder(codec, surface, writer, width, height);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                codec.setCallback(encoder.callback, handler);
+            } else {
+                codec.setCallback(encoder.callback);
+            }
+            codec.start();
+            return encoder;
+        } catch (RuntimeException e) {
+            codec.release();
+            throw new IOException("Cannot start AVC encoder: " + e.getMessage(), e);
+        }
+    }
+
+    Surface getInputSurface() {
+        return inputSurface;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    private final MediaCodec.Callback callback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(MediaCodec mc, int index) {
+            // 输入来自 Surface
+        }
+
+        @Override
+        public void onOutputBufferAvailable(MediaCodec mc, int index, MediaCodec.BufferInfo info) {
+            try {
+                ByteBuffer output = mc.getOutputBuffer(index);
+                if (output != null && info.size > 0) {
+                    output.position(info.offset);
+                    output.limit(info.offset + info.size);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                        // SPS/PPS，解码器初始化时需要
+                        if (configBuffer.length < info.size) {
+                            configBuffer = new byte[info.size];
+                        }
+                        output.get(configBuffer, 0, info.size);
+                        writer.configure(PacketRing.CODEC_AVC, width, height, configBuffer, info.size);
+                    } else {
+                        int flags = (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0
+                            ? PacketRing.FLAG_KEY_FRAME : 0;
+                        writer.publish(output, info.presentationTimeUs, flags);
+                        FrameMetrics metrics = FrameMetrics.get();
+                        metrics.increment(FrameMetrics.Counter.FRAMES_PRODUCED);
+                        metrics.add(FrameMetrics.Counter.BYTES_COPIED, info.size);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                mc.releaseOutputBuffer(index, false);
+            }
+        }
+
+        @Override
+        public void onError(MediaCodec mc, MediaCodec.CodecException e) {
+            e.printStackTrace();
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec mc, MediaFormat format) {
+        }
+    };
+
+    void release() {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            // 编码器已处于错误状态
+        }
+        codec.release();
+        inputSurface.release();
+    }
+}
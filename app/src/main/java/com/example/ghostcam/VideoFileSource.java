@@ -0,0 +1,229 @@
+package com.example.ghostcam;
+
+import android.content.Context;
+import android.media.Image;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+
+import com.example.ghostcam.frame.DecodedFrameQueue;
+import com.example.ghostcam.frame.Frame;
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.FrameRateGovernor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 本地视频文件帧源：MediaExtractor + MediaCodec 流式解码，经小型帧队列按时间戳节奏输出。
+ *
+ * 到达文件末尾时 seek 回开头继续送入同一个解码器，时间戳顺延，
+ * 循环播放不需要重新打开文件或重建解码器，也就没有停顿。
+ */
+final class VideoFileSource {
+
+    interface FrameSink {
+        void onFrame(byte[] nv21, int width, int height, long ptsUs);
+    }
+
+    private static final int QUEUE_DEPTH = 3;
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    private static final long DEFAULT_FRAME_DURATION_US = 33_333;
+    // 输出与时间戳偏差超过这个值 (如暂停后恢复) 时重新对齐时钟，而不是连续追帧
+    private static final long MAX_DRIFT_NS = 200_000_000L;
+    private static final long PAUSED_POLL_MS = 100;
+
+    private final Context context;
+    private final Uri uri;
+    private final FrameSink sink;
+    private final FrameRateGovernor governor;
+    private final DecodedFrameQueue queue = new DecodedFrameQueue(QUEUE_DEPTH);
+    private final ImageToNv21 converter = new ImageToNv21();
+    private final FrameMetrics metrics = FrameMetrics.get();
+    private Thread decodeThread;
+    private Thread outputThread;
+    private volatile boolean running;
+    private volatile boolean paused;
+
+    VideoFileSource(Context context, Uri uri, FrameSink sink, FrameRateGovernor governor) {
+        this.context = context;
+        this.uri = uri;
+        this.sink = sink;
+        this.governor = governor;
+    }
+
+    void start() {
+        running = true;
+        decodeThread = new Thread(this::decodeLoop, "GhostCamVideoDecode");
+        outputThread = new Thread(this::outputLoop, "GhostCamVideoOutput");
+        decodeThread.start();
+        outputThread.start();
+    }
+
+    void stop() {
+        running = false;
+        queue.close();
+        for (Thread thread : new Thread[]{decodeThread, outputThread}) {
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    thread.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    // 没有消费者时暂停解码，恢复后从暂停处继续
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    private void decodeLoop() {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+            int track = selectVideoTrack(extractor);
+            if (track < 0) {
+                return;
+            }
+            extractor.selectTrack(track);
+            MediaFormat format = extractor.getTrackFormat(track);
+            long frameDurationUs = format.containsKey(MediaFormat.KEY_FRAME_RATE)
+                ? 1_000_000L / Math.max(1, format.getInteger(MediaFormat.KEY_FRAME_RATE))
+                : DEFAULT_FRAME_DURATION_US;
+            format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            decode(extractor, codec, frameDurationUs);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            // stop() 中断
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    // 解码器已处于错误状态
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static int selectVideoTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("video/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void decode(MediaExtractor extractor, MediaCodec codec, long frameDurationUs)
+            throws InterruptedException {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        // 每循环一次，时间戳加上一轮的时长，输出端看到的时间戳始终递增
+        long loopOffsetUs = 0;
+        long loopEndUs = 0;
+        boolean inputDone = false;
+
+        while (running) {
+            if (paused) {
+                Thread.sleep(PAUSED_POLL_MS);
+                continue;
+            }
+            if (!inputDone) {
+                int index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                if (index >= 0) {
+                    ByteBuffer input = codec.getInputBuffer(index);
+                    int size = extractor.readSampleData(input, 0);
+                    if (size < 0) {
+                        loopOffsetUs += loopEndUs + frameDurationUs;
+                        loopEndUs = 0;
+                        extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+                        size = extractor.readSampleData(input, 0);
+                    }
+                    if (size < 0) {
+                        // 文件中没有可读的样本
+                        codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        long sampleUs = extractor.getSampleTime();
+                        loopEndUs = Math.max(loopEndUs, sampleUs);
+                        codec.queueInputBuffer(index, 0, size, loopOffsetUs + sampleUs, 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int index = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+            if (index < 0) {
+                continue;
+            }
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                codec.releaseOutputBuffer(index, false);
+                return;
+            }
+            // 队列满时在这里阻塞，解码速度跟随输出节奏
+            Frame frame = queue.acquire();
+            if (frame == null) {
+                codec.releaseOutputBuffer(index, false);
+                return;
+            }
+            Image image = codec.getOutputImage(index);
+            if (image != null) {
+                if (converter.convert(image, frame)) {
+                    queue.commit(info.presentationTimeUs);
+                }
+                image.close();
+            }
+            codec.releaseOutputBuffer(index, false);
+        }
+    }
+
+    private void outputLoop() {
+        long baseNanos = 0;
+        long basePtsUs = 0;
+        boolean clockSet = false;
+        try {
+            while (running) {
+                Frame frame = queue.peek(PAUSED_POLL_MS);
+                if (frame == null) {
+                    continue;
+                }
+                long ptsUs = queue.peekTimestamp();
+                long now = System.nanoTime();
+                long due = baseNanos + (ptsUs - basePtsUs) * 1000;
+                if (!clockSet || Math.abs(now - due) > MAX_DRIFT_NS) {
+                    baseNanos = now;
+                    basePtsUs = ptsUs;
+                    due = now;
+                    clockSet = true;
+                }
+                long wait = due - now;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+                // 视频帧率高于消费者需要时按目标帧率丢帧
+                if (governor.shouldProcess(due)) {
+                    sink.onFrame(frame.data, frame.width, frame.height, ptsUs);
+                } else {
+                    metrics.increment(FrameMetrics.Counter.FRAMES_DROPPED);
+                }
+                queue.release();
+            }
+        } catch (InterruptedException e) {
+            // stop() 中断
+        }
+    }
+}
@@ -2,94 +2,437 @@ package com.example.ghostcam.xposed;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.graphics.ImageFormat;
 import android.hardware.Camera;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Process;
+
+import com.example.ghostcam.frame.ConsumerTable;
+import com.example.ghostcam.frame.EncodedFrameReader;
+import com.example.ghostcam.frame.Frame;
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.FrameRing;
+import com.example.ghostcam.frame.FrameRingReader;
+import com.example.ghostcam.frame.FrameTransform;
+import com.example.ghostcam.frame.FrameTransport;
+import com.example.ghostcam.frame.ImagePyramid;
+import com.example.ghostcam.frame.ImagePyramidReader;
+import com.example.ghostcam.frame.MetricsTable;
+import com.example.ghostcam.frame.NV21Scaler;
+import com.example.ghostcam.frame.PacketRing;
+import com.example.ghostcam.frame.StreamConfig;
+import com.example.ghostcam.frame.VideoDecoder;
+import com.example.ghostcam.frame.YuvConversions;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import de.robv.android.xposed.IXposedHookLoadPackage;
+import de.robv.android.xposed.IXposedHookZygoteInit;
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
 import de.robv.android.xposed.XposedHelpers;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
-public class CameraHook implements IXposedHookLoadPackage {
+public class CameraHook implements IXposedHookLoadPackage, IXposedHookZygoteInit {
 
     private static final String TAG = "GhostCam";
-    private static final String PREFS_NAME = "GhostCamConfig";
-    private static final String FRAME_FILE = "ghostcam_frame.dat";
-
-    private String targetPackage = "";
-    private boolean isDisabled = false;
+    private static final String FRAME_DIR = "/sdcard/Android/data/com.example.ghostcam/files/";
+
+    // 配置快照，目标进程中每秒检查一次配置文件是否变化
+    private HookConfig config;
+    private HookConfig.Settings settings;
+    private String packageName = "";
+    private long lastLoadNanos;
+    private final FrameRingReader frameReader = new FrameRingReader(new File(FRAME_DIR + FrameRing.FRAME_FILE));
+    private final Frame frame = new Frame();
+    // 后台预取并预先缩放新帧；prefetched 为当前帧来自预取结果时对应的那一份，否则为 null。
+    // 预取线程用自己的映射，读帧时不占用 frameReader 的锁
+    private final FramePrefetcher prefetcher =
+        new FramePrefetcher(new FrameRingReader(new File(FRAME_DIR + FrameRing.FRAME_FILE)));
+    private FramePrefetcher.Prepared prefetched;
+    // 编码传输模式下从压缩流解码出帧
+    private FrameTransport transport = FrameTransport.RAW;
+    private EncodedFrameReader encodedReader;
+    // 静态图片帧源优先于以上两种传输方式
+    private final ImagePyramidReader stillReader = new ImagePyramidReader(new File(FRAME_DIR + ImagePyramid.STILL_FILE));
+    private final Frame stillFrame = new Frame();
+    private ConsumerTable consumerTable;
+    private long lastConsumerOpenAttempt;
+    private final FrameMetrics metrics = FrameMetrics.get();
+    private MetricsTable metricsTable;
+    private long lastMetricsPublish;
+    private String processName = "";
+    private final Object frameLock = new Object();
     private byte[] frameData;
     private int frameWidth;
     private int frameHeight;
+    private long frameSequence;
+    private final NV21Scaler scaler = new NV21Scaler();
+    // 每个 ImageReader 的格式只判断一次；YUV 写入器各自缓存缓冲区布局，每个 ImageReader 一个
+    private final Map<ImageReader, ImageFrameWriter> readerWriters = new WeakHashMap<>();
+    private ImageFrameWriter jpegWriter;
+    // 按相机方向和朝向算出的变换，每个 Camera / ImageReader 只算一次
+    // 每个 Camera 的预览配置，弱引用键，Camera 被回收后自动清除
+    private final Map<Camera, CameraState> cameraStates = new WeakHashMap<>();
+    private final Map<ImageReader, FrameTransform> readerTransforms = new WeakHashMap<>();
+    private volatile FrameTransform camera2Transform = FrameTransform.IDENTITY;
+    // 完整的预览 hook 在第一次打开相机时才安装
+    private boolean legacyHooksInstalled;
+    private boolean camera2HooksInstalled;
+
+    // 在 zygote 中解析一次配置，fork 出的应用进程继承这份快照，加载时只需检查文件是否变化
+    @Override
+    public void initZygote(StartupParam startupParam) {
+        HookConfig.get();
+    }
 
     @Override
     public void handleLoadPackage(XC_LoadPackage.LoadPackageParam lpparam) throws Throwable {
-        // 加载配置
-        loadConfig();
+        // 加载配置，文件未变化时直接复用已解析的快照
+        HookConfig snapshot = HookConfig.get();
 
-        if (isDisabled) {
+        if (snapshot.disabled) {
             XposedBridge.log(TAG + ": GhostCam is disabled");
             return;
         }
 
         // 只 hook 目标应用
-        if (!targetPackage.isEmpty() && !lpparam.packageName.equals(targetPackage)) {
+        if (!snapshot.isTarget(lpparam.packageName)) {
             return;
         }
 
         XposedBridge.log(TAG + ": Hooking package: " + lpparam.packageName);
+        packageName = lpparam.packageName;
+        processName = lpparam.processName != null ? lpparam.processName : lpparam.packageName;
+        applyConfig(snapshot);
 
-        // Hook 旧版 Camera API
+        // 启动时只安装打开相机的哨兵 hook，其余 hook 等应用第一次打开相机时再安装
+        long start = System.nanoTime();
         hookLegacyCamera(lpparam);
-
-        // Hook Camera2 API
         hookCamera2(lpparam);
+        logInstall("sentinel", start);
     }
 
-    private void loadConfig() {
-        try {
-            // 读取配置文件
-            File prefsFile = new File("/data/data/com.example.ghostcam/shared_prefs/" + PREFS_NAME + ".xml");
-            if (prefsFile.exists()) {
-                // 简单解析 XML 获取配置
-                // 实际使用中建议用 XSharedPreferences
+    // 调用方需持有帧锁 (hook 安装前除外)
+    private void applyConfig(HookConfig snapshot) {
+        if (snapshot == config) {
+            return;
+        }
+        config = snapshot;
+        settings = snapshot.settingsFor(packageName);
+        scaler.setMode(settings.scaleMode);
+        prefetcher.setMode(settings.scaleMode);
+        transport = snapshot.transport;
+    }
+
+    // 向 ScreenCaptureService 登记本进程需要的帧尺寸，并更新读帧心跳
+    private void reportDemand(int width, int height) {
+        long now = System.currentTimeMillis();
+        if (consumerTable == null) {
+            if (now - lastConsumerOpenAttempt < 1000) {
+                return;
+            }
+            lastConsumerOpenAttempt = now;
+            consumerTable = ConsumerTable.open(new File(FRAME_DIR + ConsumerTable.CONSUMER_FILE),
+                Process.myPid());
+            if (consumerTable == null) {
+                return;
             }
-        } catch (Exception e) {
-            XposedBridge.log(TAG + ": Error loading config: " + e.getMessage());
         }
+        consumerTable.report(width, height);
+        consumerTable.touch(now);
+        publishMetrics(now);
     }
 
-    private void loadFrameData() {
-        try {
-            File frameFile = new File("/sdcard/Android/data/com.example.ghostcam/files/" + FRAME_FILE);
-            if (!frameFile.exists()) {
+    // 每秒把本进程的指标写入共享表一次，供 MainActivity 显示
+    private void publishMetrics(long now) {
+        if (now - lastMetricsPublish < 1000) {
+            return;
+        }
+        lastMetricsPublish = now;
+        applyConfig(HookConfig.get());
+        if (metricsTable == null) {
+            metricsTable = MetricsTable.open(new File(FRAME_DIR + MetricsTable.METRICS_FILE));
+            if (metricsTable == null) {
                 return;
             }
+        }
+        metricsTable.publish(Process.myPid(), processName, metrics, now);
+    }
 
-            FileInputStream fis = new FileInputStream(frameFile);
-            
-            // 读取宽高
-            frameWidth = (fis.read() << 8) | fis.read();
-            frameHeight = (fis.read() << 8) | fis.read();
-            
-            // 读取帧数据
-            int dataSize = frameWidth * frameHeight * 3 / 2;
-            frameData = new byte[dataSize];
-            fis.read(frameData);
-            fis.close();
-            
-        } catch (IOException e) {
-            XposedBridge.log(TAG + ": Error loading frame: " + e.getMessage());
+    // 登记需求并读取帧。旋转 90/270 度时源帧需要的是交换宽高后的尺寸，再按应用的分辨率上限缩小
+    private boolean prepareFrame(int width, int height, FrameTransform transform) {
+        int sourceWidth = transform.swapsAxes() ? height : width;
+        int sourceHeight = transform.swapsAxes() ? width : height;
+        float scale = settings.limitScale(sourceWidth, sourceHeight);
+        if (scale < 1f) {
+            sourceWidth = Math.max(2, Math.round(sourceWidth * scale) & ~1);
+            sourceHeight = Math.max(2, Math.round(sourceHeight * scale) & ~1);
         }
+        reportDemand(sourceWidth, sourceHeight);
+        if (transport == FrameTransport.RAW) {
+            prefetcher.demand(width, height, transform);
+        }
+        return loadFrameData(sourceWidth, sourceHeight);
     }
 
+    // 只在生产者发布了新帧时才重新读取，否则沿用已缓存的帧
+    private boolean loadFrameData(int width, int height) {
+        if (loadStillFrame(width, height)) {
+            return true;
+        }
+        // 按应用设置的帧率上限读帧，间隔内沿用上一帧
+        long now = System.nanoTime();
+        if (settings.targetFps > 0 && frameData != null && now - lastLoadNanos < 1_000_000_000L / settings.targetFps) {
+            metrics.increment(FrameMetrics.Counter.FRAMES_REPEATED);
+            return true;
+        }
+        lastLoadNanos = now;
+        if (transport == FrameTransport.ENCODED) {
+            return loadEncodedFrame();
+        }
+        long sequence = frameReader.latestSequence();
+        // 预取线程已经读好最新一帧时直接换入，否则 (刚启动或预取尚未完成) 在回调线程上同步读取
+        FramePrefetcher.Prepared prepared = sequence != 0 ? prefetcher.take(sequence) : null;
+        if (prepared != null) {
+            if (prefetched != prepared || frameSequence != prepared.frame.sequence) {
+                prefetched = prepared;
+                frameData = prepared.frame.data;
+                frameWidth = prepared.frame.width;
+                frameHeight = prepared.frame.height;
+                frameSequence = prepared.frame.sequence;
+            } else {
+                metrics.increment(FrameMetrics.Counter.FRAMES_REPEATED);
+            }
+            return true;
+        }
+        if (sequence == 0 || sequence == frameSequence) {
+            if (frameData != null) {
+                metrics.increment(FrameMetrics.Counter.FRAMES_REPEATED);
+            }
+            return frameData != null;
+        }
+        long start = System.nanoTime();
+        if (frameReader.readLatest(frame)) {
+            prefetched = null;
+            frameData = frame.data;
+            frameWidth = frame.width;
+            frameHeight = frame.height;
+            frameSequence = frame.sequence;
+            metrics.add(FrameMetrics.Counter.BYTES_COPIED, frame.length);
+        }
+        metrics.timer(FrameMetrics.Timer.HOOK_LOAD_FRAME).recordSince(start);
+        return frameData != null;
+    }
+
+    // 静态图片按预览尺寸预先缩放好，取到的一般就是目标尺寸，后面的缩放直接返回原数组
+    private boolean loadStillFrame(int width, int height) {
+        if (!stillReader.read(width, height, stillFrame)) {
+            return false;
+        }
+        if (stillFrame.sequence == frameSequence && frameData == stillFrame.data) {
+            metrics.increment(FrameMetrics.Counter.FRAMES_REPEATED);
+        }
+        prefetched = null;
+        frameData = stillFrame.data;
+        frameWidth = stillFrame.width;
+        frameHeight = stillFrame.height;
+        frameSequence = stillFrame.sequence;
+        return true;
+    }
+
+    private boolean loadEncodedFrame() {
+        if (encodedReader == null) {
+            encodedReader = new EncodedFrameReader(new File(FRAME_DIR + PacketRing.STREAM_FILE),
+                CameraHook::createDecoder);
+        }
+        long start = System.nanoTime();
+        if (encodedReader.readLatest(frame)) {
+            prefetched = null;
+            frameData = frame.data;
+            frameWidth = frame.width;
+            frameHeight = frame.height;
+            // 解码器重建后帧序号会从头开始，这里用本地递增的序号作为缩放缓存的代号
+            frameSequence++;
+            metrics.timer(FrameMetrics.Timer.HOOK_DECODE).recordSince(start);
+        } else if (frameData != null) {
+            metrics.increment(FrameMetrics.Counter.FRAMES_REPEATED);
+        }
+        return frameData != null;
+    }
+
+    private static VideoDecoder createDecoder(StreamConfig config) throws IOException {
+        if (config.codec == PacketRing.CODEC_AVC) {
+            return new MediaCodecVideoDecoder(config);
+        }
+        return EncodedFrameReader.SOFTWARE.create(config);
+    }
+
+    // 预取线程已按该尺寸和变换缩放好时返回其结果，否则返回 null
+    private byte[] prescaledFrame(int dstWidth, int dstHeight, FrameTransform transform) {
+        return prefetched != null ? prefetched.scaled(dstWidth, dstHeight, transform) : null;
+    }
+
+    // 缩放结果按帧序号缓存在 scaler 中，同一帧同一尺寸同一变换只计算一次
+    private byte[] getScaledFrame(int dstWidth, int dstHeight, FrameTransform transform) {
+        byte[] prescaled = prescaledFrame(dstWidth, dstHeight, transform);
+        if (prescaled != null) {
+            return prescaled;
+        }
+        long start = System.nanoTime();
+        byte[] scaled = scaler.scale(frameData, frameWidth, frameHeight, dstWidth, dstHeight, transform, frameSequence);
+        metrics.timer(FrameMetrics.Timer.HOOK_SCALE).recordSince(start);
+        return scaled;
+    }
+
+    // appBuffer 为 true 时 data 是应用通过 addCallbackBuffer 提供的缓冲区，直接缩放进去，不经过中间数组
+    private void replacePreviewFrame(byte[] data, Camera camera, boolean appBuffer) {
+        if (data == null) return;
+        long start = System.nanoTime();
+        synchronized (frameLock) {
+            CameraState state = stateFor(camera);
+            // 格式不支持或缓冲区大小不对时保留原始数据
+            if (appBuffer ? !state.acceptsBuffer(data) : (state.frameSize == 0 || data.length < state.frameSize)) {
+                return;
+            }
+            int previewWidth = state.previewWidth;
+            int previewHeight = state.previewHeight;
+            FrameTransform transform = state.transform;
+            if (prepareFrame(previewWidth, previewHeight, transform)) {
+                // 替换预览数据
+                if (state.previewFormat == ImageFormat.YV12) {
+                    byte[] scaled = getScaledFrame(previewWidth, previewHeight, transform);
+                    YuvConversions.nv21ToYv12(scaled, previewWidth, previewHeight, data);
+                } else if (appBuffer && prescaledFrame(previewWidth, previewHeight, transform) == null) {
+                    // 应用缓冲区直接缩放进去；预取线程已缩放好时与下面一样只做拷贝
+                    long scaleStart = System.nanoTime();
+                    scaler.scaleInto(frameData, frameWidth, frameHeight, data, previewWidth, previewHeight, transform);
+                    metrics.timer(FrameMetrics.Timer.HOOK_SCALE).recordSince(scaleStart);
+                } else {
+                    byte[] scaled = getScaledFrame(previewWidth, previewHeight, transform);
+                    System.arraycopy(scaled, 0, data, 0, state.frameSize);
+                }
+                metrics.increment(FrameMetrics.Counter.FRAMES_CONSUMED);
+                metrics.add(FrameMetrics.Counter.BYTES_COPIED, state.frameSize);
+            }
+        }
+        metrics.timer(FrameMetrics.Timer.HOOK_PREVIEW_FRAME).recordSince(start);
+    }
+
+
+    // 调用方需持有帧锁。没有经过 open / setParameters / startPreview 记录的 Camera 才会读一次参数
+    private CameraState stateFor(Camera camera) {
+        CameraState state = cameraStates.get(camera);
+        if (state == null) {
+            state = new CameraState();
+            cameraStates.put(camera, state);
+        }
+        if (!state.configured) {
+            try {
+                state.update(camera.getParameters());
+            } catch (Exception e) {
+                // 读不到时沿用默认的 640x480，下次不再重试
+                state.configured = true;
+            }
+        }
+        return state;
+    }
+
+    // 旧版 Camera API 的帧按传感器方向存放，前置摄像头可选镜像
+    private FrameTransform cameraTransform(int cameraId) {
+        try {
+            Camera.CameraInfo info = new Camera.CameraInfo();
+            Camera.getCameraInfo(cameraId, info);
+            boolean front = info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT;
+            return FrameTransform.forSensor(info.orientation, front && config.mirrorFrontCamera);
+        } catch (Exception e) {
+            XposedBridge.log(TAG + ": Error reading camera info: " + e.getMessage());
+            return FrameTransform.IDENTITY;
+        }
+    }
+
+    // Camera.open() 打开的是第一个后置摄像头
+    private static int defaultCameraId() {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        for (int i = 0; i < Camera.getNumberOfCameras(); i++) {
+            Camera.getCameraInfo(i, info);
+            if (info.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private void logInstall(String stage, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        metrics.timer(FrameMetrics.Timer.HOOK_INSTALL).record(elapsed);
+        XposedBridge.log(TAG + ": Installed " + stage + " hooks in " + elapsed / 1000 + " us");
+    }
 
     private void hookLegacyCamera(XC_LoadPackage.LoadPackageParam lpparam) {
+        // 记录每个 Camera 对应的摄像头，用于计算方向变换
+        XposedBridge.hookAllMethods(Camera.class, "open", new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                installLegacyHooks();
+            }
+
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                Camera camera = (Camera) param.getResult();
+                if (camera == null) return;
+                int cameraId = param.args.length > 0 ? (Integer) param.args[0] : defaultCameraId();
+                FrameTransform transform = cameraTransform(cameraId);
+                synchronized (frameLock) {
+                    CameraState state = new CameraState();
+                    state.transform = transform;
+                    cameraStates.put(camera, state);
+                }
+            }
+        });
+    }
+
+    // 拿到 Camera 实例之前应用无法调用下面这些方法，因此在第一次 open 时安装即可
+    private synchronized void installLegacyHooks() {
+        if (legacyHooksInstalled) {
+            return;
+        }
+        legacyHooksInstalled = true;
+        long start = System.nanoTime();
+
+        // 应用设置的参数只在这里读取，预览回调中直接用缓存的字段
+        XposedHelpers.findAndHookMethod(Camera.class, "setParameters", Camera.Parameters.class,
+            new XC_MethodHook() {
+                @Override
+                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                    if (param.getThrowable() != null || param.args[0] == null) return;
+                    synchronized (frameLock) {
+                        CameraState state = cameraStates.get((Camera) param.thisObject);
+                        if (state == null) {
+                            state = new CameraState();
+                            cameraStates.put((Camera) param.thisObject, state);
+                        }
+                        state.update((Camera.Parameters) param.args[0]);
+                    }
+                }
+            });
+
+        // 没调用过 setParameters 的应用使用默认参数，开始预览时读一次
+        XposedHelpers.findAndHookMethod(Camera.class, "startPreview", new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                synchronized (frameLock) {
+                    stateFor((Camera) param.thisObject);
+                }
+            }
+        });
+
         // Hook Camera.setPreviewCallback
         XposedHelpers.findAndHookMethod(
             Camera.class,
@@ -104,14 +447,7 @@ public class CameraHook implements IXposedHookLoadPackage {
                     param.args[0] = new Camera.PreviewCallback() {
                         @Override
                         public void onPreviewFrame(byte[] data, Camera camera) {
-                            loadFrameData();
-                            if (frameData != null && data != null) {
-                                // 替换预览数据
-                                byte[] scaledData = scaleNV21(frameData, frameWidth, frameHeight, 
-                                    getPreviewWidth(camera), getPreviewHeight(camera));
-                                System.arraycopy(scaledData, 0, data, 0, 
-                                    Math.min(scaledData.length, data.length));
-                            }
+                            replacePreviewFrame(data, camera, false);
                             originalCallback.onPreviewFrame(data, camera);
                         }
                     };
@@ -133,13 +469,7 @@ public class CameraHook implements IXposedHookLoadPackage {
                     param.args[0] = new Camera.PreviewCallback() {
                         @Override
                         public void onPreviewFrame(byte[] data, Camera camera) {
-                            loadFrameData();
-                            if (frameData != null && data != null) {
-                                byte[] scaledData = scaleNV21(frameData, frameWidth, frameHeight,
-                                    getPreviewWidth(camera), getPreviewHeight(camera));
-                                System.arraycopy(scaledData, 0, data, 0,
-                                    Math.min(scaledData.length, data.length));
-                            }
+                            replacePreviewFrame(data, camera, true);
                             originalCallback.onPreviewFrame(data, camera);
                         }
                     };
@@ -147,6 +477,18 @@ public class CameraHook implements IXposedHookLoadPackage {
             }
         );
 
+        // 应用登记缓冲区时就校验大小，预览回调中只查一次表
+        XposedHelpers.findAndHookMethod(Camera.class, "addCallbackBuffer", byte[].class, new XC_MethodHook() {
+            @Override
+            protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                byte[] buffer = (byte[]) param.args[0];
+                if (buffer == null) return;
+                synchronized (frameLock) {
+                    stateFor((Camera) param.thisObject).acceptsBuffer(buffer);
+                }
+            }
+        });
+
         // Hook Camera.setOneShotPreviewCallback
         XposedHelpers.findAndHookMethod(
             Camera.class,
@@ -161,44 +503,53 @@ public class CameraHook implements IXposedHookLoadPackage {
                     param.args[0] = new Camera.PreviewCallback() {
                         @Override
                         public void onPreviewFrame(byte[] data, Camera camera) {
-                            loadFrameData();
-                            if (frameData != null && data != null) {
-                                byte[] scaledData = scaleNV21(frameData, frameWidth, frameHeight,
-                                    getPreviewWidth(camera), getPreviewHeight(camera));
-                                System.arraycopy(scaledData, 0, data, 0,
-                                    Math.min(scaledData.length, data.length));
-                            }
+                            replacePreviewFrame(data, camera, false);
                             originalCallback.onPreviewFrame(data, camera);
                         }
                     };
                 }
             }
         );
+        logInstall("legacy camera", start);
     }
 
-    private int getPreviewWidth(Camera camera) {
+    private void hookCamera2(XC_LoadPackage.LoadPackageParam lpparam) {
         try {
-            Camera.Parameters params = camera.getParameters();
-            return params.getPreviewSize().width;
+            // ImageReader 不知道自己接在哪个摄像头上，以最近打开的摄像头为准
+            XposedBridge.hookAllMethods(CameraManager.class, "openCamera", new XC_MethodHook() {
+                @Override
+                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                    installCamera2Hooks(lpparam.classLoader);
+                    if (!(param.args[0] instanceof String)) return;
+                    try {
+                        CameraCharacteristics characteristics = ((CameraManager) param.thisObject)
+                            .getCameraCharacteristics((String) param.args[0]);
+                        Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+                        Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                        boolean front = facing != null && facing == CameraCharacteristics.LENS_FACING_FRONT;
+                        camera2Transform = FrameTransform.forSensor(orientation != null ? orientation : 0,
+                            front && config.mirrorFrontCamera);
+                    } catch (Exception e) {
+                        XposedBridge.log(TAG + ": Error reading camera characteristics: " + e.getMessage());
+                    }
+                }
+            });
         } catch (Exception e) {
-            return 640;
+            XposedBridge.log(TAG + ": Error hooking Camera2: " + e.getMessage());
         }
     }
 
-    private int getPreviewHeight(Camera camera) {
-        try {
-            Camera.Parameters params = camera.getParameters();
-            return params.getPreviewSize().height;
-        } catch (Exception e) {
-            return 480;
+    // 预览帧要等相机打开、会话建立后才会到达 ImageReader，第一次 openCamera 时安装即可
+    private synchronized void installCamera2Hooks(ClassLoader classLoader) {
+        if (camera2HooksInstalled) {
+            return;
         }
-    }
-
-    private void hookCamera2(XC_LoadPackage.LoadPackageParam lpparam) {
+        camera2HooksInstalled = true;
+        long start = System.nanoTime();
         try {
             // Hook ImageReader.acquireLatestImage
             Class<?> imageReaderClass = XposedHelpers.findClass(
-                "android.media.ImageReader", lpparam.classLoader);
+                "android.media.ImageReader", classLoader);
 
             XposedHelpers.findAndHookMethod(
                 imageReaderClass,
@@ -206,12 +557,15 @@ public class CameraHook implements IXposedHookLoadPackage {
                 new XC_MethodHook() {
                     @Override
                     protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                        Object image = param.getResult();
+                        Image image = (Image) param.getResult();
                         if (image == null) return;
 
-                        loadFrameData();
-                        if (frameData != null) {
-                            replaceImageData(image);
+                        synchronized (frameLock) {
+                            ImageReader reader = (ImageReader) param.thisObject;
+                            FrameTransform transform = transformFor(reader);
+                            if (prepareFrame(reader.getWidth(), reader.getHeight(), transform)) {
+                                replaceImageData(reader, image, transform);
+                            }
                         }
                     }
                 }
@@ -224,12 +578,15 @@ public class CameraHook implements IXposedHookLoadPackage {
                 new XC_MethodHook() {
                     @Override
                     protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                        Object image = param.getResult();
+                        Image image = (Image) param.getResult();
                         if (image == null) return;
 
-                        loadFrameData();
-                        if (frameData != null) {
-                            replaceImageData(image);
+                        synchronized (frameLock) {
+                            ImageReader reader = (ImageReader) param.thisObject;
+                            FrameTransform transform = transformFor(reader);
+                            if (prepareFrame(reader.getWidth(), reader.getHeight(), transform)) {
+                                replaceImageData(reader, image, transform);
+                            }
                         }
                     }
                 }
@@ -238,69 +595,57 @@ public class CameraHook implements IXposedHookLoadPackage {
         } catch (Exception e) {
             XposedBridge.log(TAG + ": Error hooking Camera2: " + e.getMessage());
         }
+        logInstall("Camera2", start);
     }
 
-    private void replaceImageData(Object image) {
-        try {
-            Method getPlanesMethod = image.getClass().getMethod("getPlanes");
-            Object[] planes = (Object[]) getPlanesMethod.invoke(image);
-            
-            if (planes != null && planes.length > 0) {
-                Method getBufferMethod = planes[0].getClass().getMethod("getBuffer");
-                java.nio.ByteBuffer buffer = (java.nio.ByteBuffer) getBufferMethod.invoke(planes[0]);
-                
-                if (buffer != null && frameData != null) {
-                    buffer.clear();
-                    buffer.put(frameData, 0, Math.min(frameData.length, buffer.capacity()));
-                    buffer.flip();
-                }
-            }
-        } catch (Exception e) {
-            XposedBridge.log(TAG + ": Error replacing image data: " + e.getMessage());
+    private FrameTransform transformFor(ImageReader reader) {
+        FrameTransform transform = readerTransforms.get(reader);
+        if (transform == null) {
+            transform = camera2Transform;
+            readerTransforms.put(reader, transform);
         }
+        return transform;
     }
 
-    // 缩放 NV21 数据到目标尺寸
-    private byte[] scaleNV21(byte[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
-        if (srcWidth == dstWidth && srcHeight == dstHeight) {
-            return src;
+    private ImageFrameWriter writerFor(ImageReader reader) {
+        ImageFrameWriter writer = readerWriters.get(reader);
+        if (writer != null) {
+            return writer;
         }
-
-        int dstYSize = dstWidth * dstHeight;
-        int dstUVSize = dstWidth * dstHeight / 2;
-        byte[] dst = new byte[dstYSize + dstUVSize];
-
-        // 简单的最近邻缩放
-        float xRatio = (float) srcWidth / dstWidth;
-        float yRatio = (float) srcHeight / dstHeight;
-
-        // 缩放 Y 平面
-        for (int y = 0; y < dstHeight; y++) {
-            int srcY = (int) (y * yRatio);
-            for (int x = 0; x < dstWidth; x++) {
-                int srcX = (int) (x * xRatio);
-                dst[y * dstWidth + x] = src[srcY * srcWidth + srcX];
-            }
+        switch (reader.getImageFormat()) {
+            case ImageFormat.YUV_420_888:
+                writer = new YuvImageWriter(scaler);
+                break;
+            case ImageFormat.JPEG:
+                if (jpegWriter == null) {
+                    jpegWriter = new JpegImageWriter(scaler);
+                }
+                writer = jpegWriter;
+                break;
+            default:
+                // PRIVATE 等不透明格式无法从 Java 写入
+                writer = ImageFrameWriter.NONE;
+                break;
         }
+        readerWriters.put(reader, writer);
+        return writer;
+    }
 
-        // 缩放 UV 平面
-        int srcUVOffset = srcWidth * srcHeight;
-        int dstUVOffset = dstYSize;
-        
-        for (int y = 0; y < dstHeight / 2; y++) {
-            int srcY = (int) (y * yRatio);
-            for (int x = 0; x < dstWidth / 2; x++) {
-                int srcX = (int) (x * xRatio);
-                int srcIdx = srcUVOffset + srcY * srcWidth + srcX * 2;
-                int dstIdx = dstUVOffset + y * dstWidth + x * 2;
-                
-                if (srcIdx + 1 < src.length && dstIdx + 1 < dst.length) {
-                    dst[dstIdx] = src[srcIdx];         // V
-                    dst[dstIdx + 1] = src[srcIdx + 1]; // U
-                }
+    private void replaceImageData(ImageReader reader, Image image, FrameTransform transform) {
+        long start = System.nanoTime();
+        try {
+            // 有预先缩放好的数据时写入器按恒等变换处理，不再缩放
+            byte[] prescaled = prescaledFrame(reader.getWidth(), reader.getHeight(), transform);
+            boolean written = prescaled != null
+                ? writerFor(reader).write(image, prescaled, reader.getWidth(), reader.getHeight(),
+                    FrameTransform.IDENTITY, frameSequence)
+                : writerFor(reader).write(image, frameData, frameWidth, frameHeight, transform, frameSequence);
+            if (written) {
+                metrics.increment(FrameMetrics.Counter.FRAMES_CONSUMED);
             }
+            metrics.timer(FrameMetrics.Timer.HOOK_IMAGE_WRITE).recordSince(start);
+        } catch (Exception e) {
+            XposedBridge.log(TAG + ": Error replacing image data: " + e.getMessage());
         }
-
-        return dst;
     }
 }
@@ -0,0 +1,68 @@
+package com.example.ghostcam.xposed;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+
+import com.example.ghostcam.frame.FrameTransform;
+import com.example.ghostcam.frame.NV21Scaler;
+import com.example.ghostcam.frame.YuvConversions;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 单个旧版 Camera 实例的预览配置。
+ *
+ * 在 open / setParameters / startPreview 时更新，预览回调的热路径只读这些字段，
+ * 不再每帧调用 getParameters() (一次 binder 调用加一次参数字符串解析)。
+ */
+final class CameraState {
+
+    int previewWidth = 640;
+    int previewHeight = 480;
+    int previewFormat = ImageFormat.NV21;
+    FrameTransform transform = FrameTransform.IDENTITY;
+    // 是否已经从 Parameters 读到过真实的配置
+    boolean configured;
+    // 当前格式下一帧的字节数，不支持的格式为 0
+    int frameSize = frameSize(previewFormat, previewWidth, previewHeight);
+    // addCallbackBuffer 登记的缓冲区及其大小是否合格，配置变化后重新校验
+    private final Map<byte[], Boolean> callbackBuffers = new WeakHashMap<>();
+
+    // Parameters 是应用进程内的对象，读取它不涉及 IPC
+    void update(Camera.Parameters params) {
+        Camera.Size size = params.getPreviewSize();
+        if (size != null) {
+            previewWidth = size.width;
+            previewHeight = size.height;
+        }
+        previewFormat = params.getPreviewFormat();
+        configured = true;
+        int length = frameSize(previewFormat, previewWidth, previewHeight);
+        if (length != frameSize) {
+            frameSize = length;
+            callbackBuffers.clear();
+        }
+    }
+
+    // 每个缓冲区只校验一次；太小的缓冲区真实相机也不会往里填帧，这里同样不写
+    boolean acceptsBuffer(byte[] buffer) {
+        Boolean valid = callbackBuffers.get(buffer);
+        if (valid == null) {
+            valid = frameSize > 0 && buffer.length >= frameSize;
+            callbackBuffers.put(buffer, valid);
+        }
+        return valid;
+    }
+
+    static int frameSize(int format, int width, int height) {
+        switch (format) {
+            case ImageFormat.NV21:
+                return NV21Scaler.frameSize(width, height);
+            case ImageFormat.YV12:
+                return YuvConversions.yv12Size(width, height);
+            default:
+                return 0;
+        }
+    }
+}
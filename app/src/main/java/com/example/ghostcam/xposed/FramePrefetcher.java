@@ -0,0 +1,199 @@
+package com.example.ghostcam.xposed;
+
+import com.example.ghostcam.frame.Frame;
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.FrameRingReader;
+import com.example.ghostcam.frame.FrameTransform;
+import com.example.ghostcam.frame.NV21Scaler;
+import com.example.ghostcam.frame.ScaleMode;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 被 hook 进程中的预取线程：生产者发布新帧后立即读出，并提前缩放到应用最近请求过的尺寸，
+ * 相机回调线程上只剩一次拷贝。
+ *
+ * 线程与回调之间是三缓冲：预取线程填满自己的一份后与中间一份交换，回调线程发现中间一份更新时
+ * 用自己的前台一份与之交换，三份各自只属于一方，读写都不需要加锁。
+ * 一段时间没有回调请求帧 (应用关闭了相机) 后线程自行退出，下次请求时再启动。
+ */
+final class FramePrefetcher {
+
+    // 同时预先缩放的目标尺寸个数 (预览 + 拍照 / 分析用的 ImageReader)
+    private static final int MAX_TARGETS = 2;
+    private static final long WAIT_TIMEOUT_NANOS = 500_000_000L;
+    private static final long IDLE_STOP_NANOS = 3_000_000_000L;
+
+    static final class Prepared {
+        final Frame frame = new Frame();
+        // 本地递增的代号，用于判断中间一份是否比前台一份新
+        long generation;
+        final Scaled[] scaled = new Scaled[MAX_TARGETS];
+        int scaledCount;
+
+        // 已经按该尺寸和变换缩放好的数据，没有时返回 null
+        byte[] scaled(int width, int height, FrameTransform transform) {
+            for (int i = 0; i < scaledCount; i++) {
+                Scaled s = scaled[i];
+                if (s.width == width && s.height == height && s.transform.equals(transform)) {
+                    return s.data;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Scaled {
+        int width;
+        int height;
+        FrameTransform transform;
+        byte[] data;
+    }
+
+    private static final class Target {
+        final int width;
+        final int height;
+        final FrameTransform transform;
+
+        Target(int width, int height, FrameTransform transform) {
+            this.width = width;
+            this.height = height;
+            this.transform = transform;
+        }
+
+        boolean matches(int width, int height, FrameTransform transform) {
+            return this.width == width && this.height == height && this.transform.equals(transform);
+        }
+    }
+
+    private final FrameRingReader reader;
+    private final FrameMetrics metrics = FrameMetrics.get();
+    private final AtomicReference<Prepared> ready = new AtomicReference<>(new Prepared());
+    // 只由回调线程 (持有帧锁) 访问
+    private Prepared front = new Prepared();
+    // 只由预取线程访问
+    private Prepared back = new Prepared();
+    private final NV21Scaler scaler = new NV21Scaler();
+    private long generation;
+
+    // 最近请求过的目标，写时复制
+    private volatile Target[] targets = new Target[0];
+    private volatile ScaleMode mode = ScaleMode.NEAREST;
+    private volatile long lastDemandNanos;
+    private volatile Thread thread;
+
+    FramePrefetcher(FrameRingReader reader) {
+        this.reader = reader;
+    }
+
+    void setMode(ScaleMode mode) {
+        this.mode = mode;
+    }
+
+    // 回调线程每次取帧时调用：登记目标尺寸，线程未运行时启动
+    void demand(int width, int height, FrameTransform transform) {
+        lastDemandNanos = System.nanoTime();
+        Target[] current = targets;
+        boolean known = false;
+        for (Target target : current) {
+            if (target.matches(width, height, transform)) {
+                known = true;
+                break;
+            }
+        }
+        if (!known) {
+            // 超出个数时淘汰最早登记的目标
+            int keep = Math.min(current.length, MAX_TARGETS - 1);
+            Target[] updated = new Target[keep + 1];
+            System.arraycopy(current, current.length - keep, updated, 0, keep);
+            updated[keep] = new Target(width, height, transform);
+            targets = updated;
+        }
+        if (thread == null) {
+            start();
+        }
+    }
+
+    /**
+     * 回调线程调用 (持有帧锁)，sequence 为帧环当前的发布序号。预取结果正是这一帧时换入前台并返回，
+     * 调用方必须改用返回的这一份 (换出的旧前台随即交还给预取线程改写)；没有可用结果时返回 null，调用方自行同步读取。
+     */
+    Prepared take(long sequence) {
+        Prepared candidate = ready.get();
+        if (candidate.generation > front.generation && candidate.frame.sequence == sequence) {
+            // 两次访问之间预取线程可能又换入了更新的一帧，同样可以使用
+            front = ready.getAndSet(front);
+            return front;
+        }
+        return front.frame.sequence == sequence ? front : null;
+    }
+
+    private synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        Thread worker = new Thread(this::run, "GhostCamPrefetch");
+        worker.setDaemon(true);
+        thread = worker;
+        worker.start();
+    }
+
+    private void run() {
+        long sequence = 0;
+        while (true) {
+            // 退出与 demand() 中的启动互斥；请求恰好与退出交错时，下一次请求会重新启动线程
+            synchronized (this) {
+                if (System.nanoTime() - lastDemandNanos > IDLE_STOP_NANOS) {
+                    thread = null;
+                    return;
+                }
+            }
+            long next = reader.awaitNewer(sequence, WAIT_TIMEOUT_NANOS);
+            if (next == 0) {
+                continue;
+            }
+            long start = System.nanoTime();
+            if (!reader.readLatest(back.frame)) {
+                // 读不到完整的帧 (被覆盖或校验失败) 时等下一次发布，不原地重试
+                sequence = next;
+                continue;
+            }
+            sequence = back.frame.sequence;
+            metrics.add(FrameMetrics.Counter.BYTES_COPIED, back.frame.length);
+            prescale(back);
+            back.generation = ++generation;
+            back = ready.getAndSet(back);
+            metrics.timer(FrameMetrics.Timer.HOOK_PREFETCH).recordSince(start);
+        }
+    }
+
+    private void prescale(Prepared prepared) {
+        scaler.setMode(mode);
+        Frame frame = prepared.frame;
+        Target[] current = targets;
+        int count = 0;
+        for (Target target : current) {
+            // 尺寸相同且无需变换时回调直接使用原帧
+            if (target.width == frame.width && target.height == frame.height && target.transform.isIdentity()) {
+                continue;
+            }
+            Scaled scaled = prepared.scaled[count];
+            if (scaled == null) {
+                scaled = new Scaled();
+                prepared.scaled[count] = scaled;
+            }
+            int size = NV21Scaler.frameSize(target.width, target.height);
+            if (scaled.data == null || scaled.data.length != size) {
+                scaled.data = new byte[size];
+                metrics.increment(FrameMetrics.Counter.ALLOCATIONS);
+            }
+            scaler.scaleInto(frame.data, frame.width, frame.height, scaled.data, target.width, target.height,
+                target.transform);
+            scaled.width = target.width;
+            scaled.height = target.height;
+            scaled.transform = target.transform;
+            count++;
+        }
+        prepared.scaledCount = count;
+    }
+}
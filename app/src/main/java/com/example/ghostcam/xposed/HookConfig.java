@@ -0,0 +1,186 @@
+package com.example.ghostcam.xposed;
+
+import com.example.ghostcam.frame.FrameTransport;
+import com.example.ghostcam.frame.ScaleMode;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.robv.android.xposed.XSharedPreferences;
+
+/**
+ * MainActivity 写入的 GhostCamConfig 的不可变快照。
+ *
+ * 配置在 zygote 中 (CameraHook.initZygote) 首次解析，应用进程继承这份快照；之后只在修改时间变化时
+ * 才重新解析，解析结果在线程间直接共享。非目标进程的开销只有一次文件状态检查和一次哈希查找。
+ * 除全局配置外还支持按应用覆盖，键名形如 "pkg.<包名>.target_fps"，由 MainActivity 中选中应用的设置写入。
+ */
+final class HookConfig {
+
+    private static final String MODULE_PACKAGE = "com.example.ghostcam";
+    private static final String PREFS_NAME = "GhostCamConfig";
+
+    static final String KEY_TARGET_PACKAGE = "target_package";
+    // 多个目标应用，与 target_package 取并集
+    static final String KEY_TARGET_PACKAGES = "target_packages";
+    static final String KEY_MIRROR_FRONT = "mirror_front_camera";
+    static final String PACKAGE_PREFIX = "pkg.";
+    // 每个应用可覆盖的项：消费端读帧帧率上限和源帧分辨率上限，0 表示不限
+    static final String KEY_TARGET_FPS = "target_fps";
+    static final String KEY_MAX_WIDTH = "max_width";
+    static final String KEY_MAX_HEIGHT = "max_height";
+
+    private static final HookConfig EMPTY = new HookConfig();
+
+    private static XSharedPreferences prefs;
+    private static volatile HookConfig current = EMPTY;
+
+    final boolean disabled;
+    // 为空表示 hook 所有应用
+    final Set<String> targets;
+    final FrameTransport transport;
+    final boolean mirrorFrontCamera;
+    final Settings defaults;
+    private final Map<String, Settings> packages;
+
+    private HookConfig() {
+        disabled = false;
+        targets = Collections.emptySet();
+        transport = FrameTransport.RAW;
+        mirrorFrontCamera = false;
+        defaults = new Settings(ScaleMode.NEAREST, 0, 0, 0);
+        packages = Collections.emptyMap();
+    }
+
+    private HookConfig(Map<String, ?> values) {
+        disabled = Boolean.TRUE.equals(values.get("disable_ghostcam"));
+        transport = FrameTransport.fromName(stringValue(values.get(FrameTransport.PREF_KEY)));
+        mirrorFrontCamera = Boolean.TRUE.equals(values.get(KEY_MIRROR_FRONT));
+        defaults = new Settings(ScaleMode.fromName(stringValue(values.get(ScaleMode.PREF_KEY))), 0, 0, 0);
+
+        // target_packages 与 target_package 取并集，空字符串不算目标
+        Set<String> set = new HashSet<>();
+        Object many = values.get(KEY_TARGET_PACKAGES);
+        if (many instanceof Set) {
+            for (Object name : (Set<?>) many) {
+                if (name instanceof String && !((String) name).isEmpty()) {
+                    set.add((String) name);
+                }
+            }
+        }
+        String single = stringValue(values.get(KEY_TARGET_PACKAGE));
+        if (single != null && !single.isEmpty()) {
+            set.add(single);
+        }
+        targets = Collections.unmodifiableSet(set);
+
+        // 先按包名收集覆盖项，再与全局配置合并；包名本身可以含点，键名取最后一个点之后的部分
+        Map<String, Map<String, Object>> overrides = new HashMap<>();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            String key = entry.getKey();
+            int split = key.lastIndexOf('.');
+            if (!key.startsWith(PACKAGE_PREFIX) || split <= PACKAGE_PREFIX.length()) {
+                continue;
+            }
+            String packageName = key.substring(PACKAGE_PREFIX.length(), split);
+            overrides.computeIfAbsent(packageName, k -> new HashMap<>())
+                .put(key.substring(split + 1), entry.getValue());
+        }
+        Map<String, Settings> map = new HashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entry : overrides.entrySet()) {
+            map.put(entry.getKey(), defaults.with(entry.getValue()));
+        }
+        packages = Collections.unmodifiableMap(map);
+    }
+
+    // 由配置文件的全部键值 (SharedPreferences.getAll 的结果) 生成快照，不依赖 Xposed，可在主机上测试
+    static HookConfig parse(Map<String, ?> values) {
+        return values != null ? new HookConfig(values) : EMPTY;
+    }
+
+    private static String stringValue(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    // 首次调用 (通常在 zygote 中) 时解析；之后只在配置文件变化时重新解析
+    static HookConfig get() {
+        synchronized (HookConfig.class) {
+            try {
+                if (prefs == null) {
+                    prefs = new XSharedPreferences(MODULE_PACKAGE, PREFS_NAME);
+                    current = parse(prefs.getAll());
+                } else if (prefs.hasFileChanged()) {
+                    prefs.reload();
+                    current = parse(prefs.getAll());
+                }
+            } catch (Exception e) {
+                // 读取失败时沿用上一份快照
+            }
+            return current;
+        }
+    }
+
+    boolean isTarget(String packageName) {
+        return targets.isEmpty() || targets.contains(packageName);
+    }
+
+    Settings settingsFor(String packageName) {
+        Settings settings = packages.get(packageName);
+        return settings != null ? settings : defaults;
+    }
+
+    /**
+     * 单个应用的设置。
+     */
+    static final class Settings {
+        final ScaleMode scaleMode;
+        final int targetFps;
+        final int maxWidth;
+        final int maxHeight;
+
+        Settings(ScaleMode scaleMode, int targetFps, int maxWidth, int maxHeight) {
+            this.scaleMode = scaleMode;
+            this.targetFps = targetFps;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        Settings with(Map<String, Object> values) {
+            Object mode = values.get(ScaleMode.PREF_KEY);
+            return new Settings(
+                mode instanceof String ? ScaleMode.fromName((String) mode) : scaleMode,
+                intValue(values.get(KEY_TARGET_FPS), targetFps),
+                intValue(values.get(KEY_MAX_WIDTH), maxWidth),
+                intValue(values.get(KEY_MAX_HEIGHT), maxHeight));
+        }
+
+        // 请求的源帧尺寸需要乘的缩小比例，不超过上限时为 1
+        float limitScale(int width, int height) {
+            float scale = 1f;
+            if (maxWidth > 0 && width > maxWidth) {
+                scale = Math.min(scale, (float) maxWidth / width);
+            }
+            if (maxHeight > 0 && height > maxHeight) {
+                scale = Math.min(scale, (float) maxHeight / height);
+            }
+            return scale;
+        }
+
+        private static int intValue(Object value, int fallback) {
+            if (value instanceof Integer) {
+                return (Integer) value;
+            }
+            if (value instanceof String) {
+                try {
+                    return Integer.parseInt((String) value);
+                } catch (NumberFormatException e) {
+                    return fallback;
+                }
+            }
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.ghostcam.xposed;
+
+import android.media.Image;
+
+import com.example.ghostcam.frame.FrameTransform;
+
+/**
+ * 按 ImageReader 格式把 NV21 帧写入 Camera2 Image。
+ */
+interface ImageFrameWriter {
+
+    /** 不可写的格式 (如 PRIVATE)，保持原图像不变 */
+    ImageFrameWriter NONE = (image, nv21, width, height, transform, generation) -> false;
+
+    // transform 为缩放时一并应用的方向变换；返回 false 表示图像未被替换
+    boolean write(Image image, byte[] nv21, int width, int height, FrameTransform transform, long generation);
+}
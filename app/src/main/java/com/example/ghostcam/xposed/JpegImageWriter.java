@@ -0,0 +1,87 @@
+package com.example.ghostcam.xposed;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+import android.media.Image;
+
+import com.example.ghostcam.frame.FrameTransform;
+import com.example.ghostcam.frame.NV21Scaler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 把 NV21 帧编码为 JPEG 写入 Camera2 的 JPEG Image。
+ *
+ * 编码结果按 (帧代号, 宽, 高) 缓存，同一帧被多次 acquire 时只编码一次。
+ * 非线程安全，调用方需持有帧锁。
+ */
+final class JpegImageWriter implements ImageFrameWriter {
+
+    private static final int QUALITY = 90;
+
+    private final NV21Scaler scaler;
+    private final JpegBuffer jpeg = new JpegBuffer();
+
+    private long cachedGeneration = -1;
+    private int cachedWidth;
+    private int cachedHeight;
+    private FrameTransform cachedTransform;
+    private boolean cacheValid;
+
+    JpegImageWriter(NV21Scaler scaler) {
+        this.scaler = scaler;
+    }
+
+    @Override
+    public boolean write(Image image, byte[] nv21, int srcWidth, int srcHeight, FrameTransform transform,
+                         long generation) {
+        if (image.getFormat() != ImageFormat.JPEG) {
+            return false;
+        }
+        Image.Plane[] planes = image.getPlanes();
+        if (planes == null || planes.length < 1) {
+            return false;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (!cacheValid || generation != cachedGeneration || width != cachedWidth || height != cachedHeight
+                || !transform.equals(cachedTransform)) {
+            byte[] frame = scaler.scale(nv21, srcWidth, srcHeight, width, height, transform, generation);
+            jpeg.reset();
+            YuvImage yuv = new YuvImage(frame, ImageFormat.NV21, width, height, null);
+            cacheValid = yuv.compressToJpeg(new Rect(0, 0, width, height), QUALITY, jpeg);
+            cachedGeneration = generation;
+            cachedWidth = width;
+            cachedHeight = height;
+            cachedTransform = transform;
+            if (!cacheValid) {
+                return false;
+            }
+        }
+
+        // JPEG 缓冲区容量固定，放不下时保留原图像
+        ByteBuffer buffer = planes[0].getBuffer();
+        int length = jpeg.size();
+        if (length > buffer.capacity()) {
+            return false;
+        }
+        buffer.clear();
+        buffer.put(jpeg.array(), 0, length);
+        buffer.flip();
+        return true;
+    }
+
+    // 直接暴露内部数组，避免 toByteArray() 每次复制
+    private static final class JpegBuffer extends ByteArrayOutputStream {
+        JpegBuffer() {
+            super(256 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
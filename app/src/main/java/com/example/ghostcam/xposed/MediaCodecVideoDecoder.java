@@ -0,0 +1,142 @@
+package com.example.ghostcam.xposed;
+
+import android.media.Image;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+
+import com.example.ghostcam.ImageToNv21;
+import com.example.ghostcam.frame.Frame;
+import com.example.ghostcam.frame.FrameMetrics;
+import com.example.ghostcam.frame.Packet;
+import com.example.ghostcam.frame.StreamConfig;
+import com.example.ghostcam.frame.VideoDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 用 MediaCodec 硬件解码 H.264 流，输出转换为 NV21。
+ *
+ * 同步模式、零超时：hook 回调里不等待解码器，输出积压时只转换最新的一帧。
+ * 包大于输入缓冲区时不截断送入 (会解出花屏并污染后续参考帧)，而是丢弃它并跳到下一个关键帧重新同步。
+ */
+final class MediaCodecVideoDecoder implements VideoDecoder {
+
+    // queueInput 的结果
+    private static final int QUEUED = 0;
+    private static final int NO_BUFFER = 1;
+    private static final int DROPPED = 2;
+
+    private final MediaCodec codec;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final byte[] config;
+    private boolean configQueued;
+    // SPS/PPS 放不进输入缓冲区时解码器无法工作，之后的包全部丢弃，直到流配置变化后被重建
+    private boolean configRejected;
+    // 丢过包，后续的非关键帧无法正确解码
+    private boolean awaitingKeyFrame;
+    // 因包放不下而没有送出的输入缓冲区，下一个包直接使用
+    private int heldInput = -1;
+    private long decodedFrames;
+    private final ImageToNv21 converter = new ImageToNv21();
+
+    MediaCodecVideoDecoder(StreamConfig streamConfig) throws IOException {
+        MediaFormat format = MediaFormat.createVideoFormat(
+            MediaFormat.MIMETYPE_VIDEO_AVC, streamConfig.width, streamConfig.height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+            MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+        codec = MediaCodec.createDecoderByType(MediaFormat.MIMETYPE_VIDEO_AVC);
+        try {
+            codec.configure(format, null, null, 0);
+            codec.start();
+        } catch (RuntimeException e) {
+            codec.release();
+            throw new IOException("Cannot start AVC decoder: " + e.getMessage(), e);
+        }
+        config = streamConfig.data.clone();
+    }
+
+    @Override
+    public boolean queue(Packet packet) {
+        // SPS/PPS 作为第一个输入送入
+        if (!configQueued && !configRejected) {
+            int result = queueInput(config, config.length, 0, MediaCodec.BUFFER_FLAG_CODEC_CONFIG);
+            if (result == NO_BUFFER) {
+                return false;
+            }
+            configQueued = result == QUEUED;
+            configRejected = result == DROPPED;
+        }
+        if (configRejected || (awaitingKeyFrame && !packet.isKeyFrame())) {
+            FrameMetrics.get().increment(FrameMetrics.Counter.FRAMES_DROPPED);
+            return true;
+        }
+        return queueInput(packet.data, packet.length, packet.ptsUs, 0) != NO_BUFFER;
+    }
+
+    // 没有空闲的输入缓冲区时返回 NO_BUFFER；放不下时丢弃并返回 DROPPED，缓冲区留给下一个包
+    private int queueInput(byte[] data, int length, long ptsUs, int flags) {
+        int index = heldInput >= 0 ? heldInput : codec.dequeueInputBuffer(0);
+        heldInput = -1;
+        if (index < 0) {
+            return NO_BUFFER;
+        }
+        ByteBuffer input = codec.getInputBuffer(index);
+        input.clear();
+        if (length > input.capacity()) {
+            heldInput = index;
+            awaitingKeyFrame = true;
+            FrameMetrics.get().increment(FrameMetrics.Counter.FRAMES_DROPPED);
+            return DROPPED;
+        }
+        input.put(data, 0, length);
+        codec.queueInputBuffer(index, 0, length, ptsUs, flags);
+        if ((flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+            awaitingKeyFrame = false;
+        }
+        return QUEUED;
+    }
+
+    @Override
+    public boolean poll(Frame out) {
+        int latest = -1;
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, 0);
+            if (index >= 0) {
+                if (latest >= 0) {
+                    codec.releaseOutputBuffer(latest, false);
+                }
+                latest = index;
+            } else if (index != MediaCodec.INFO_OUTPUT_FORMAT_CHANGED
+                    && index != MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                break;
+            }
+        }
+        if (latest < 0) {
+            return false;
+        }
+
+        boolean converted = false;
+        Image image = codec.getOutputImage(latest);
+        if (image != null) {
+            converted = converter.convert(image, out);
+            image.close();
+            if (converted) {
+                out.sequence = ++decodedFrames;
+            }
+        }
+        codec.releaseOutputBuffer(latest, false);
+        return converted;
+    }
+
+    @Override
+    public void close() {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            // 解码器已处于错误状态
+        }
+        codec.release();
+    }
+}
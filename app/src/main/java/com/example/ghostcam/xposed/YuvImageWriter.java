@@ -0,0 +1,206 @@
+package com.example.ghostcam.xposed;
+
+import android.graphics.ImageFormat;
+import android.media.Image;
+
+import com.example.ghostcam.frame.FrameTransform;
+import com.example.ghostcam.frame.NV21Scaler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把 NV21 帧写入 Camera2 的 YUV_420_888 Image。
+ *
+ * 帧先按 Image 的实际尺寸缩放，再按各平面的 rowStride / pixelStride 写入。
+ * pixelStride 为 2 时底层通常是 NV21 或 NV12 的半平面布局，探测到后整行批量写入。
+ * 同一个 ImageReader 的缓冲区布局不会变化，每个 ImageReader 使用一个实例，布局只探测一次。
+ * 非线程安全，调用方需持有帧锁。
+ */
+final class YuvImageWriter implements ImageFrameWriter {
+
+    private static final int LAYOUT_UNDETECTED = -1;
+    private static final int LAYOUT_UNKNOWN = 0;
+    private static final int LAYOUT_NV21 = 1; // V 在前，U 平面 = V 平面 + 1
+    private static final int LAYOUT_NV12 = 2; // U 在前，V 平面 = U 平面 + 1
+
+    private final NV21Scaler scaler;
+
+    private byte[] rowBuffer = new byte[0];
+    private int layout = LAYOUT_UNDETECTED;
+
+    YuvImageWriter(NV21Scaler scaler) {
+        this.scaler = scaler;
+    }
+
+    @Override
+    public boolean write(Image image, byte[] nv21, int srcWidth, int srcHeight, FrameTransform transform,
+                         long generation) {
+        if (image.getFormat() != ImageFormat.YUV_420_888) {
+            return false;
+        }
+        Image.Plane[] planes = image.getPlanes();
+        if (planes == null || planes.length < 3) {
+            return false;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] frame = scaler.scale(nv21, srcWidth, srcHeight, width, height, transform, generation);
+
+        writeLuma(planes[0], frame, width, height);
+        writeChroma(planes[1], planes[2], frame, width, height);
+        return true;
+    }
+
+    private void writeLuma(Image.Plane plane, byte[] frame, int width, int height) {
+        ByteBuffer buffer = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int limit = buffer.limit();
+
+        if (rowStride == width) {
+            buffer.position(0);
+            buffer.put(frame, 0, Math.min(width * height, limit));
+            buffer.position(0);
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            int offset = y * rowStride;
+            if (offset >= limit) {
+                break;
+            }
+            buffer.position(offset);
+            buffer.put(frame, y * width, Math.min(width, limit - offset));
+        }
+        buffer.position(0);
+    }
+
+    private void writeChroma(Image.Plane uPlane, Image.Plane vPlane, byte[] frame, int width, int height) {
+        ByteBuffer u = uPlane.getBuffer();
+        ByteBuffer v = vPlane.getBuffer();
+        int rowStride = uPlane.getRowStride();
+        int pixelStride = uPlane.getPixelStride();
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        int vuBase = width * height;
+
+        if (pixelStride == 2) {
+            if (layout == LAYOUT_UNDETECTED) {
+                layout = detectLayout(u, v);
+            }
+            if (layout == LAYOUT_NV21) {
+                // 源数据本身就是 VU 交错，整行写入 V 平面即可
+                writeInterleaved(v, frame, vuBase, width, rowStride, chromaWidth, chromaHeight, false);
+                fixLastSample(u, frame, vuBase + (chromaHeight - 1) * width + (chromaWidth - 1) * 2 + 1);
+                return;
+            }
+            if (layout == LAYOUT_NV12) {
+                writeInterleaved(u, frame, vuBase, width, rowStride, chromaWidth, chromaHeight, true);
+                fixLastSample(v, frame, vuBase + (chromaHeight - 1) * width + (chromaWidth - 1) * 2);
+                return;
+            }
+        }
+
+        // 平面布局或未知布局：逐行拆分 U、V
+        int vRowStride = vPlane.getRowStride();
+        int vPixelStride = vPlane.getPixelStride();
+        writePlanar(u, frame, vuBase + 1, width, rowStride, pixelStride, chromaWidth, chromaHeight);
+        writePlanar(v, frame, vuBase, width, vRowStride, vPixelStride, chromaWidth, chromaHeight);
+    }
+
+    // 通过写入探测两个色度平面是否共享同一块交错内存
+    private static int detectLayout(ByteBuffer u, ByteBuffer v) {
+        if (v.limit() > 1 && u.limit() > 0) {
+            byte saved = v.get(1);
+            v.put(1, (byte) 0x5a);
+            boolean first = u.get(0) == 0x5a;
+            v.put(1, (byte) 0xa5);
+            boolean second = u.get(0) == (byte) 0xa5;
+            v.put(1, saved);
+            if (first && second) {
+                return LAYOUT_NV21;
+            }
+        }
+        if (u.limit() > 1 && v.limit() > 0) {
+            byte saved = u.get(1);
+            u.put(1, (byte) 0x5a);
+            boolean first = v.get(0) == 0x5a;
+            u.put(1, (byte) 0xa5);
+            boolean second = v.get(0) == (byte) 0xa5;
+            u.put(1, saved);
+            if (first && second) {
+                return LAYOUT_NV12;
+            }
+        }
+        return LAYOUT_UNKNOWN;
+    }
+
+    private void writeInterleaved(ByteBuffer buffer, byte[] frame, int vuBase, int width, int rowStride,
+                                  int chromaWidth, int chromaHeight, boolean swap) {
+        int limit = buffer.limit();
+        int rowBytes = chromaWidth * 2;
+        byte[] row = swap ? ensureRowBuffer(rowBytes) : null;
+        for (int y = 0; y < chromaHeight; y++) {
+            int offset = y * rowStride;
+            if (offset >= limit) {
+                break;
+            }
+            int src = vuBase + y * width;
+            int length = Math.min(rowBytes, limit - offset);
+            buffer.position(offset);
+            if (swap) {
+                for (int i = 0; i < rowBytes; i += 2) {
+                    row[i] = frame[src + i + 1];
+                    row[i + 1] = frame[src + i];
+                }
+                buffer.put(row, 0, length);
+            } else {
+                buffer.put(frame, src, length);
+            }
+        }
+        buffer.position(0);
+    }
+
+    // 交错平面最后一个样本只在另一个平面的缓冲区范围内
+    private static void fixLastSample(ByteBuffer buffer, byte[] frame, int srcIndex) {
+        int index = buffer.limit() - 1;
+        if (index >= 0 && srcIndex < frame.length) {
+            buffer.put(index, frame[srcIndex]);
+        }
+    }
+
+    // srcStart 指向第一个 V (或 U) 样本，源中同一分量的样本间隔为 2
+    private void writePlanar(ByteBuffer buffer, byte[] frame, int srcStart, int width, int rowStride,
+                             int pixelStride, int chromaWidth, int chromaHeight) {
+        int limit = buffer.limit();
+        if (pixelStride == 1) {
+            byte[] row = ensureRowBuffer(chromaWidth);
+            for (int y = 0; y < chromaHeight; y++) {
+                int offset = y * rowStride;
+                if (offset >= limit) {
+                    break;
+                }
+                int src = srcStart + y * width;
+                for (int x = 0; x < chromaWidth; x++) {
+                    row[x] = frame[src + x * 2];
+                }
+                buffer.position(offset);
+                buffer.put(row, 0, Math.min(chromaWidth, limit - offset));
+            }
+            buffer.position(0);
+            return;
+        }
+        for (int y = 0; y < chromaHeight; y++) {
+            int src = srcStart + y * width;
+            for (int x = 0, offset = y * rowStride; x < chromaWidth && offset < limit; x++, offset += pixelStride) {
+                buffer.put(offset, frame[src + x * 2]);
+            }
+        }
+    }
+
+    private byte[] ensureRowBuffer(int size) {
+        if (rowBuffer.length < size) {
+            rowBuffer = new byte[size];
+        }
+        return rowBuffer;
+    }
+}
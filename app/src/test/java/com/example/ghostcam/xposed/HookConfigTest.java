@@ -0,0 +1,116 @@
+package com.example.ghostcam.xposed;
+
+import com.example.ghostcam.frame.FrameTransport;
+import com.example.ghostcam.frame.ScaleMode;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * HookConfig.parse：目标应用集合 (为空时 hook 所有应用) 和 "pkg.<包名>.<键>" 按应用覆盖的解析。
+ */
+public class HookConfigTest {
+
+    @Test
+    public void emptyConfigTargetsEveryPackage() {
+        HookConfig config = HookConfig.parse(Collections.emptyMap());
+        assertTrue(config.targets.isEmpty());
+        assertTrue(config.isTarget("com.example.any"));
+        assertFalse(config.disabled);
+        assertEquals(config.transport, FrameTransport.RAW);
+        assertEquals(config.defaults.scaleMode, ScaleMode.NEAREST);
+    }
+
+    @Test
+    public void missingPrefsTargetEveryPackage() {
+        assertTrue(HookConfig.parse(null).isTarget("com.example.any"));
+    }
+
+    // 两个目标键为空值时仍然表示所有应用
+    @Test
+    public void blankTargetsTargetEveryPackage() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(HookConfig.KEY_TARGET_PACKAGE, "");
+        values.put(HookConfig.KEY_TARGET_PACKAGES, new HashSet<>(Collections.singletonList("")));
+        HookConfig config = HookConfig.parse(values);
+        assertTrue(config.targets.isEmpty());
+        assertTrue(config.isTarget("com.example.any"));
+    }
+
+    @Test
+    public void targetsAreUnionOfBothKeys() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(HookConfig.KEY_TARGET_PACKAGE, "com.example.one");
+        values.put(HookConfig.KEY_TARGET_PACKAGES, new HashSet<>(Arrays.asList("com.example.two", "com.example.three")));
+        HookConfig config = HookConfig.parse(values);
+        assertEquals(config.targets, new HashSet<>(Arrays.asList("com.example.one", "com.example.two", "com.example.three")));
+        assertTrue(config.isTarget("com.example.two"));
+        assertFalse(config.isTarget("com.example.other"));
+    }
+
+    @Test
+    public void globalSettings() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("disable_ghostcam", true);
+        values.put(HookConfig.KEY_MIRROR_FRONT, true);
+        values.put(ScaleMode.PREF_KEY, "bilinear");
+        values.put(FrameTransport.PREF_KEY, FrameTransport.ENCODED.name());
+        HookConfig config = HookConfig.parse(values);
+        assertTrue(config.disabled);
+        assertTrue(config.mirrorFrontCamera);
+        assertEquals(config.transport, FrameTransport.ENCODED);
+        assertEquals(config.defaults.scaleMode, ScaleMode.BILINEAR);
+    }
+
+    // 包名含点，键名取最后一个点之后的部分；没写的项沿用全局配置
+    @Test
+    public void packageOverridesMergeWithDefaults() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(ScaleMode.PREF_KEY, "area");
+        values.put("pkg.com.example.one.target_fps", 15);
+        values.put("pkg.com.example.one.max_width", 720);
+        values.put("pkg.com.example.two." + ScaleMode.PREF_KEY, "nearest");
+        values.put("pkg.com.example.two.max_height", "480");
+        HookConfig config = HookConfig.parse(values);
+
+        HookConfig.Settings one = config.settingsFor("com.example.one");
+        assertEquals(one.scaleMode, ScaleMode.AREA);
+        assertEquals(one.targetFps, 15);
+        assertEquals(one.maxWidth, 720);
+        assertEquals(one.maxHeight, 0);
+
+        HookConfig.Settings two = config.settingsFor("com.example.two");
+        assertEquals(two.scaleMode, ScaleMode.NEAREST);
+        assertEquals(two.targetFps, 0);
+        assertEquals(two.maxHeight, 480);
+
+        assertSame(config.settingsFor("com.example.other"), config.defaults);
+    }
+
+    // 缺少包名或键名的键、无法解析的值都被忽略
+    @Test
+    public void malformedOverridesAreIgnored() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("pkg.target_fps", 10);
+        values.put("pkg..target_fps", 10);
+        values.put("pkg.com.example.one.target_fps", "fast");
+        values.put("pkg.com.example.one.max_width", 1.5f);
+        HookConfig config = HookConfig.parse(values);
+
+        assertSame(config.settingsFor("target_fps"), config.defaults);
+        assertSame(config.settingsFor(""), config.defaults);
+        HookConfig.Settings one = config.settingsFor("com.example.one");
+        assertEquals(one.targetFps, 0);
+        assertEquals(one.maxWidth, 0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.ghostcam.benchmark;
+
+import com.example.ghostcam.frame.DeflateVideoCodec;
+import com.example.ghostcam.frame.EncodedFrameReader;
+import com.example.ghostcam.frame.Frame;
+import com.example.ghostcam.frame.PacketRingWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 编码传输的软件路径：每帧改动一小块区域 (类似屏幕上的光标或文字变化)，编码后经 PacketRing 解码。
+ */
+@State(Scope.Thread)
+public class DeflateVideoCodecBenchmark {
+
+    @Param({Frames.RESOLUTIONS})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private byte[] nv21;
+    private int tick;
+    private File file;
+    private PacketRingWriter writer;
+    private DeflateVideoCodec.Encoder encoder;
+    private EncodedFrameReader reader;
+    private final Frame frame = new Frame();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        width = Frames.width(resolution);
+        height = Frames.height(resolution);
+        nv21 = Frames.nv21(width, height);
+        file = Files.createTempFile("ghostcam_stream", ".dat").toFile();
+        writer = new PacketRingWriter(file);
+        encoder = new DeflateVideoCodec.Encoder(30);
+        reader = new EncodedFrameReader(file, EncodedFrameReader.SOFTWARE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        encoder.close();
+        writer.close();
+        file.delete();
+    }
+
+    private void touchFrame() {
+        tick++;
+        for (int y = 0; y < 32; y++) {
+            int row = (y + tick) % height * width;
+            for (int x = 0; x < 64; x++) {
+                nv21[row + x] = (byte) (tick + x);
+            }
+        }
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        touchFrame();
+        return encoder.encode(nv21, nv21.length, width, height, tick * 33_333L, writer);
+    }
+
+    @Benchmark
+    public Frame encodeAndDecode() throws IOException {
+        touchFrame();
+        encoder.encode(nv21, nv21.length, width, height, tick * 33_333L, writer);
+        reader.readLatest(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.ghostcam.benchmark;
+
+import com.example.ghostcam.frame.Frame;
+import com.example.ghostcam.frame.FrameRingReader;
+import com.example.ghostcam.frame.FrameRingWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 帧环文件的发布与读取 (内存映射 + seqlock 校验)。
+ */
+@State(Scope.Thread)
+public class FrameRingBenchmark {
+
+    @Param({Frames.RESOLUTIONS})
+    public String resolution;
+
+    private int width;
+    private int height;
+    private byte[] nv21;
+    private File file;
+    private FrameRingWriter writer;
+    private FrameRingReader reader;
+    private final Frame frame = new Frame();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        width = Frames.width(resolution);
+        height = Frames.height(resolution);
+        nv21 = Frames.nv21(width, height);
+        file = Files.createTempFile("ghostcam_frame", ".dat").toFile();
+        writer = new FrameRingWriter(file);
+        writer.publish(nv21, nv21.length, width, height);
+        reader = new FrameRingReader(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long publish() throws IOException {
+        writer.publish(nv21, nv21.length, width, height);
+        return writer.getSequence();
+    }
+
+    @Benchmark
+    public Frame read() {
+        reader.readLatest(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.ghostcam.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * 基准用的测试帧：固定种子的渐变加噪声，避免全零数据让分支和缓存表现失真。
+ */
+final class Frames {
+
+    // 480p、720p、1080p 和常见的 20:9 手机屏幕
+    static final String RESOLUTIONS = "640x480,1280x720,1920x1080,1080x2400";
+
+    private Frames() {
+    }
+
+    static int width(String resolution) {
+        return Integer.parseInt(resolution.substring(0, resolution.indexOf('x')));
+    }
+
+    static int height(String resolution) {
+        return Integer.parseInt(resolution.substring(resolution.indexOf('x') + 1));
+    }
+
+    static int[] argb(int width, int height) {
+        Random random = new Random(42);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xff;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xff;
+                int b = ((x + y) & 0xff);
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    // 与 ImageReader 的 RGBA_8888 平面相同：直接缓冲区，字节序 R G B A
+    static ByteBuffer rgba(int width, int height) {
+        int[] pixels = argb(width, height);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int pixel : pixels) {
+            buffer.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel).put((byte) (pixel >> 24));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    static byte[] nv21(int width, int height) {
+        Random random = new Random(42);
+        byte[] frame = new byte[width * height * 3 / 2];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame[y * width + x] = (byte) (16 + (x + y) % 200 + random.nextInt(16));
+            }
+        }
+        for (int i = width * height; i < frame.length; i++) {
+            frame[i] = (byte) (96 + random.nextInt(64));
+        }
+        return frame;
+    }
+
+    // NV21 要求宽高为偶数
+    static int even(double value) {
+        return Math.max(2, (int) Math.round(value) & ~1);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.ghostcam.benchmark;
+
+import com.example.ghostcam.frame.FrameTransform;
+import com.example.ghostcam.frame.NV21Scaler;
+import com.example.ghostcam.frame.ScaleMode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * hook 端 NV21 缩放。ratio 为目标与源的边长比，0.5 / 0.25 会走整数倍下采样的快速路径。
+ */
+@State(Scope.Thread)
+public class NV21ScalerBenchmark {
+
+    @Param({Frames.RESOLUTIONS})
+    public String resolution;
+
+    @Param({"0.25", "0.5", "0.667", "1.5"})
+    public double ratio;
+
+    @Param({"NEAREST", "BILINEAR", "AREA"})
+    public ScaleMode mode;
+
+    private int srcWidth;
+    private int srcHeight;
+    private int dstWidth;
+    private int dstHeight;
+    private byte[] src;
+    private byte[] dst;
+    private final NV21Scaler scaler = new NV21Scaler();
+
+    private static final FrameTransform ROTATE_MIRROR = FrameTransform.of(90, true, true);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        srcWidth = Frames.width(resolution);
+        srcHeight = Frames.height(resolution);
+        dstWidth = Frames.even(srcWidth * ratio);
+        dstHeight = Frames.even(srcHeight * ratio);
+        src = Frames.nv21(srcWidth, srcHeight);
+        dst = new byte[NV21Scaler.frameSize(dstWidth, dstHeight)];
+        scaler.setMode(mode);
+    }
+
+    // scaleInto 不走按帧序号的结果缓存，每次都完整缩放
+    @Benchmark
+    public byte[] scale() {
+        scaler.scaleInto(src, srcWidth, srcHeight, dst, dstWidth, dstHeight);
+        return dst;
+    }
+
+    // 裁剪、旋转 90 度、镜像与缩放合并在一次遍历中；与 NEAREST 档位的 scale 对比即为变换的额外开销
+    @Benchmark
+    public byte[] scaleRotateMirror() {
+        scaler.scaleInto(src, srcWidth, srcHeight, dst, dstHeight, dstWidth, ROTATE_MIRROR);
+        return dst;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.ghostcam.benchmark;
+
+import com.example.ghostcam.frame.RgbaToNv21Converter;
+import com.example.ghostcam.frame.TileHashes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 采集端 RGBA -> NV21 转换，分别测 ImageReader 平面 (ByteBuffer) 和 int[] 两种输入，
+ * 以及按块增量转换在画面静止和只有一块变化时的开销。
+ */
+@State(Scope.Thread)
+public class RgbaToNv21Benchmark {
+
+    @Param({Frames.RESOLUTIONS})
+    public String resolution;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private int width;
+    private int height;
+    private int[] argb;
+    private ByteBuffer rgba;
+    private byte[] nv21;
+    private RgbaToNv21Converter converter;
+    private TileHashes previous;
+    private TileHashes target;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        width = Frames.width(resolution);
+        height = Frames.height(resolution);
+        argb = Frames.argb(width, height);
+        rgba = Frames.rgba(width, height);
+        nv21 = new byte[width * height * 3 / 2];
+        converter = new RgbaToNv21Converter(threads);
+        previous = new TileHashes(width, height);
+        target = new TileHashes(width, height);
+        converter.convertChanged(rgba, width * 4, 4, width, height, nv21, previous, target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        converter.close();
+    }
+
+    @Benchmark
+    public byte[] convertPlane() {
+        converter.convert(rgba, width * 4, 4, width, height, nv21);
+        return nv21;
+    }
+
+    @Benchmark
+    public byte[] convertArgb() {
+        converter.convert(argb, width, width, height, nv21);
+        return nv21;
+    }
+
+    @Benchmark
+    public int convertChangedStatic() {
+        return converter.convertChanged(rgba, width * 4, 4, width, height, nv21, previous, target);
+    }
+
+    // 每次改动左上角一个像素，模拟光标闪烁
+    @Benchmark
+    public int convertChangedOneTile() {
+        rgba.put(0, (byte) ++tick);
+        return converter.convertChanged(rgba, width * 4, 4, width, height, nv21, previous, target);
+    }
+}
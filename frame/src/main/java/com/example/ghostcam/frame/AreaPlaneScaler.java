@@ -0,0 +1,108 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 盒式 (区域平均) 缩小：每个目标像素取其覆盖的源矩形的平均值，避免最近邻的混叠。
+ */
+final class AreaPlaneScaler implements PlaneScaler {
+
+    private final int dstWidth;
+    private final int dstStride;
+    private final int channels;
+    private final int[] colStart;
+    private final int[] colCount;
+    // 盒子内沿目标列方向、目标行方向相邻两个源元素的字节距离
+    private final int colStep;
+    private final int[] rowStart;
+    private final int[] rowCount;
+    private final int rowStep;
+    // 16 位定点倒数，按盒子面积索引，避免逐像素除法
+    private final int[] reciprocal;
+
+    AreaPlaneScaler(int srcWidth, int srcHeight, int srcStride,
+                    int dstWidth, int dstHeight, int dstStride, int channels) {
+        this.dstWidth = dstWidth;
+        this.dstStride = dstStride;
+        this.channels = channels;
+        colStep = channels;
+        rowStep = srcStride;
+
+        colStart = new int[dstWidth];
+        colCount = new int[dstWidth];
+        fillSpans(srcWidth, dstWidth, colStart, colCount);
+        for (int x = 0; x < dstWidth; x++) {
+            colStart[x] *= channels;
+        }
+
+        rowStart = new int[dstHeight];
+        rowCount = new int[dstHeight];
+        fillSpans(srcHeight, dstHeight, rowStart, rowCount);
+        for (int y = 0; y < dstHeight; y++) {
+            rowStart[y] *= srcStride;
+        }
+        reciprocal = reciprocals(colCount, rowCount);
+    }
+
+    // 盒子由调用方给出：起点为 rowStart[y] + colStart[x]，两个方向各 count 个元素；FrameTransform 借此实现旋转和翻转
+    AreaPlaneScaler(int dstWidth, int dstStride, int channels, int[] colStart, int[] colCount, int colStep,
+                    int[] rowStart, int[] rowCount, int rowStep) {
+        this.dstWidth = dstWidth;
+        this.dstStride = dstStride;
+        this.channels = channels;
+        this.colStart = colStart;
+        this.colCount = colCount;
+        this.colStep = colStep;
+        this.rowStart = rowStart;
+        this.rowCount = rowCount;
+        this.rowStep = rowStep;
+        reciprocal = reciprocals(colCount, rowCount);
+    }
+
+    private static int[] reciprocals(int[] colCount, int[] rowCount) {
+        int maxCols = 1;
+        for (int count : colCount) {
+            maxCols = Math.max(maxCols, count);
+        }
+        int maxRows = 1;
+        for (int count : rowCount) {
+            maxRows = Math.max(maxRows, count);
+        }
+        int[] reciprocal = new int[maxCols * maxRows + 1];
+        for (int n = 1; n < reciprocal.length; n++) {
+            reciprocal[n] = (65536 + n / 2) / n;
+        }
+        return reciprocal;
+    }
+
+    // 每个目标元素覆盖的源区间 [start, start + count)
+    static void fillSpans(int srcSize, int dstSize, int[] start, int[] count) {
+        for (int i = 0; i < dstSize; i++) {
+            int from = (int) ((long) i * srcSize / dstSize);
+            int to = (int) ((long) (i + 1) * srcSize / dstSize);
+            start[i] = from;
+            count[i] = Math.max(1, to - from);
+        }
+    }
+
+    @Override
+    public void scale(byte[] src, int srcOffset, byte[] dst, int dstOffset) {
+        for (int y = 0; y < rowStart.length; y++) {
+            int rowBase = srcOffset + rowStart[y];
+            int rows = rowCount[y];
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < dstWidth; x++) {
+                int cols = colCount[x];
+                int weight = reciprocal[rows * cols];
+                int base = rowBase + colStart[x];
+                for (int c = 0; c < channels; c++) {
+                    int sum = 0;
+                    for (int r = 0, row = base + c; r < rows; r++, row += rowStep) {
+                        for (int k = 0, s = row; k < cols; k++, s += colStep) {
+                            sum += src[s] & 0xff;
+                        }
+                    }
+                    dst[d++] = (byte) ((sum * weight + 32768) >> 16);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 定点双线性插值，权重精度 8 位，采样点按像素中心对齐。
+ */
+final class BilinearPlaneScaler implements PlaneScaler {
+
+    private final int dstWidth;
+    private final int dstStride;
+    private final int channels;
+    private final int[] x0;
+    private final int[] x1;
+    private final int[] fx;
+    private final int[] y0;
+    private final int[] y1;
+    private final int[] fy;
+
+    BilinearPlaneScaler(int srcWidth, int srcHeight, int srcStride,
+                        int dstWidth, int dstHeight, int dstStride, int channels) {
+        this(dstWidth, dstStride, channels, new int[dstWidth], new int[dstWidth], new int[dstWidth],
+            new int[dstHeight], new int[dstHeight], new int[dstHeight]);
+        for (int x = 0; x < dstWidth; x++) {
+            long pos = sourcePosition(x, srcWidth, dstWidth);
+            int i = (int) (pos >> 16);
+            x0[x] = i * channels;
+            x1[x] = Math.min(i + 1, srcWidth - 1) * channels;
+            fx[x] = (int) (pos >> 8) & 0xff;
+        }
+        for (int y = 0; y < dstHeight; y++) {
+            long pos = sourcePosition(y, srcHeight, dstHeight);
+            int i = (int) (pos >> 16);
+            y0[y] = i * srcStride;
+            y1[y] = Math.min(i + 1, srcHeight - 1) * srcStride;
+            fy[y] = (int) (pos >> 8) & 0xff;
+        }
+    }
+
+    // 查找表由调用方给出，四个采样点为 y0/y1[y] + x0/x1[x]；FrameTransform 借此实现旋转和翻转
+    BilinearPlaneScaler(int dstWidth, int dstStride, int channels,
+                        int[] x0, int[] x1, int[] fx, int[] y0, int[] y1, int[] fy) {
+        this.dstWidth = dstWidth;
+        this.dstStride = dstStride;
+        this.channels = channels;
+        this.x0 = x0;
+        this.x1 = x1;
+        this.fx = fx;
+        this.y0 = y0;
+        this.y1 = y1;
+        this.fy = fy;
+    }
+
+    // 16.16 定点的源坐标：(i + 0.5) * src / dst - 0.5，限制在 [0, src - 1]
+    static long sourcePosition(int i, int srcSize, int dstSize) {
+        long pos = ((2L * i + 1) * srcSize << 16) / (2L * dstSize) - (1 << 15);
+        return Math.max(0, Math.min(pos, (long) (srcSize - 1) << 16));
+    }
+
+    @Override
+    public void scale(byte[] src, int srcOffset, byte[] dst, int dstOffset) {
+        if (NativeFrameOps.isAvailable()) {
+            NativeFrameOps.scaleBilinear(src, srcOffset, dst, dstOffset, dstWidth, dstStride, channels,
+                x0, x1, fx, y0, y1, fy);
+            return;
+        }
+        for (int y = 0; y < y0.length; y++) {
+            int top = srcOffset + y0[y];
+            int bottom = srcOffset + y1[y];
+            int wy = fy[y];
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < dstWidth; x++) {
+                int wx = fx[x];
+                int l = x0[x];
+                int r = x1[x];
+                for (int c = 0; c < channels; c++) {
+                    int t = (src[top + l + c] & 0xff) * (256 - wx) + (src[top + r + c] & 0xff) * wx;
+                    int b = (src[bottom + l + c] & 0xff) * (256 - wx) + (src[bottom + r + c] & 0xff) * wx;
+                    dst[d++] = (byte) ((t * (256 - wy) + b * wy + 32768) >> 16);
+                }
+            }
+        }
+    }
+}
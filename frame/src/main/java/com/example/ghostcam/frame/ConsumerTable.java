@@ -0,0 +1,205 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 消费者登记表：被 hook 的进程把自己需要的帧尺寸和最近一次读帧的时间写到共享文件里，
+ * ScreenCaptureService 据此调整采集分辨率。
+ *
+ * 每个进程按 pid 占用一个固定大小的条目；进程退出后条目因心跳超时而失效，可被复用。
+ */
+public final class ConsumerTable implements Closeable {
+
+    public static final String CONSUMER_FILE = "ghostcam_consumers.dat";
+
+    private static final int MAGIC = 0x47434354; // "GCCT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 64;
+    private static final int MAX_ENTRIES = 16;
+    private static final int FILE_SIZE = HEADER_SIZE + ENTRY_SIZE * MAX_ENTRIES;
+
+    // 条目布局
+    private static final int E_PID = 0;
+    private static final int E_WIDTH = 4;
+    private static final int E_HEIGHT = 8;
+    private static final int E_LAST_READ = 16;
+    private static final int E_READS = 24;
+
+    // 超过这个时间没有心跳的条目可以被其他进程占用
+    private static final long ENTRY_EXPIRE_MS = 60_000;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    // 生产端状态：上一次汇总时各条目的读帧计数，用于计算读取速率
+    private final long[] lastReads = new long[MAX_ENTRIES];
+    private final int[] lastPids = new int[MAX_ENTRIES];
+    private long lastAggregateMillis;
+
+    // 消费端状态
+    private int entry = -1;
+    private int pid;
+    private int reportedWidth;
+    private int reportedHeight;
+
+    private ConsumerTable(RandomAccessFile raf, MappedByteBuffer buffer) {
+        this.raf = raf;
+        this.buffer = buffer;
+    }
+
+    // 生产端创建 (或复用) 登记表文件，并允许其他应用写入
+    public static ConsumerTable create(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < FILE_SIZE) {
+            raf.setLength(FILE_SIZE);
+        }
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            for (int i = 0; i < FILE_SIZE; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(4, VERSION);
+            buffer.putInt(0, MAGIC);
+        }
+        file.setReadable(true, false);
+        file.setWritable(true, false);
+        return new ConsumerTable(raf, buffer);
+    }
+
+    // 消费端打开登记表；文件不存在或格式不符时返回 null
+    public static ConsumerTable open(File file, int pid) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            if (raf.length() < FILE_SIZE) {
+                raf.close();
+                return null;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                raf.close();
+                return null;
+            }
+            ConsumerTable table = new ConsumerTable(raf, buffer);
+            table.pid = pid;
+            return table;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 登记本进程需要的帧尺寸，只在尺寸变化时写入
+    public synchronized void report(int width, int height) {
+        int base = claim();
+        if (base < 0 || (width == reportedWidth && height == reportedHeight)) {
+            return;
+        }
+        buffer.putInt(base + E_WIDTH, width);
+        buffer.putInt(base + E_HEIGHT, height);
+        reportedWidth = width;
+        reportedHeight = height;
+    }
+
+    // 读帧心跳，同时累计读帧次数
+    public synchronized void touch(long nowMillis) {
+        int base = claim();
+        if (base >= 0) {
+            buffer.putLong(base + E_LAST_READ, nowMillis);
+            buffer.putLong(base + E_READS, buffer.getLong(base + E_READS) + 1);
+        }
+    }
+
+    private int claim() {
+        if (entry >= 0) {
+            int base = offset(entry);
+            if (buffer.getInt(base + E_PID) == pid) {
+                return base;
+            }
+            // 条目被其他进程抢占，重新登记
+            entry = -1;
+            reportedWidth = 0;
+            reportedHeight = 0;
+        }
+        long now = System.currentTimeMillis();
+        int start = Math.abs(pid % MAX_ENTRIES);
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            int index = (start + i) % MAX_ENTRIES;
+            int base = offset(index);
+            int owner = buffer.getInt(base + E_PID);
+            if (owner == pid || owner == 0 || now - buffer.getLong(base + E_LAST_READ) > ENTRY_EXPIRE_MS) {
+                buffer.putLong(base + E_LAST_READ, now);
+                buffer.putInt(base + E_WIDTH, 0);
+                buffer.putInt(base + E_HEIGHT, 0);
+                buffer.putLong(base + E_READS, 0);
+                buffer.putInt(base + E_PID, pid);
+                entry = index;
+                return base;
+            }
+        }
+        return -1;
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    /**
+     * 汇总所有活跃消费者的需求。
+     */
+    public static final class Demand {
+        public int consumers;
+        public int maxWidth;
+        public int maxHeight;
+        public long lastReadMillis;
+        // 读得最快的消费者每秒读帧次数
+        public float maxReadsPerSecond;
+    }
+
+    // 生产端：统计 activeWindowMs 内读过帧的消费者，取最大需求尺寸
+    public synchronized Demand aggregate(long nowMillis, long activeWindowMs, Demand out) {
+        out.consumers = 0;
+        out.maxWidth = 0;
+        out.maxHeight = 0;
+        out.lastReadMillis = 0;
+        out.maxReadsPerSecond = 0;
+        long elapsed = nowMillis - lastAggregateMillis;
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            int base = offset(i);
+            int owner = buffer.getInt(base + E_PID);
+            if (owner == 0) {
+                continue;
+            }
+            long reads = buffer.getLong(base + E_READS);
+            if (owner == lastPids[i] && lastAggregateMillis > 0 && elapsed > 0 && reads >= lastReads[i]) {
+                out.maxReadsPerSecond = Math.max(out.maxReadsPerSecond,
+                    (reads - lastReads[i]) * 1000f / elapsed);
+            }
+            lastReads[i] = reads;
+            lastPids[i] = owner;
+
+            long lastRead = buffer.getLong(base + E_LAST_READ);
+            out.lastReadMillis = Math.max(out.lastReadMillis, lastRead);
+            if (nowMillis - lastRead > activeWindowMs) {
+                continue;
+            }
+            out.consumers++;
+            out.maxWidth = Math.max(out.maxWidth, buffer.getInt(base + E_WIDTH));
+            out.maxHeight = Math.max(out.maxHeight, buffer.getInt(base + E_HEIGHT));
+        }
+        lastAggregateMillis = nowMillis;
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 解码线程与输出线程之间的小型有界帧队列。
+ *
+ * 帧缓冲预先分配并循环使用；队列满时解码线程阻塞，内存占用与视频长度无关。
+ */
+public final class DecodedFrameQueue {
+
+    private final Frame[] frames;
+    private final long[] timestamps;
+    private int head;
+    private int count;
+    private boolean closed;
+
+    public DecodedFrameQueue(int capacity) {
+        frames = new Frame[capacity];
+        timestamps = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = new Frame();
+        }
+    }
+
+    // 生产端：取得一个空闲帧用于写入；队列已关闭时返回 null
+    public synchronized Frame acquire() throws InterruptedException {
+        while (count == frames.length && !closed) {
+            wait();
+        }
+        return closed ? null : frames[(head + count) % frames.length];
+    }
+
+    // 生产端：提交 acquire 得到的帧
+    public synchronized void commit(long timestampUs) {
+        timestamps[(head + count) % frames.length] = timestampUs;
+        count++;
+        notifyAll();
+    }
+
+    // 消费端：等待队首帧，超时或队列关闭时返回 null；处理完后调用 release
+    public synchronized Frame peek(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (count == 0 && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            wait(remaining);
+        }
+        return count == 0 ? null : frames[head];
+    }
+
+    public synchronized long peekTimestamp() {
+        return timestamps[head];
+    }
+
+    public synchronized void release() {
+        if (count > 0) {
+            head = (head + 1) % frames.length;
+            count--;
+            notifyAll();
+        }
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+        notifyAll();
+    }
+
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 纯 Java 的软件编解码器，用于没有硬件编码器的设备和在主机上测试编码传输链路。
+ *
+ * 关键帧是整帧 NV21 的 deflate 压缩；其余帧是与上一帧按字节异或后的残差再压缩，
+ * 屏幕内容大部分静止时残差几乎全为 0，压缩后只有很少的字节。
+ */
+public final class DeflateVideoCodec {
+
+    private DeflateVideoCodec() {
+    }
+
+    public static final class Encoder implements Closeable {
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final int keyFrameInterval;
+        private byte[] reference = new byte[0];
+        private byte[] residual = new byte[0];
+        private byte[] output = new byte[64 * 1024];
+        private int width;
+        private int height;
+        private int framesSinceKey;
+        private boolean keyFrameRequested = true;
+
+        // keyFrameInterval 为两个关键帧之间的帧数
+        public Encoder(int keyFrameInterval) {
+            this.keyFrameInterval = Math.max(1, keyFrameInterval);
+        }
+
+        public void requestKeyFrame() {
+            keyFrameRequested = true;
+        }
+
+        // 编码一帧并发布到 writer，返回压缩后的字节数
+        public int encode(byte[] nv21, int length, int width, int height, long ptsUs, PacketRingWriter writer)
+                throws IOException {
+            if (width != this.width || height != this.height || reference.length != length) {
+                this.width = width;
+                this.height = height;
+                reference = new byte[length];
+                residual = new byte[length];
+                writer.configure(PacketRing.CODEC_DEFLATE, width, height, new byte[0], 0);
+                keyFrameRequested = true;
+            }
+
+            boolean keyFrame = keyFrameRequested || ++framesSinceKey >= keyFrameInterval;
+            byte[] input;
+            if (keyFrame) {
+                input = nv21;
+                framesSinceKey = 0;
+                keyFrameRequested = false;
+            } else {
+                for (int i = 0; i < length; i++) {
+                    residual[i] = (byte) (nv21[i] ^ reference[i]);
+                }
+                input = residual;
+            }
+            System.arraycopy(nv21, 0, reference, 0, length);
+
+            int size = deflate(input, length);
+            writer.publish(output, 0, size, ptsUs, keyFrame ? PacketRing.FLAG_KEY_FRAME : 0);
+            return size;
+        }
+
+        private int deflate(byte[] input, int length) {
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                size += deflater.deflate(output, size, output.length - size);
+            }
+            return size;
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    public static final class Decoder implements VideoDecoder {
+
+        private final Inflater inflater = new Inflater();
+        private final int width;
+        private final int height;
+        private final byte[] reference;
+        private final byte[] residual;
+        private boolean hasReference;
+        private boolean hasNewFrame;
+        private long sequence;
+
+        public Decoder(StreamConfig config) {
+            width = config.width;
+            height = config.height;
+            reference = new byte[NV21Scaler.frameSize(width, height)];
+            residual = new byte[reference.length];
+        }
+
+        @Override
+        public boolean queue(Packet packet) {
+            boolean keyFrame = packet.isKeyFrame();
+            if (!keyFrame && !hasReference) {
+                return true;
+            }
+            try {
+                inflater.reset();
+                inflater.setInput(packet.data, 0, packet.length);
+                byte[] target = keyFrame ? reference : residual;
+                int size = 0;
+                while (size < target.length && !inflater.finished()) {
+                    int n = inflater.inflate(target, size, target.length - size);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    size += n;
+                }
+                if (size != target.length) {
+                    hasReference = false;
+                    return true;
+                }
+                if (!keyFrame) {
+                    for (int i = 0; i < reference.length; i++) {
+                        reference[i] ^= residual[i];
+                    }
+                }
+                hasReference = true;
+                hasNewFrame = true;
+                sequence = packet.sequence;
+            } catch (DataFormatException e) {
+                hasReference = false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean poll(Frame out) {
+            if (!hasNewFrame) {
+                return false;
+            }
+            byte[] data = out.ensureCapacity(reference.length);
+            System.arraycopy(reference, 0, data, 0, reference.length);
+            out.width = width;
+            out.height = height;
+            out.length = reference.length;
+            out.sequence = sequence;
+            hasNewFrame = false;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+}
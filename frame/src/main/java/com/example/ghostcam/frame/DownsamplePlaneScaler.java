@@ -0,0 +1,65 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 正好缩小 2 倍或 4 倍时的快速路径：不需要查找表，平均值用移位代替除法。
+ */
+final class DownsamplePlaneScaler implements PlaneScaler {
+
+    private final int factor;
+    private final int shift;
+    private final int dstWidth;
+    private final int dstHeight;
+    private final int srcStride;
+    private final int dstStride;
+    private final int channels;
+
+    DownsamplePlaneScaler(int factor, int dstWidth, int dstHeight, int srcStride, int dstStride, int channels) {
+        this.factor = factor;
+        this.shift = factor == 4 ? 4 : 2;
+        this.dstWidth = dstWidth;
+        this.dstHeight = dstHeight;
+        this.srcStride = srcStride;
+        this.dstStride = dstStride;
+        this.channels = channels;
+    }
+
+    @Override
+    public void scale(byte[] src, int srcOffset, byte[] dst, int dstOffset) {
+        if (factor == 2) {
+            scale2x(src, srcOffset, dst, dstOffset);
+            return;
+        }
+        int round = 1 << (shift - 1);
+        int step = factor * channels;
+        for (int y = 0; y < dstHeight; y++) {
+            int row = srcOffset + y * factor * srcStride;
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < dstWidth; x++, row += step) {
+                for (int c = 0; c < channels; c++) {
+                    int sum = 0;
+                    for (int r = 0, s = row + c; r < factor; r++, s += srcStride) {
+                        sum += (src[s] & 0xff) + (src[s + channels] & 0xff)
+                            + (src[s + 2 * channels] & 0xff) + (src[s + 3 * channels] & 0xff);
+                    }
+                    dst[d++] = (byte) ((sum + round) >> shift);
+                }
+            }
+        }
+    }
+
+    private void scale2x(byte[] src, int srcOffset, byte[] dst, int dstOffset) {
+        int step = 2 * channels;
+        for (int y = 0; y < dstHeight; y++) {
+            int top = srcOffset + 2 * y * srcStride;
+            int bottom = top + srcStride;
+            int d = dstOffset + y * dstStride;
+            for (int x = 0; x < dstWidth; x++, top += step, bottom += step) {
+                for (int c = 0; c < channels; c++) {
+                    int sum = (src[top + c] & 0xff) + (src[top + c + channels] & 0xff)
+                        + (src[bottom + c] & 0xff) + (src[bottom + c + channels] & 0xff);
+                    dst[d++] = (byte) ((sum + 2) >> 2);
+                }
+            }
+        }
+    }
+}
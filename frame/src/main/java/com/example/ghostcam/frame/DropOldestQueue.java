@@ -0,0 +1,146 @@
+package com.example.ghostcam.frame;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 流水线相邻两级之间的有界交接队列，单生产者、单消费者，无锁。
+ *
+ * 队列满时生产者丢弃最旧的一项而不是阻塞，被丢弃的元素交给 onDrop 回收 (关闭 Image、归还缓冲区)。
+ * 生产者与消费者都通过 CAS 推进队头，谁推进成功谁就拥有该元素，不会重复回收。
+ *
+ * 消费者用 process 处理元素时，flush 返回后就不会再有 flush 之前入队的元素被处理
+ * (例如 ImageReader 关闭前，属于它的 Image 都已用完或丢弃)；只有 process 与 flush 之间需要加锁。
+ */
+public final class DropOldestQueue<T> {
+
+    private final AtomicReferenceArray<T> items;
+    private final int capacity;
+    private final Consumer<T> onDrop;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Thread waiter;
+    // process 处理元素和 flush 期间持有；flushedTail 为最近一次 flush 开始时的队尾，之前入队的元素都不能再处理
+    private final Object flushLock = new Object();
+    private long flushedTail;
+    // 只由消费者线程访问：take 最近取出的元素的入队位置
+    private long taken;
+
+    public DropOldestQueue(int capacity, Consumer<T> onDrop) {
+        this.capacity = Math.max(1, capacity);
+        this.items = new AtomicReferenceArray<>(this.capacity);
+        this.onDrop = onDrop;
+    }
+
+    // 只能由生产者线程调用；返回 false 表示为此丢弃了一项旧元素
+    public boolean offer(T item) {
+        boolean dropped = false;
+        long t = tail.get();
+        while (true) {
+            // 判断是否已满与 CAS 必须用同一次读到的队头，否则消费者在两次读取之间取空队列后，
+            // 这里会把已经被取走的元素再丢弃一次，并把队头推过队尾
+            long h = head.get();
+            if (t - h < capacity) {
+                break;
+            }
+            T old = items.get((int) (h % capacity));
+            if (head.compareAndSet(h, h + 1)) {
+                onDrop.accept(old);
+                dropped = true;
+            }
+        }
+        items.set((int) (t % capacity), item);
+        tail.set(t + 1);
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        return !dropped;
+    }
+
+    // 通过 CAS 认领元素，多个线程同时取也不会重复取到；队列为空时返回 null
+    public T poll() {
+        return poll(false);
+    }
+
+    private T poll(boolean consumer) {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get()) {
+                return null;
+            }
+            T item = items.get((int) (h % capacity));
+            if (head.compareAndSet(h, h + 1)) {
+                if (consumer) {
+                    taken = h;
+                }
+                return item;
+            }
+        }
+    }
+
+    // 等待下一项，超时或线程被中断时返回 null
+    public T take(long timeout, TimeUnit unit) {
+        T item = poll(true);
+        if (item != null) {
+            return item;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiter = Thread.currentThread();
+        try {
+            while ((item = poll(true)) == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return item;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * 只能由消费者线程调用：等待下一项并交给 action，超时或线程被中断时返回 false。
+     * 在某次 flush 开始之前入队的元素改交 onDrop，action 不会看到它；
+     * 按入队位置判断，消费者抢在 flush 的 clear 之前取走的元素也能识别出来。
+     */
+    public boolean process(long timeout, TimeUnit unit, Consumer<T> action) {
+        T item = take(timeout, unit);
+        if (item == null) {
+            return false;
+        }
+        synchronized (flushLock) {
+            if (taken < flushedTail) {
+                onDrop.accept(item);
+            } else {
+                action.accept(item);
+            }
+        }
+        return true;
+    }
+
+    // 可以在任意线程调用：丢弃剩余元素，并等待 process 中正在处理的一项完成
+    public void flush() {
+        synchronized (flushLock) {
+            flushedTail = tail.get();
+            clear();
+        }
+    }
+
+    // 可以在任意线程调用，剩余元素全部交给 onDrop
+    public void clear() {
+        T item;
+        while ((item = poll()) != null) {
+            onDrop.accept(item);
+        }
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 编码传输模式下的消费端：从 PacketRing 读包、送入解码器，取出最新的 NV21 帧。
+ *
+ * 用法与 FrameRingReader 相同，调用方只需把 readLatest 换成这里的实现。
+ * 流配置变化 (采集尺寸或编码器改变) 时自动重建解码器。
+ */
+public final class EncodedFrameReader implements Closeable {
+
+    // 每次调用最多送入的包数，避免落后很多时在 hook 回调里卡住太久
+    private static final int MAX_PACKETS_PER_READ = 8;
+
+    public interface DecoderFactory {
+        // 返回 null 表示不支持该编码格式
+        VideoDecoder create(StreamConfig config) throws IOException;
+    }
+
+    // 只支持软件编解码器的默认工厂，主机上测试时使用
+    public static final DecoderFactory SOFTWARE = config ->
+        config.codec == PacketRing.CODEC_DEFLATE ? new DeflateVideoCodec.Decoder(config) : null;
+
+    private final PacketRingReader reader;
+    private final DecoderFactory factory;
+    private final StreamConfig config = new StreamConfig();
+    private final Packet packet = new Packet();
+    private VideoDecoder decoder;
+    private long configSequence;
+    // 上次解码器没能接收的包，下次优先送入
+    private boolean packetPending;
+
+    public EncodedFrameReader(File file, DecoderFactory factory) {
+        this.reader = new PacketRingReader(file);
+        this.factory = factory;
+    }
+
+    public synchronized boolean readLatest(Frame frame) {
+        long sequence = reader.configSequence();
+        if (sequence == 0) {
+            return false;
+        }
+        if (sequence != configSequence && !reconfigure()) {
+            return false;
+        }
+        if (decoder == null) {
+            return false;
+        }
+
+        for (int i = 0; i < MAX_PACKETS_PER_READ; i++) {
+            if (!packetPending && !reader.next(packet)) {
+                break;
+            }
+            packetPending = !decoder.queue(packet);
+            if (packetPending) {
+                break;
+            }
+            FrameMetrics.get().add(FrameMetrics.Counter.BYTES_COPIED, packet.length);
+        }
+        return decoder.poll(frame);
+    }
+
+    private boolean reconfigure() {
+        closeDecoder();
+        if (!reader.readConfig(config)) {
+            return false;
+        }
+        configSequence = config.sequence;
+        packetPending = false;
+        try {
+            decoder = factory.create(config);
+        } catch (IOException e) {
+            decoder = null;
+        }
+        return true;
+    }
+
+    private void closeDecoder() {
+        if (decoder != null) {
+            try {
+                decoder.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            decoder = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeDecoder();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.ghostcam.frame;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * 共享内存 seqlock 用的 StoreStore / LoadLoad 屏障。
+ *
+ * 映射内存只能通过 ByteBuffer 做普通读写，私有 volatile 字段的写 (release) 和读 (acquire)
+ * 各自只约束一个方向，不能把两侧的普通访问隔开。优先使用 VarHandle 的静态屏障 (Android 13 起才有)；
+ * 没有时退回对同一个 volatile 字段先写后读：前面的访问不能移到写之后，后面的访问不能移到读之前，
+ * 写与读之间又有顺序，合起来是一次完整的屏障。
+ */
+final class Fences {
+
+    private static final boolean VAR_HANDLE = probe();
+
+    private static volatile int fallback;
+
+    private Fences() {
+    }
+
+    // 之前的写先于之后的写对其他进程可见
+    static void storeStore() {
+        if (VAR_HANDLE) {
+            Platform.storeStore();
+        } else {
+            full();
+        }
+    }
+
+    // 之前的读先于之后的读完成
+    static void loadLoad() {
+        if (VAR_HANDLE) {
+            Platform.loadLoad();
+        } else {
+            full();
+        }
+    }
+
+    private static void full() {
+        fallback = 0;
+        int ignored = fallback;
+    }
+
+    private static boolean probe() {
+        try {
+            Platform.storeStore();
+            return true;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    // 单独放在一个类里，运行时没有 VarHandle 时只有这个类无法链接
+    private static final class Platform {
+        static void storeStore() {
+            VarHandle.storeStoreFence();
+        }
+
+        static void loadLoad() {
+            VarHandle.loadLoadFence();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 从帧环中读出的一帧 NV21 数据。缓冲区在尺寸不变时被复用。
+ */
+public final class Frame {
+
+    public byte[] data;
+    public int width;
+    public int height;
+    public int length;
+    public long sequence;
+    public int format = FrameRing.FORMAT_NV21;
+    // 生产者的呈现时间，单位微秒
+    public long timestampUs;
+    // 画面需要顺时针旋转的角度
+    public int rotation;
+
+    public byte[] ensureCapacity(int size) {
+        if (data == null || data.length != size) {
+            data = new byte[size];
+            FrameMetrics.get().increment(FrameMetrics.Counter.ALLOCATIONS);
+        }
+        return data;
+    }
+}
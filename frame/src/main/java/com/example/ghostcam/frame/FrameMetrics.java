@@ -0,0 +1,67 @@
+package com.example.ghostcam.frame;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的帧处理指标：各阶段延迟直方图和帧 / 字节 / 分配计数。
+ *
+ * 每个进程一个实例，由 MetricsTable 定期写入共享文件，MainActivity 汇总显示。
+ */
+public final class FrameMetrics {
+
+    /** 计时阶段；前缀 HOOK_ 在被 hook 的进程中记录，CAPTURE_ 在 ScreenCaptureService 中记录 */
+    public enum Timer {
+        HOOK_PREVIEW_FRAME,
+        HOOK_LOAD_FRAME,
+        HOOK_SCALE,
+        HOOK_IMAGE_WRITE,
+        HOOK_DECODE,
+        HOOK_INSTALL,
+        HOOK_PREFETCH,
+        CAPTURE_FRAME,
+        CAPTURE_CONVERT,
+        CAPTURE_PUBLISH
+    }
+
+    public enum Counter {
+        FRAMES_PRODUCED,
+        FRAMES_CONSUMED,
+        FRAMES_DROPPED,
+        FRAMES_REPEATED,
+        BYTES_COPIED,
+        ALLOCATIONS,
+        // 屏幕内容没有变化、未重新发布的帧
+        FRAMES_UNCHANGED
+    }
+
+    private static final FrameMetrics INSTANCE = new FrameMetrics();
+
+    private final LatencyHistogram[] timers = new LatencyHistogram[Timer.values().length];
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    private FrameMetrics() {
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new LatencyHistogram();
+        }
+    }
+
+    public static FrameMetrics get() {
+        return INSTANCE;
+    }
+
+    public LatencyHistogram timer(Timer timer) {
+        return timers[timer.ordinal()];
+    }
+
+    public void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+}
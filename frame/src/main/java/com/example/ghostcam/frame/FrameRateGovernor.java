@@ -0,0 +1,89 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 采集端的帧率调节器。
+ *
+ * 在转换之前丢帧：有效帧率取配置的目标帧率与消费者实际读取速率中较小者；
+ * 超过 idleTimeoutMs 没有任何消费者读帧时进入空闲，完全停止转换。
+ */
+public final class FrameRateGovernor {
+
+    public static final String PREF_TARGET_FPS = "target_fps";
+    public static final String PREF_IDLE_TIMEOUT = "idle_timeout_sec";
+    public static final int DEFAULT_TARGET_FPS = 30;
+    public static final int DEFAULT_IDLE_TIMEOUT_SEC = 10;
+
+    private static final int MIN_FPS = 5;
+    // 比消费者读取速率略高一些，避免两边相位漂移导致消费者拿到重复帧
+    private static final float DEMAND_HEADROOM = 1.2f;
+
+    private int targetFps;
+    private long idleTimeoutMs;
+    private volatile int effectiveFps;
+    private volatile boolean idle;
+    private long intervalNanos;
+    private long nextFrameNanos;
+    private long dropped;
+
+    public FrameRateGovernor(int targetFps, long idleTimeoutMs) {
+        this.targetFps = Math.max(MIN_FPS, targetFps);
+        this.idleTimeoutMs = idleTimeoutMs;
+        setEffectiveFps(this.targetFps);
+    }
+
+    public synchronized void setTargetFps(int fps) {
+        targetFps = Math.max(MIN_FPS, fps);
+    }
+
+    public synchronized void setIdleTimeoutMs(long timeoutMs) {
+        idleTimeoutMs = timeoutMs;
+    }
+
+    // 每次汇总消费者需求后调用；lastReadMillis 为 0 表示还没有消费者读过帧
+    public synchronized void updateDemand(int consumers, float maxReadsPerSecond,
+                                          long lastReadMillis, long nowMillis) {
+        idle = lastReadMillis == 0 || nowMillis - lastReadMillis > idleTimeoutMs;
+
+        int fps = targetFps;
+        if (consumers > 0 && maxReadsPerSecond > 0) {
+            fps = Math.min(fps, (int) Math.ceil(maxReadsPerSecond * DEMAND_HEADROOM));
+        }
+        setEffectiveFps(Math.max(MIN_FPS, fps));
+    }
+
+    // 每个采集到的帧调用一次，返回 false 表示应直接丢弃
+    public synchronized boolean shouldProcess(long nowNanos) {
+        if (idle) {
+            dropped++;
+            return false;
+        }
+        // 允许 1/4 帧间隔的提前量，吸收显示刷新的抖动
+        if (nowNanos < nextFrameNanos - intervalNanos / 4) {
+            dropped++;
+            return false;
+        }
+        if (nowNanos - nextFrameNanos > intervalNanos) {
+            nextFrameNanos = nowNanos + intervalNanos;
+        } else {
+            nextFrameNanos += intervalNanos;
+        }
+        return true;
+    }
+
+    public boolean isIdle() {
+        return idle;
+    }
+
+    public int getEffectiveFps() {
+        return effectiveFps;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return dropped;
+    }
+
+    private void setEffectiveFps(int fps) {
+        effectiveFps = fps;
+        intervalNanos = 1_000_000_000L / fps;
+    }
+}
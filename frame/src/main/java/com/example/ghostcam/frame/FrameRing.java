@@ -0,0 +1,66 @@
+package com.example.ghostcam.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 共享帧环形缓冲区的文件布局。
+ *
+ * 生产者 (ScreenCaptureService) 与消费者 (被 hook 的进程) 通过同一个
+ * 内存映射文件交换帧：文件头记录最新发布的序号，后面跟着若干个槽位，
+ * 每个槽位带有首尾两个序号 (seqlock)，读者据此判断是否读到了完整的帧。
+ * 槽位头还记录像素格式、行跨度、时间戳、旋转角度和内容的 CRC32，读者拷贝后据此校验。
+ */
+public final class FrameRing {
+
+    public static final String FRAME_FILE = "ghostcam_frame.dat";
+
+    static final int MAGIC = 0x47434652; // "GCFR"
+    static final int VERSION = 2;
+    static final int DEFAULT_SLOT_COUNT = 3;
+
+    // 文件头
+    static final int HEADER_SIZE = 64;
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_SLOT_COUNT = 8;
+    static final int OFF_SLOT_CAPACITY = 12;
+    static final int OFF_PUBLISHED_SEQ = 16;
+
+    // 像素格式，取值与 android.graphics.ImageFormat 一致
+    public static final int FORMAT_NV21 = 0x11;
+
+    // 槽位头
+    static final int SLOT_HEADER_SIZE = 64;
+    static final int SLOT_SEQ_BEGIN = 0;
+    static final int SLOT_WIDTH = 8;
+    static final int SLOT_HEIGHT = 12;
+    static final int SLOT_LENGTH = 16;
+    static final int SLOT_FORMAT = 20;
+    static final int SLOT_Y_STRIDE = 24;
+    static final int SLOT_UV_STRIDE = 28;
+    static final int SLOT_TIMESTAMP = 32;
+    static final int SLOT_ROTATION = 40;
+    static final int SLOT_CRC = 44;
+    static final int SLOT_SEQ_END = 56;
+
+    private FrameRing() {
+    }
+
+    static long fileSize(int slotCount, int slotCapacity) {
+        return HEADER_SIZE + (long) slotCount * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+
+    static int slotOffset(int slot, int slotCapacity) {
+        return HEADER_SIZE + slot * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+
+    static int slotFor(long seq, int slotCount) {
+        return (int) (seq % slotCount);
+    }
+
+    static boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE
+            && buffer.getInt(OFF_MAGIC) == MAGIC
+            && buffer.getInt(OFF_VERSION) == VERSION;
+    }
+}
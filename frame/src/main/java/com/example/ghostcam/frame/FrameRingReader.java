@@ -0,0 +1,261 @@
+package com.example.ghostcam.frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * 帧环的消费端。映射建立后，读取最新帧只是一次内存拷贝。
+ *
+ * awaitNewer 让消费端的后台线程在新帧发布后尽快醒来。映射内存上没法做 futex 等待，这里是轮询而不是发布时唤醒：
+ * 按观察到的发布间隔自适应退避，先睡到预计的下一帧之前，再以逐步加倍的短间隔检查头部序号。
+ * 生产者停止连续发布 (画面静止只剩定期重发、暂停) 后间隔继续加倍到 MAX_IDLE_PARK_NANOS，并跨调用保留；
+ * 这个上限就是空闲之后第一帧最多被推迟的时间，发现新序号后退避立即清零。
+ */
+public final class FrameRingReader {
+
+    private static final long REOPEN_INTERVAL_MS = 1000;
+    private static final int MAX_RETRIES = 3;
+    // 退避的起止间隔，决定了新帧发布后最多多久被发现
+    private static final long MIN_PARK_NANOS = 100_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    // 生产者空闲时的退避上限：恢复发布后的第一帧最多晚这么久被发现，取 30fps 的一帧；
+    // 空闲时每秒约 30 次只读一个序号的唤醒
+    private static final long MAX_IDLE_PARK_NANOS = 33_000_000;
+    // 按预计间隔睡眠时额外提前醒来的余量
+    private static final long EARLY_WAKE_NANOS = 1_000_000;
+    // 超过该值的间隔 (生产者暂停、画面静止) 不计入估计，也不再视为连续发布
+    private static final long MAX_INTERVAL_NANOS = 200_000_000;
+    // awaitNewer 中上一次 park 的方式
+    private static final int PARK_NONE = 0;
+    private static final int PARK_ESTIMATED = 1;
+    private static final int PARK_POLL = 2;
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    private int slotCount;
+    private int slotCapacity;
+    private long lastOpenAttempt;
+    private final CRC32 crc = new CRC32();
+    // 生产者按行跨度发布时先拷到这里，再紧密排列到 frame 中
+    private byte[] staging;
+
+    // 只由 awaitNewer 的调用线程访问：上次发现新序号的时刻和发布间隔的滑动平均
+    private long lastChangeNanos;
+    private long intervalNanos;
+    // 上次发现新序号的时刻 (不论精度)、上一个发布间隔是否短于 MAX_INTERVAL_NANOS、空闲时退避到的间隔
+    private long lastSeenNanos;
+    private boolean streaming;
+    private long idleParkNanos;
+
+    public FrameRingReader(File file) {
+        this.file = file;
+    }
+
+    // 只读取头部的发布序号，供热路径廉价地判断是否有新帧；没有帧时返回 0
+    public synchronized long latestSequence() {
+        if (!ensureMapped()) {
+            return 0;
+        }
+        if (layoutChanged() && !remap()) {
+            return 0;
+        }
+        return buffer.getLong(FrameRing.OFF_PUBLISHED_SEQ);
+    }
+
+    /**
+     * 阻塞到发布序号不再等于 after，返回新序号；超时返回 0。同一时间只应有一个线程调用。
+     */
+    public long awaitNewer(long after, long timeoutNanos) {
+        long now = System.nanoTime();
+        long deadline = now + timeoutNanos;
+        // 上次超时时已经退避到的间隔从这里接着加倍，静止画面上不会每次调用都从短间隔重新开始
+        long park = Math.max(MIN_PARK_NANOS, idleParkNanos);
+        // 先睡到预计的下一帧之前 (提前 1/8 个间隔再加一点余量吸收抖动)；没有估计值时直接进入短间隔轮询
+        long sleep = lastChangeNanos != 0 && intervalNanos > 0
+            ? lastChangeNanos + intervalNanos - intervalNanos / 8 - EARLY_WAKE_NANOS - now : 0;
+        int lastPark = PARK_NONE;
+        while (true) {
+            long seq = latestSequence();
+            now = System.nanoTime();
+            if (seq != 0 && seq != after) {
+                observeChange(now, lastPark);
+                return seq;
+            }
+            // 连续发布时上限保持 MAX_PARK_NANOS，新帧很快被发现；否则继续加倍，减少静止画面上的唤醒次数
+            boolean busy = streaming && now - lastSeenNanos < MAX_INTERVAL_NANOS;
+            if (now >= deadline) {
+                idleParkNanos = busy ? 0 : park;
+                return 0;
+            }
+            long duration;
+            if (sleep > 0) {
+                duration = sleep;
+                sleep = 0;
+                lastPark = PARK_ESTIMATED;
+            } else {
+                duration = park;
+                park = Math.min(park * 2, busy ? MAX_PARK_NANOS : MAX_IDLE_PARK_NANOS);
+                lastPark = PARK_POLL;
+            }
+            LockSupport.parkNanos(Math.min(duration, deadline - now));
+        }
+    }
+
+    // 只有短间隔轮询中发现的变化时刻足够准确，才计入发布间隔的估计
+    private void observeChange(long now, int lastPark) {
+        streaming = lastSeenNanos != 0 && now - lastSeenNanos < MAX_INTERVAL_NANOS;
+        lastSeenNanos = now;
+        idleParkNanos = 0;
+        if (lastPark == PARK_POLL) {
+            long interval = now - lastChangeNanos;
+            if (lastChangeNanos != 0 && interval < MAX_INTERVAL_NANOS) {
+                intervalNanos = intervalNanos == 0 ? interval : (intervalNanos * 7 + interval) / 8;
+            }
+            lastChangeNanos = now;
+        } else {
+            // 按估计值睡醒时新帧已经到了说明估计偏长，缩短一些；调用时新帧已经在了则发布时刻未知。
+            // 两种情况下次都从短间隔轮询开始，重新取得准确的时刻
+            if (lastPark == PARK_ESTIMATED) {
+                intervalNanos -= intervalNanos / 4;
+            }
+            lastChangeNanos = 0;
+        }
+    }
+
+    // 读取最新的完整帧到 frame 中；没有可用帧时返回 false
+    public synchronized boolean readLatest(Frame frame) {
+        if (!ensureMapped()) {
+            return false;
+        }
+
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            if (layoutChanged() && !remap()) {
+                return false;
+            }
+
+            long seq = buffer.getLong(FrameRing.OFF_PUBLISHED_SEQ);
+            if (seq <= 0) {
+                return false;
+            }
+
+            int base = FrameRing.slotOffset(FrameRing.slotFor(seq, slotCount), slotCapacity);
+            Fences.loadLoad();
+            if (buffer.getLong(base + FrameRing.SLOT_SEQ_BEGIN) != seq) {
+                continue;
+            }
+            Fences.loadLoad();
+            int width = buffer.getInt(base + FrameRing.SLOT_WIDTH);
+            int height = buffer.getInt(base + FrameRing.SLOT_HEIGHT);
+            int length = buffer.getInt(base + FrameRing.SLOT_LENGTH);
+            int format = buffer.getInt(base + FrameRing.SLOT_FORMAT);
+            int yStride = buffer.getInt(base + FrameRing.SLOT_Y_STRIDE);
+            int uvStride = buffer.getInt(base + FrameRing.SLOT_UV_STRIDE);
+            long timestampUs = buffer.getLong(base + FrameRing.SLOT_TIMESTAMP);
+            int rotation = buffer.getInt(base + FrameRing.SLOT_ROTATION);
+            int checksum = buffer.getInt(base + FrameRing.SLOT_CRC);
+            if (length <= 0 || length > slotCapacity || format != FrameRing.FORMAT_NV21
+                    || width <= 0 || height <= 0 || yStride < width || uvStride < width
+                    || (long) yStride * height + (long) uvStride * (height / 2) > length) {
+                continue;
+            }
+
+            boolean packed = yStride == width && uvStride == width;
+            byte[] data = packed ? frame.ensureCapacity(length) : ensureStaging(length);
+            buffer.position(base + FrameRing.SLOT_HEADER_SIZE);
+            buffer.get(data, 0, length);
+            Fences.loadLoad();
+
+            // 拷贝前后序号一致才说明没有被生产者覆盖，校验和再排除文件本身损坏的情况
+            if (buffer.getLong(base + FrameRing.SLOT_SEQ_END) != seq
+                    || buffer.getLong(base + FrameRing.SLOT_SEQ_BEGIN) != seq) {
+                continue;
+            }
+            crc.reset();
+            crc.update(data, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                continue;
+            }
+            if (!packed) {
+                length = repack(data, width, height, yStride, uvStride, frame);
+            }
+            frame.width = width;
+            frame.height = height;
+            frame.length = length;
+            frame.sequence = seq;
+            frame.format = format;
+            frame.timestampUs = timestampUs;
+            frame.rotation = rotation;
+            return true;
+        }
+        return false;
+    }
+
+    private byte[] ensureStaging(int size) {
+        if (staging == null || staging.length < size) {
+            staging = new byte[size];
+            FrameMetrics.get().increment(FrameMetrics.Counter.ALLOCATIONS);
+        }
+        return staging;
+    }
+
+    // 去掉行尾填充，返回紧密排列后的长度
+    private static int repack(byte[] src, int width, int height, int yStride, int uvStride, Frame frame) {
+        int length = NV21Scaler.frameSize(width, height);
+        byte[] dst = frame.ensureCapacity(length);
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(src, row * yStride, dst, row * width, width);
+        }
+        int srcUv = yStride * height;
+        int dstUv = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            System.arraycopy(src, srcUv + row * uvStride, dst, dstUv + row * width, width);
+        }
+        return length;
+    }
+
+    private boolean ensureMapped() {
+        if (buffer != null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastOpenAttempt < REOPEN_INTERVAL_MS) {
+            return false;
+        }
+        lastOpenAttempt = now;
+        return remap();
+    }
+
+    private boolean layoutChanged() {
+        return buffer.getInt(FrameRing.OFF_SLOT_COUNT) != slotCount
+            || buffer.getInt(FrameRing.OFF_SLOT_CAPACITY) != slotCapacity;
+    }
+
+    private boolean remap() {
+        buffer = null;
+        if (!file.exists()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (!FrameRing.isValidHeader(mapped)) {
+                return false;
+            }
+            int count = mapped.getInt(FrameRing.OFF_SLOT_COUNT);
+            int capacity = mapped.getInt(FrameRing.OFF_SLOT_CAPACITY);
+            if (count <= 0 || capacity <= 0 || FrameRing.fileSize(count, capacity) > mapped.capacity()) {
+                return false;
+            }
+            slotCount = count;
+            slotCapacity = capacity;
+            buffer = mapped;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 帧环的生产端。文件只映射一次，之后每帧只是内存写入，不再有系统调用。
+ */
+public final class FrameRingWriter implements Closeable {
+
+    private final File file;
+    private final int slotCount;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int slotCapacity;
+    private long sequence;
+    private final CRC32 crc = new CRC32();
+
+    public FrameRingWriter(File file) {
+        this(file, FrameRing.DEFAULT_SLOT_COUNT);
+    }
+
+    public FrameRingWriter(File file, int slotCount) {
+        this.file = file;
+        this.slotCount = slotCount;
+    }
+
+    public void publish(byte[] data, int length, int width, int height) throws IOException {
+        publish(data, length, width, height, width, width, 0, 0);
+    }
+
+    public void publish(byte[] data, int length, int width, int height, long timestampUs, int rotation)
+            throws IOException {
+        publish(data, length, width, height, width, width, timestampUs, rotation);
+    }
+
+    // yStride / uvStride 为 Y 平面和 VU 平面的行跨度，紧密排列时都等于 width
+    public synchronized void publish(byte[] data, int length, int width, int height, int yStride, int uvStride,
+                                     long timestampUs, int rotation) throws IOException {
+        if (yStride < width || uvStride < width
+                || length < yStride * height + uvStride * (height / 2)) {
+            throw new IllegalArgumentException("Frame data too short for " + width + "x" + height);
+        }
+        // 校验和在写入共享内存之前算好，不延长槽位处于写入状态的时间
+        crc.reset();
+        crc.update(data, 0, length);
+        int checksum = (int) crc.getValue();
+
+        if (buffer == null || length > slotCapacity) {
+            remap(length);
+        }
+
+        long seq = ++sequence;
+        int base = FrameRing.slotOffset(FrameRing.slotFor(seq, slotCount), slotCapacity);
+
+        buffer.putLong(base + FrameRing.SLOT_SEQ_BEGIN, seq);
+        Fences.storeStore();
+        buffer.putInt(base + FrameRing.SLOT_WIDTH, width);
+        buffer.putInt(base + FrameRing.SLOT_HEIGHT, height);
+        buffer.putInt(base + FrameRing.SLOT_LENGTH, length);
+        buffer.putInt(base + FrameRing.SLOT_FORMAT, FrameRing.FORMAT_NV21);
+        buffer.putInt(base + FrameRing.SLOT_Y_STRIDE, yStride);
+        buffer.putInt(base + FrameRing.SLOT_UV_STRIDE, uvStride);
+        buffer.putLong(base + FrameRing.SLOT_TIMESTAMP, timestampUs);
+        buffer.putInt(base + FrameRing.SLOT_ROTATION, rotation);
+        buffer.putInt(base + FrameRing.SLOT_CRC, checksum);
+        buffer.position(base + FrameRing.SLOT_HEADER_SIZE);
+        buffer.put(data, 0, length);
+        Fences.storeStore();
+        buffer.putLong(base + FrameRing.SLOT_SEQ_END, seq);
+        Fences.storeStore();
+        buffer.putLong(FrameRing.OFF_PUBLISHED_SEQ, seq);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // 槽位容量不够时扩大文件并重新映射；文件只增不减，避免读者访问被截断的映射
+    private void remap(int minCapacity) throws IOException {
+        int capacity = Math.max(minCapacity, slotCapacity);
+        long size = FrameRing.fileSize(slotCount, capacity);
+
+        if (raf == null) {
+            raf = new RandomAccessFile(file, "rw");
+        }
+        if (raf.length() < size) {
+            raf.setLength(size);
+        }
+        FileChannel channel = raf.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, raf.length()));
+
+        // 服务重启后沿用文件中的序号继续递增，读者据此判断新帧时不会误把新帧当成旧帧
+        if (FrameRing.isValidHeader(buffer)) {
+            sequence = Math.max(sequence, buffer.getLong(FrameRing.OFF_PUBLISHED_SEQ));
+        }
+
+        // 读者可能还在读旧布局，先让旧序号全部失效再写入新头部
+        buffer.putLong(FrameRing.OFF_PUBLISHED_SEQ, 0);
+        Fences.storeStore();
+        for (int i = 0; i < slotCount; i++) {
+            int base = FrameRing.slotOffset(i, capacity);
+            buffer.putLong(base + FrameRing.SLOT_SEQ_BEGIN, 0);
+            buffer.putLong(base + FrameRing.SLOT_SEQ_END, 0);
+        }
+        buffer.putInt(FrameRing.OFF_MAGIC, FrameRing.MAGIC);
+        buffer.putInt(FrameRing.OFF_VERSION, FrameRing.VERSION);
+        buffer.putInt(FrameRing.OFF_SLOT_COUNT, slotCount);
+        buffer.putInt(FrameRing.OFF_SLOT_CAPACITY, capacity);
+        slotCapacity = capacity;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer = null;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 缩放时一并完成的几何变换：居中裁剪、顺时针旋转 90/180/270 度、水平翻转。
+ *
+ * 变换后目标的每一行、每一列仍然各自对应源的一条坐标轴，源偏移可以拆成"行表 + 列表"两部分，
+ * 因此最近邻、双线性、区域平均三种内核 (及其 native 实现) 都只需换一组查找表，整帧只遍历一次。
+ * 不可变，可作为缓存的键。
+ */
+public final class FrameTransform {
+
+    public static final FrameTransform IDENTITY = new FrameTransform(0, false, false);
+
+    // 顺时针旋转角度
+    public final int rotation;
+    // 旋转之后再水平翻转
+    public final boolean mirror;
+    // 按目标宽高比居中裁剪，避免拉伸
+    public final boolean fill;
+
+    private FrameTransform(int rotation, boolean mirror, boolean fill) {
+        this.rotation = rotation;
+        this.mirror = mirror;
+        this.fill = fill;
+    }
+
+    public static FrameTransform of(int rotation, boolean mirror, boolean fill) {
+        int normalized = ((rotation % 360) + 360) % 360 / 90 * 90;
+        if (normalized == 0 && !mirror && !fill) {
+            return IDENTITY;
+        }
+        return new FrameTransform(normalized, mirror, fill);
+    }
+
+    // 相机帧按传感器方向存放，应用显示时会再顺时针旋转 sensorOrientation 度；
+    // 这里预先逆时针转回去，应用看到的就是正向的画面
+    public static FrameTransform forSensor(int sensorOrientation, boolean mirror) {
+        return of(360 - sensorOrientation, mirror, true);
+    }
+
+    public boolean isIdentity() {
+        return this == IDENTITY || (rotation == 0 && !mirror && !fill);
+    }
+
+    public boolean swapsAxes() {
+        return rotation == 90 || rotation == 270;
+    }
+
+    // 返回源帧中参与变换的区域 {left, top, width, height}，坐标均为偶数，保证色度平面对齐
+    int[] cropRect(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        if (!fill) {
+            return new int[]{0, 0, srcWidth, srcHeight};
+        }
+        // 目标尺寸换算回源帧方向后的宽高比
+        long targetWidth = swapsAxes() ? dstHeight : dstWidth;
+        long targetHeight = swapsAxes() ? dstWidth : dstHeight;
+        int width = srcWidth;
+        int height = srcHeight;
+        if (srcWidth * targetHeight > srcHeight * targetWidth) {
+            width = Math.max(2, (int) (srcHeight * targetWidth / targetHeight) & ~1);
+        } else {
+            height = Math.max(2, (int) (srcWidth * targetHeight / targetWidth) & ~1);
+        }
+        return new int[]{(srcWidth - width) / 2 & ~1, (srcHeight - height) / 2 & ~1, width, height};
+    }
+
+    // left / top / width / height 为源平面中的裁剪区域，单位为元素；按 mode 生成对应内核的采样表
+    PlaneScaler createPlaneScaler(ScaleMode mode, int left, int top, int width, int height, int srcStride,
+                                  int dstWidth, int dstHeight, int dstStride, int channels) {
+        // 目标的列、行方向各对应源的一个坐标轴，旋转 90/270 度时交换
+        Axis cols = swapsAxes()
+            ? new Axis(top, height, srcStride, rotation == 90, mirror)
+            : new Axis(left, width, channels, rotation == 180, mirror);
+        Axis rows = swapsAxes()
+            ? new Axis(left, width, channels, rotation == 270, false)
+            : new Axis(top, height, srcStride, rotation == 180, false);
+        switch (mode) {
+            case BILINEAR:
+                return createBilinear(cols, rows, dstWidth, dstHeight, dstStride, channels);
+            case AREA:
+                // 与 ScaleMode.create 一致：放大时用双线性
+                if (dstWidth >= cols.size && dstHeight >= rows.size) {
+                    return createBilinear(cols, rows, dstWidth, dstHeight, dstStride, channels);
+                }
+                int[] colStart = new int[dstWidth];
+                int[] colCount = new int[dstWidth];
+                int[] rowStart = new int[dstHeight];
+                int[] rowCount = new int[dstHeight];
+                cols.boxes(colStart, colCount);
+                rows.boxes(rowStart, rowCount);
+                return new AreaPlaneScaler(dstWidth, dstStride, channels,
+                    colStart, colCount, cols.step, rowStart, rowCount, rows.step);
+            default:
+                int[] colOffsets = new int[dstWidth];
+                int[] rowOffsets = new int[dstHeight];
+                cols.nearest(colOffsets);
+                rows.nearest(rowOffsets);
+                return new NearestPlaneScaler(dstWidth, dstStride, channels, colOffsets, rowOffsets);
+        }
+    }
+
+    private static PlaneScaler createBilinear(Axis cols, Axis rows, int dstWidth, int dstHeight,
+                                              int dstStride, int channels) {
+        int[] x0 = new int[dstWidth];
+        int[] x1 = new int[dstWidth];
+        int[] fx = new int[dstWidth];
+        int[] y0 = new int[dstHeight];
+        int[] y1 = new int[dstHeight];
+        int[] fy = new int[dstHeight];
+        cols.bilinear(x0, x1, fx);
+        rows.bilinear(y0, y1, fy);
+        return new BilinearPlaneScaler(dstWidth, dstStride, channels, x0, x1, fx, y0, y1, fy);
+    }
+
+    // 目标某一方向对应的源坐标轴：起点与长度 (元素)、相邻元素的字节距离；
+    // reversed 为旋转造成的反向，mirrored 为旋转之后的水平翻转
+    private static final class Axis {
+        final int origin;
+        final int size;
+        final int step;
+        final boolean reversed;
+        final boolean mirrored;
+
+        Axis(int origin, int size, int step, boolean reversed, boolean mirrored) {
+            this.origin = origin;
+            this.size = size;
+            this.step = step;
+            this.reversed = reversed;
+            this.mirrored = mirrored;
+        }
+
+        // 源轴上第 index 个元素的字节偏移
+        private int offset(int index) {
+            return (origin + index) * step;
+        }
+
+        void nearest(int[] offsets) {
+            int n = offsets.length;
+            for (int i = 0; i < n; i++) {
+                int u = (int) ((long) (mirrored ? n - 1 - i : i) * size / n);
+                offsets[i] = offset(reversed ? size - 1 - u : u);
+            }
+        }
+
+        // 与先变换整帧再按恒等缩放的结果逐字节一致：采样位置照常计算，只把源下标反过来
+        void bilinear(int[] first, int[] second, int[] weight) {
+            boolean flip = reversed ^ mirrored;
+            int n = first.length;
+            for (int i = 0; i < n; i++) {
+                long pos = BilinearPlaneScaler.sourcePosition(i, size, n);
+                int u = (int) (pos >> 16);
+                int v = Math.min(u + 1, size - 1);
+                first[i] = offset(flip ? size - 1 - u : u);
+                second[i] = offset(flip ? size - 1 - v : v);
+                weight[i] = (int) (pos >> 8) & 0xff;
+            }
+        }
+
+        // 盒子内的求和顺序不影响结果，反向时只需镜像盒子的起点
+        void boxes(int[] start, int[] count) {
+            boolean flip = reversed ^ mirrored;
+            AreaPlaneScaler.fillSpans(size, start.length, start, count);
+            for (int i = 0; i < start.length; i++) {
+                start[i] = offset(flip ? size - start[i] - count[i] : start[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FrameTransform)) {
+            return false;
+        }
+        FrameTransform other = (FrameTransform) o;
+        return rotation == other.rotation && mirror == other.mirror && fill == other.fill;
+    }
+
+    @Override
+    public int hashCode() {
+        return rotation * 4 + (mirror ? 2 : 0) + (fill ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "rotate " + rotation + (mirror ? ", mirror" : "") + (fill ? ", fill" : "");
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 采集端到 hook 端的帧传输方式。
+ */
+public enum FrameTransport {
+    // 未压缩的 NV21 帧，经 FrameRing 传输
+    RAW,
+    // 压缩视频流，经 PacketRing 传输，由 hook 端解码
+    ENCODED;
+
+    public static final String PREF_KEY = "frame_transport";
+
+    public static FrameTransport fromName(String name) {
+        if (name != null) {
+            for (FrameTransport transport : values()) {
+                if (transport.name().equalsIgnoreCase(name)) {
+                    return transport;
+                }
+            }
+        }
+        return RAW;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ghostcam.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 静态图片帧源的文件布局。
+ *
+ * 图片只解码一次，按常见预览尺寸预先缩放成多份 NV21 (金字塔)，连同索引写入同一个文件；
+ * hook 端按预览尺寸查索引直接取用对应的一份，运行时不再转换或缩放。
+ * 文件头的 state 为 0 表示该文件已被替换或停用，读者应重新打开。
+ */
+public final class ImagePyramid {
+
+    public static final String STILL_FILE = "ghostcam_still.dat";
+
+    // 常见的相机预览尺寸，消费者请求的其他尺寸由服务端按需追加
+    public static final int[][] COMMON_SIZES = {
+        {320, 240}, {352, 288}, {640, 360}, {640, 480}, {720, 480}, {800, 600},
+        {960, 720}, {1280, 720}, {1280, 960}, {1440, 1080}, {1920, 1080}, {1920, 1440},
+    };
+
+    static final int MAGIC = 0x47434950; // "GCIP"
+    static final int VERSION = 1;
+    static final int MAX_RENDITIONS = 32;
+
+    static final int STATE_RETIRED = 0;
+    static final int STATE_ACTIVE = 1;
+
+    // 文件头
+    static final int HEADER_SIZE = 32;
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_STATE = 8;
+    static final int OFF_COUNT = 12;
+    static final int OFF_GENERATION = 16;
+
+    // 索引项，紧跟在文件头之后
+    static final int ENTRY_SIZE = 16;
+    static final int ENTRY_WIDTH = 0;
+    static final int ENTRY_HEIGHT = 4;
+    static final int ENTRY_OFFSET = 8;
+    static final int ENTRY_LENGTH = 12;
+
+    private ImagePyramid() {
+    }
+
+    static int entryOffset(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    static int dataOffset(int count) {
+        return HEADER_SIZE + count * ENTRY_SIZE;
+    }
+
+    static boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE
+            && buffer.getInt(OFF_MAGIC) == MAGIC
+            && buffer.getInt(OFF_VERSION) == VERSION;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.ghostcam.frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 静态图片金字塔的消费端。每个尺寸只在第一次使用时从映射中拷贝一次，
+ * 之后直接返回同一个数组，稳态下既没有转换也没有拷贝。
+ */
+public final class ImagePyramidReader {
+
+    private static final long REOPEN_INTERVAL_MS = 1000;
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    private long lastOpenAttempt;
+    private long generation;
+    private int count;
+    private int[] widths;
+    private int[] heights;
+    private byte[][] renditions;
+
+    public ImagePyramidReader(File file) {
+        this.file = file;
+    }
+
+    // 取最适合 width x height 的一份放入 frame：优先完全相同的尺寸，其次是能覆盖它的最小一份。
+    // frame.data 直接指向内部缓存，调用方不能修改；没有可用的静态图片时返回 false
+    public synchronized boolean read(int width, int height, Frame frame) {
+        if (!ensureActive()) {
+            return false;
+        }
+        int index = find(width, height);
+        byte[] data = renditions[index];
+        if (data == null) {
+            int entry = ImagePyramid.entryOffset(index);
+            int offset = buffer.getInt(entry + ImagePyramid.ENTRY_OFFSET);
+            int length = buffer.getInt(entry + ImagePyramid.ENTRY_LENGTH);
+            data = new byte[length];
+            buffer.position(offset);
+            buffer.get(data, 0, length);
+            renditions[index] = data;
+            FrameMetrics.get().increment(FrameMetrics.Counter.ALLOCATIONS);
+            FrameMetrics.get().add(FrameMetrics.Counter.BYTES_COPIED, length);
+        }
+        frame.data = data;
+        frame.width = widths[index];
+        frame.height = heights[index];
+        frame.length = data.length;
+        // 代号与序号一起编码，换图或换尺寸时缩放缓存都会失效
+        frame.sequence = generation * ImagePyramid.MAX_RENDITIONS + index + 1;
+        return true;
+    }
+
+    private int find(int width, int height) {
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            if (widths[i] == width && heights[i] == height) {
+                return i;
+            }
+            // 索引按面积从小到大排列，第一个能覆盖的就是最小的
+            if (best < 0 && widths[i] >= width && heights[i] >= height) {
+                best = i;
+            }
+        }
+        return best >= 0 ? best : count - 1;
+    }
+
+    // 已映射的文件被生产者停用时立即重新打开一次，之后按间隔重试
+    private boolean ensureActive() {
+        if (buffer != null) {
+            if (buffer.getInt(ImagePyramid.OFF_STATE) == ImagePyramid.STATE_ACTIVE) {
+                return true;
+            }
+            unmap();
+            lastOpenAttempt = 0;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastOpenAttempt < REOPEN_INTERVAL_MS) {
+            return false;
+        }
+        lastOpenAttempt = now;
+        return map();
+    }
+
+    private boolean map() {
+        if (!file.exists()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (!ImagePyramid.isValidHeader(mapped)
+                    || mapped.getInt(ImagePyramid.OFF_STATE) != ImagePyramid.STATE_ACTIVE) {
+                return false;
+            }
+            int n = mapped.getInt(ImagePyramid.OFF_COUNT);
+            if (n <= 0 || n > ImagePyramid.MAX_RENDITIONS
+                    || mapped.capacity() < ImagePyramid.dataOffset(n)) {
+                return false;
+            }
+            int[] w = new int[n];
+            int[] h = new int[n];
+            for (int i = 0; i < n; i++) {
+                int entry = ImagePyramid.entryOffset(i);
+                w[i] = mapped.getInt(entry + ImagePyramid.ENTRY_WIDTH);
+                h[i] = mapped.getInt(entry + ImagePyramid.ENTRY_HEIGHT);
+                long end = (long) mapped.getInt(entry + ImagePyramid.ENTRY_OFFSET)
+                    + mapped.getInt(entry + ImagePyramid.ENTRY_LENGTH);
+                if (end > mapped.capacity()) {
+                    return false;
+                }
+            }
+            buffer = mapped;
+            generation = mapped.getLong(ImagePyramid.OFF_GENERATION);
+            count = n;
+            widths = w;
+            heights = h;
+            renditions = new byte[n][];
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void unmap() {
+        buffer = null;
+        count = 0;
+        renditions = null;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ghostcam.frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 静态图片金字塔的生产端。每张图片只在写入时缩放一次，之后不再有任何周期性工作。
+ */
+public final class ImagePyramidWriter {
+
+    private final File file;
+    private final NV21Scaler scaler = new NV21Scaler();
+    private long generation;
+    private List<int[]> written = new ArrayList<>();
+
+    public ImagePyramidWriter(File file, ScaleMode mode) {
+        this.file = file;
+        scaler.setMode(mode);
+    }
+
+    // 把 nv21 按 sizes 中的每个尺寸缩放后写入；先写临时文件再改名，读者不会看到写了一半的文件
+    public synchronized void write(byte[] nv21, int width, int height, List<int[]> sizes) throws IOException {
+        List<int[]> renditions = normalize(sizes);
+        int count = renditions.size();
+        long next = Math.max(generation, readGeneration()) + 1;
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            raf.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(ImagePyramid.dataOffset(count));
+            header.putInt(ImagePyramid.OFF_MAGIC, ImagePyramid.MAGIC);
+            header.putInt(ImagePyramid.OFF_VERSION, ImagePyramid.VERSION);
+            header.putInt(ImagePyramid.OFF_STATE, ImagePyramid.STATE_ACTIVE);
+            header.putInt(ImagePyramid.OFF_COUNT, count);
+            header.putLong(ImagePyramid.OFF_GENERATION, next);
+
+            int offset = ImagePyramid.dataOffset(count);
+            for (int i = 0; i < count; i++) {
+                int[] size = renditions.get(i);
+                int length = NV21Scaler.frameSize(size[0], size[1]);
+                int entry = ImagePyramid.entryOffset(i);
+                header.putInt(entry + ImagePyramid.ENTRY_WIDTH, size[0]);
+                header.putInt(entry + ImagePyramid.ENTRY_HEIGHT, size[1]);
+                header.putInt(entry + ImagePyramid.ENTRY_OFFSET, offset);
+                header.putInt(entry + ImagePyramid.ENTRY_LENGTH, length);
+                offset += length;
+            }
+            raf.write(header.array());
+
+            // 按尺寸从小到大排列，相邻的几份共用一个输出缓冲
+            byte[] out = null;
+            for (int[] size : renditions) {
+                int length = NV21Scaler.frameSize(size[0], size[1]);
+                if (out == null || out.length < length) {
+                    out = new byte[length];
+                }
+                scaler.scaleInto(nv21, width, height, out, size[0], size[1]);
+                raf.write(out, 0, length);
+            }
+        }
+
+        // 通知还映射着旧文件的读者重新打开
+        retireCurrent();
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        generation = next;
+        written = renditions;
+    }
+
+    // 上次写入的金字塔中是否已有该尺寸
+    public synchronized boolean hasSize(int width, int height) {
+        return contains(written, width & ~1, height & ~1);
+    }
+
+    // 停用静态图片帧源，消费者回到帧环或编码流
+    public synchronized void retire() {
+        retireCurrent();
+        file.delete();
+        written = new ArrayList<>();
+    }
+
+    private void retireCurrent() {
+        if (!file.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < ImagePyramid.HEADER_SIZE) {
+                return;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                ImagePyramid.HEADER_SIZE);
+            if (ImagePyramid.isValidHeader(buffer)) {
+                buffer.putInt(ImagePyramid.OFF_STATE, ImagePyramid.STATE_RETIRED);
+            }
+        } catch (IOException e) {
+            // 旧文件损坏时直接被新文件覆盖
+        }
+    }
+
+    // 服务重启后沿用文件中的代号继续递增，读者据此丢弃旧的缓存
+    private long readGeneration() {
+        if (!file.exists()) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < ImagePyramid.HEADER_SIZE) {
+                return 0;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                ImagePyramid.HEADER_SIZE);
+            return ImagePyramid.isValidHeader(buffer) ? buffer.getLong(ImagePyramid.OFF_GENERATION) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // 宽高取偶数、去重、按面积排序，并限制份数
+    private static List<int[]> normalize(List<int[]> sizes) {
+        List<int[]> result = new ArrayList<>();
+        for (int[] size : sizes) {
+            int w = size[0] & ~1;
+            int h = size[1] & ~1;
+            if (w < 2 || h < 2 || contains(result, w, h)) {
+                continue;
+            }
+            result.add(new int[]{w, h});
+        }
+        result.sort((a, b) -> Long.compare((long) a[0] * a[1], (long) b[0] * b[1]));
+        while (result.size() > ImagePyramid.MAX_RENDITIONS) {
+            result.remove(result.size() - 1);
+        }
+        return result;
+    }
+
+    private static boolean contains(List<int[]> sizes, int width, int height) {
+        for (int[] size : sizes) {
+            if (size[0] == width && size[1] == height) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
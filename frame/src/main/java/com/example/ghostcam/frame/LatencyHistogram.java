@@ -0,0 +1,91 @@
+package com.example.ghostcam.frame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图 (纳秒)。
+ *
+ * 桶按 2 的幂分段，每段再细分 8 个子桶，相对误差不超过 12.5%；超过约 8.6 秒的值计入最后一个桶。
+ * 记录只做几次原子加，可以在 hook 回调中直接使用。
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    public static final int BUCKET_COUNT = 256;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // 重试
+        }
+    }
+
+    // 记录从 startNanos 到现在的耗时
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getBucket(int index) {
+        return buckets.get(index);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int index = (magnitude - SUB_BITS + 1) * SUB_COUNT + (int) ((value >>> (magnitude - SUB_BITS)) & (SUB_COUNT - 1));
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    // 桶的上界，用于估算分位数
+    static long bucketUpperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        int sub = index % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+    // 根据桶计数估算分位数，fraction 取 0~1
+    public static long percentile(long[] buckets, long count, double fraction) {
+        if (count <= 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(buckets.length - 1);
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 指标共享表：ScreenCaptureService 和各被 hook 的进程把自己的 FrameMetrics 快照写到共享文件里，
+ * MainActivity 读取后汇总显示。
+ *
+ * 每个进程按 pid 占用一个条目，条目分配方式与 ConsumerTable 相同。
+ * 快照没有加锁，读到的可能是两次写入之间的混合值，对统计显示来说可以接受。
+ */
+public final class MetricsTable implements Closeable {
+
+    public static final String METRICS_FILE = "ghostcam_metrics.dat";
+
+    private static final int MAGIC = 0x47434d54; // "GCMT"
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAX_ENTRIES = 16;
+    private static final int TIMER_COUNT = FrameMetrics.Timer.values().length;
+    private static final int COUNTER_COUNT = FrameMetrics.Counter.values().length;
+
+    // 条目布局：pid、更新时间、进程名，随后是计数器和各直方图
+    private static final int E_PID = 0;
+    private static final int E_UPDATED = 8;
+    private static final int E_NAME = 16;
+    private static final int NAME_LENGTH = 48;
+    private static final int E_COUNTERS = 64;
+    private static final int E_TIMERS = E_COUNTERS + 64;
+    private static final int T_COUNT = 0;
+    private static final int T_SUM = 8;
+    private static final int T_MAX = 16;
+    private static final int T_BUCKETS = 32;
+    private static final int TIMER_SIZE = T_BUCKETS + LatencyHistogram.BUCKET_COUNT * 8;
+    private static final int ENTRY_SIZE = E_TIMERS + TIMER_COUNT * TIMER_SIZE;
+    private static final int FILE_SIZE = HEADER_SIZE + ENTRY_SIZE * MAX_ENTRIES;
+
+    private static final long ENTRY_EXPIRE_MS = 60_000;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    private int entry = -1;
+
+    private MetricsTable(RandomAccessFile raf, MappedByteBuffer buffer) {
+        this.raf = raf;
+        this.buffer = buffer;
+    }
+
+    // 本应用创建 (或复用) 指标文件，并允许其他应用写入
+    public static MetricsTable create(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < FILE_SIZE) {
+            raf.setLength(FILE_SIZE);
+        }
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            for (int i = 0; i < FILE_SIZE; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(4, VERSION);
+            buffer.putInt(0, MAGIC);
+        }
+        file.setReadable(true, false);
+        file.setWritable(true, false);
+        return new MetricsTable(raf, buffer);
+    }
+
+    // 被 hook 的进程打开指标文件；文件不存在或格式不符时返回 null
+    public static MetricsTable open(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            if (raf.length() < FILE_SIZE) {
+                raf.close();
+                return null;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                raf.close();
+                return null;
+            }
+            return new MetricsTable(raf, buffer);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 把本进程的指标写入自己的条目
+    public synchronized void publish(int pid, String name, FrameMetrics metrics, long nowMillis) {
+        int base = claim(pid, name, nowMillis);
+        if (base < 0) {
+            return;
+        }
+        FrameMetrics.Counter[] counters = FrameMetrics.Counter.values();
+        for (int i = 0; i < counters.length; i++) {
+            buffer.putLong(base + E_COUNTERS + i * 8, metrics.get(counters[i]));
+        }
+        FrameMetrics.Timer[] timers = FrameMetrics.Timer.values();
+        for (int t = 0; t < timers.length; t++) {
+            LatencyHistogram histogram = metrics.timer(timers[t]);
+            int timerBase = base + E_TIMERS + t * TIMER_SIZE;
+            buffer.putLong(timerBase + T_COUNT, histogram.getCount());
+            buffer.putLong(timerBase + T_SUM, histogram.getSum());
+            buffer.putLong(timerBase + T_MAX, histogram.getMax());
+            for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+                buffer.putLong(timerBase + T_BUCKETS + i * 8, histogram.getBucket(i));
+            }
+        }
+        buffer.putLong(base + E_UPDATED, nowMillis);
+    }
+
+    private int claim(int pid, String name, long now) {
+        if (entry >= 0) {
+            int base = offset(entry);
+            if (buffer.getInt(base + E_PID) == pid) {
+                return base;
+            }
+            entry = -1;
+        }
+        int start = Math.abs(pid % MAX_ENTRIES);
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            int index = (start + i) % MAX_ENTRIES;
+            int base = offset(index);
+            int owner = buffer.getInt(base + E_PID);
+            if (owner == pid || owner == 0 || now - buffer.getLong(base + E_UPDATED) > ENTRY_EXPIRE_MS) {
+                buffer.putLong(base + E_UPDATED, now);
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                int length = Math.min(bytes.length, NAME_LENGTH - 1);
+                buffer.put(base + E_NAME, (byte) length);
+                for (int j = 0; j < length; j++) {
+                    buffer.put(base + E_NAME + 1 + j, bytes[j]);
+                }
+                buffer.putInt(base + E_PID, pid);
+                entry = index;
+                return base;
+            }
+        }
+        return -1;
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    /**
+     * 一个进程的指标快照。
+     */
+    public static final class Snapshot {
+        public int pid;
+        public String name;
+        public long updatedMillis;
+        public final long[] counters = new long[COUNTER_COUNT];
+        public final long[] timerCounts = new long[TIMER_COUNT];
+        public final long[] timerSums = new long[TIMER_COUNT];
+        public final long[] timerMax = new long[TIMER_COUNT];
+        public final long[][] timerBuckets = new long[TIMER_COUNT][LatencyHistogram.BUCKET_COUNT];
+
+        public long get(FrameMetrics.Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        public long percentile(FrameMetrics.Timer timer, double fraction) {
+            int t = timer.ordinal();
+            return LatencyHistogram.percentile(timerBuckets[t], timerCounts[t], fraction);
+        }
+    }
+
+    // 读取 activeWindowMs 内更新过的所有条目
+    public synchronized List<Snapshot> read(long nowMillis, long activeWindowMs) {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            int base = offset(i);
+            int pid = buffer.getInt(base + E_PID);
+            long updated = buffer.getLong(base + E_UPDATED);
+            if (pid == 0 || nowMillis - updated > activeWindowMs) {
+                continue;
+            }
+            Snapshot snapshot = new Snapshot();
+            snapshot.pid = pid;
+            snapshot.updatedMillis = updated;
+            int length = Math.min(buffer.get(base + E_NAME) & 0xff, NAME_LENGTH - 1);
+            byte[] name = new byte[length];
+            for (int j = 0; j < length; j++) {
+                name[j] = buffer.get(base + E_NAME + 1 + j);
+            }
+            snapshot.name = new String(name, StandardCharsets.UTF_8);
+            for (int c = 0; c < COUNTER_COUNT; c++) {
+                snapshot.counters[c] = buffer.getLong(base + E_COUNTERS + c * 8);
+            }
+            for (int t = 0; t < TIMER_COUNT; t++) {
+                int timerBase = base + E_TIMERS + t * TIMER_SIZE;
+                snapshot.timerCounts[t] = buffer.getLong(timerBase + T_COUNT);
+                snapshot.timerSums[t] = buffer.getLong(timerBase + T_SUM);
+                snapshot.timerMax[t] = buffer.getLong(timerBase + T_MAX);
+                for (int b = 0; b < LatencyHistogram.BUCKET_COUNT; b++) {
+                    snapshot.timerBuckets[t][b] = buffer.getLong(timerBase + T_BUCKETS + b * 8);
+                }
+            }
+            snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+
+    // 生成文本报告：每个进程的计数器和各阶段 p50/p99/max (毫秒)
+    public static String report(List<Snapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return "No active processes";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Snapshot snapshot : snapshots) {
+            sb.append(snapshot.name).append(" (pid ").append(snapshot.pid).append(")\n");
+            for (FrameMetrics.Counter counter : FrameMetrics.Counter.values()) {
+                long value = snapshot.get(counter);
+                if (value != 0) {
+                    sb.append("  ").append(counter.name().toLowerCase(Locale.US))
+                        .append(": ").append(value).append('\n');
+                }
+            }
+            for (FrameMetrics.Timer timer : FrameMetrics.Timer.values()) {
+                int t = timer.ordinal();
+                long count = snapshot.timerCounts[t];
+                if (count == 0) {
+                    continue;
+                }
+                sb.append(String.format(Locale.US, "  %s: n=%d avg=%.2f p50=%.2f p99=%.2f max=%.2f ms\n",
+                    timer.name().toLowerCase(Locale.US), count,
+                    snapshot.timerSums[t] / 1e6 / count,
+                    snapshot.percentile(timer, 0.5) / 1e6,
+                    snapshot.percentile(timer, 0.99) / 1e6,
+                    snapshot.timerMax[t] / 1e6));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
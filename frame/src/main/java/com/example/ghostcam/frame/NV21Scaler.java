@@ -0,0 +1,144 @@
+package com.example.ghostcam.frame;
+
+import java.util.Arrays;
+
+/**
+ * 带缓存的 NV21 缩放器。
+ *
+ * 每个 (srcW, srcH, dstW, dstH) 组合只创建一次 Y / VU 平面的缩放内核，并持有一份复用的输出缓冲；
+ * 同一帧 (generation 相同) 再次按相同尺寸缩放时直接返回上次的结果，稳态下不产生任何分配。
+ * 带 FrameTransform 时裁剪、旋转、翻转与缩放在同一次遍历中完成。
+ * 非线程安全，调用方需自行加锁。
+ */
+public final class NV21Scaler {
+
+    private static final int MAX_PLANS = 4;
+
+    private final Plan[] plans = new Plan[MAX_PLANS];
+    private long useCounter;
+    private ScaleMode mode = ScaleMode.NEAREST;
+
+    public static int frameSize(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    public ScaleMode getMode() {
+        return mode;
+    }
+
+    // 切换缩放档位，已有的内核和缓存全部作废
+    public void setMode(ScaleMode mode) {
+        if (this.mode != mode) {
+            this.mode = mode;
+            Arrays.fill(plans, null);
+        }
+    }
+
+    // 返回缩放后的帧；generation 与上次相同时不再重新计算。返回的数组在下一次缩放前有效
+    public byte[] scale(byte[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight, long generation) {
+        return scale(src, srcWidth, srcHeight, dstWidth, dstHeight, FrameTransform.IDENTITY, generation);
+    }
+
+    public byte[] scale(byte[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                        FrameTransform transform, long generation) {
+        if (srcWidth == dstWidth && srcHeight == dstHeight && transform.isIdentity()) {
+            return src;
+        }
+        Plan plan = obtainPlan(srcWidth, srcHeight, dstWidth, dstHeight, transform);
+        if (plan.output == null) {
+            plan.output = new byte[frameSize(dstWidth, dstHeight)];
+            FrameMetrics.get().increment(FrameMetrics.Counter.ALLOCATIONS);
+        }
+        if (plan.generation != generation || plan.source != src) {
+            plan.run(src, plan.output);
+            plan.generation = generation;
+            plan.source = src;
+        }
+        return plan.output;
+    }
+
+    // 直接缩放到调用方提供的缓冲区中
+    public void scaleInto(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight) {
+        scaleInto(src, srcWidth, srcHeight, dst, dstWidth, dstHeight, FrameTransform.IDENTITY);
+    }
+
+    public void scaleInto(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight,
+                          FrameTransform transform) {
+        if (srcWidth == dstWidth && srcHeight == dstHeight && transform.isIdentity()) {
+            System.arraycopy(src, 0, dst, 0, Math.min(frameSize(dstWidth, dstHeight), dst.length));
+            return;
+        }
+        obtainPlan(srcWidth, srcHeight, dstWidth, dstHeight, transform).run(src, dst);
+    }
+
+    private Plan obtainPlan(int srcWidth, int srcHeight, int dstWidth, int dstHeight, FrameTransform transform) {
+        for (Plan plan : plans) {
+            if (plan != null && plan.matches(srcWidth, srcHeight, dstWidth, dstHeight, transform)) {
+                plan.lastUsed = ++useCounter;
+                return plan;
+            }
+        }
+
+        // 优先使用空位，否则淘汰最久未使用的组合
+        int slot = 0;
+        for (int i = 0; i < plans.length; i++) {
+            if (plans[i] == null) {
+                slot = i;
+                break;
+            }
+            if (plans[i].lastUsed < plans[slot].lastUsed) {
+                slot = i;
+            }
+        }
+        Plan plan = new Plan(mode, srcWidth, srcHeight, dstWidth, dstHeight, transform);
+        plan.lastUsed = ++useCounter;
+        plans[slot] = plan;
+        return plan;
+    }
+
+    private static final class Plan {
+        final int srcWidth;
+        final int srcHeight;
+        final int dstWidth;
+        final int dstHeight;
+        final FrameTransform transform;
+        final PlaneScaler luma;
+        final PlaneScaler chroma;
+
+        byte[] output;
+        byte[] source;
+        long generation = Long.MIN_VALUE;
+        long lastUsed;
+
+        Plan(ScaleMode mode, int srcWidth, int srcHeight, int dstWidth, int dstHeight, FrameTransform transform) {
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.dstWidth = dstWidth;
+            this.dstHeight = dstHeight;
+            this.transform = transform;
+            if (transform.isIdentity()) {
+                luma = mode.create(srcWidth, srcHeight, srcWidth, dstWidth, dstHeight, dstWidth, 1);
+                // VU 平面按色度分辨率缩放，每个元素是一对 VU
+                chroma = mode.create(srcWidth / 2, srcHeight / 2, srcWidth, dstWidth / 2, dstHeight / 2, dstWidth, 2);
+                return;
+            }
+            // 裁剪区域按亮度坐标取偶数，色度平面正好减半
+            int[] crop = transform.cropRect(srcWidth, srcHeight, dstWidth, dstHeight);
+            luma = transform.createPlaneScaler(mode, crop[0], crop[1], crop[2], crop[3], srcWidth,
+                dstWidth, dstHeight, dstWidth, 1);
+            chroma = transform.createPlaneScaler(mode, crop[0] / 2, crop[1] / 2, crop[2] / 2, crop[3] / 2, srcWidth,
+                dstWidth / 2, dstHeight / 2, dstWidth, 2);
+        }
+
+        boolean matches(int srcWidth, int srcHeight, int dstWidth, int dstHeight, FrameTransform transform) {
+            return this.srcWidth == srcWidth && this.srcHeight == srcHeight
+                && this.dstWidth == dstWidth && this.dstHeight == dstHeight
+                && this.transform.equals(transform);
+        }
+
+        void run(byte[] src, byte[] dst) {
+            luma.scale(src, 0, dst, 0);
+            chroma.scale(src, srcWidth * srcHeight, dst, dstWidth * dstHeight);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.ghostcam.frame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * libghostcam_frame 的入口 (ARM 上为 NEON 实现)。
+ *
+ * 库加载后先在一小帧合成数据上与 Java 参考实现逐字节比对，全部一致才启用；
+ * 库不存在或校验失败时 isAvailable() 返回 false，调用方继续使用 Java 实现。
+ * ScreenCaptureService 和 Xposed 模块加载到的是同一个库。
+ */
+public final class NativeFrameOps {
+
+    private static final String LIBRARY = "ghostcam_frame";
+
+    private static volatile boolean enabled;
+    private static boolean loaded;
+    private static String status;
+
+    static {
+        try {
+            System.loadLibrary(LIBRARY);
+            loaded = true;
+            enabled = selfCheck();
+            status = enabled ? "native" : "native self-check failed, using Java";
+        } catch (Throwable t) {
+            status = "native unavailable (" + t.getMessage() + "), using Java";
+        }
+    }
+
+    private NativeFrameOps() {
+    }
+
+    public static boolean isAvailable() {
+        return enabled;
+    }
+
+    public static String getStatus() {
+        return status;
+    }
+
+    // 库是否加载成功 (不论自检结果)
+    static boolean isLoaded() {
+        return loaded;
+    }
+
+    // 测试用：切换 Java 类走 native 还是参考实现，与自检中的做法相同
+    static void setEnabled(boolean value) {
+        enabled = value && loaded;
+    }
+
+    // rgba 必须是 direct ByteBuffer，像素步长为 4
+    static native void rgbaToNv21(ByteBuffer rgba, int rowStride, int width, int height,
+                                  byte[] nv21, int left, int top, int right, int bottom);
+
+    static native void hashTiles(ByteBuffer rgba, int rowStride, int width, int height,
+                                 int tileWidth, int tileHeight, int firstRow, int lastRow, long[] hashes);
+
+    static native void nv21ToI420(byte[] src, int width, int height, byte[] dst);
+
+    static native void nv21ToYv12(byte[] src, int width, int height, byte[] dst, int yStride, int cStride);
+
+    static native void scaleNearest(byte[] src, int srcOffset, byte[] dst, int dstOffset,
+                                    int dstWidth, int dstStride, int channels, int[] cols, int[] rows);
+
+    static native void scaleBilinear(byte[] src, int srcOffset, byte[] dst, int dstOffset,
+                                     int dstWidth, int dstStride, int channels,
+                                     int[] x0, int[] x1, int[] fx, int[] y0, int[] y1, int[] fy);
+
+    // 此时 enabled 仍为 false，Java 类走的都是参考实现
+    private static boolean selfCheck() {
+        int width = 36;
+        int height = 18;
+        int rowStride = width * 4 + 16;
+        ByteBuffer rgba = ByteBuffer.allocateDirect(rowStride * height);
+        int seed = 0x2545F491;
+        for (int i = 0; i < rgba.capacity(); i++) {
+            seed = seed * 1103515245 + 12345;
+            rgba.put(i, (byte) (seed >>> 16));
+        }
+
+        int frameSize = width * height * 3 / 2;
+        byte[] expected = new byte[frameSize];
+        byte[] actual = new byte[frameSize];
+        new RgbaToNv21Converter(1).convert(rgba, rowStride, 4, width, height, expected);
+        rgbaToNv21(rgba, rowStride, width, height, actual, 0, 0, width, height);
+        if (!Arrays.equals(expected, actual)) {
+            return false;
+        }
+        // 36x18 不足一块宽，第二行块也不足一块高，覆盖了边缘块的处理
+        TileHashes tiles = new TileHashes(width, height);
+        long[] javaHashes = new long[tiles.getTileCount()];
+        long[] nativeHashes = new long[javaHashes.length];
+        rgba.order(ByteOrder.LITTLE_ENDIAN);
+        TileHashes.hash(rgba, rowStride, width, height, 0, tiles.rows, javaHashes);
+        hashTiles(rgba, rowStride, width, height, TileHashes.TILE_WIDTH, TileHashes.TILE_HEIGHT, 0, tiles.rows, nativeHashes);
+        if (!Arrays.equals(javaHashes, nativeHashes)) {
+            return false;
+        }
+
+        byte[] nv21 = expected;
+        byte[] javaOut = new byte[YuvConversions.yv12Size(width, height)];
+        byte[] nativeOut = new byte[javaOut.length];
+        YuvConversions.nv21ToYv12(nv21, width, height, javaOut);
+        nv21ToYv12(nv21, width, height, nativeOut, YuvConversions.yv12YStride(width), YuvConversions.yv12CStride(width));
+        if (!Arrays.equals(javaOut, nativeOut)) {
+            return false;
+        }
+        javaOut = new byte[YuvConversions.i420Size(width, height)];
+        nativeOut = new byte[javaOut.length];
+        YuvConversions.nv21ToI420(nv21, width, height, javaOut);
+        nv21ToI420(nv21, width, height, nativeOut);
+        if (!Arrays.equals(javaOut, nativeOut)) {
+            return false;
+        }
+
+        for (ScaleMode mode : new ScaleMode[] {ScaleMode.NEAREST, ScaleMode.BILINEAR}) {
+            for (int[] size : new int[][] {{20, 12}, {50, 30}}) {
+                PlaneScaler luma = mode.create(width, height, width, size[0], size[1], size[0], 1);
+                PlaneScaler chroma = mode.create(width / 2, height / 2, width, size[0] / 2, size[1] / 2, size[0], 2);
+                byte[] javaScaled = new byte[size[0] * size[1] * 3 / 2];
+                byte[] nativeScaled = new byte[javaScaled.length];
+                luma.scale(nv21, 0, javaScaled, 0);
+                chroma.scale(nv21, width * height, javaScaled, size[0] * size[1]);
+                // 类初始化期间其他线程无法访问本类，临时打开开关让同一个内核走 native 路径
+                enabled = true;
+                luma.scale(nv21, 0, nativeScaled, 0);
+                chroma.scale(nv21, width * height, nativeScaled, size[0] * size[1]);
+                enabled = false;
+                if (!Arrays.equals(javaScaled, nativeScaled)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ghostcam.frame;
+
+final class NearestPlaneScaler implements PlaneScaler {
+
+    private final int dstWidth;
+    private final int dstStride;
+    private final int channels;
+    // 目标列 -> 源元素字节偏移，目标行 -> 源行起始偏移
+    private final int[] cols;
+    private final int[] rows;
+
+    NearestPlaneScaler(int srcWidth, int srcHeight, int srcStride,
+                       int dstWidth, int dstHeight, int dstStride, int channels) {
+        this(dstWidth, dstStride, channels, new int[dstWidth], new int[dstHeight]);
+        for (int x = 0; x < dstWidth; x++) {
+            cols[x] = (int) ((long) x * srcWidth / dstWidth) * channels;
+        }
+        for (int y = 0; y < dstHeight; y++) {
+            rows[y] = (int) ((long) y * srcHeight / dstHeight) * srcStride;
+        }
+    }
+
+    // 查找表由调用方给出，源偏移 = rows[y] + cols[x]；FrameTransform 借此实现旋转和翻转
+    NearestPlaneScaler(int dstWidth, int dstStride, int channels, int[] cols, int[] rows) {
+        this.dstWidth = dstWidth;
+        this.dstStride = dstStride;
+        this.channels = channels;
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    @Override
+    public void scale(byte[] src, int srcOffset, byte[] dst, int dstOffset) {
+        if (NativeFrameOps.isAvailable()) {
+            NativeFrameOps.scaleNearest(src, srcOffset, dst, dstOffset, dstWidth, dstStride, channels, cols, rows);
+            return;
+        }
+        for (int y = 0; y < rows.length; y++) {
+            int row = srcOffset + rows[y];
+            int d = dstOffset + y * dstStride;
+            if (channels == 1) {
+                for (int x = 0; x < dstWidth; x++) {
+                    dst[d++] = src[row + cols[x]];
+                }
+            } else {
+                for (int x = 0; x < dstWidth; x++) {
+                    int s = row + cols[x];
+                    dst[d++] = src[s];
+                    dst[d++] = src[s + 1];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 从 PacketRing 中读出的一个压缩包。缓冲区只在容量不够时扩大。
+ */
+public final class Packet {
+
+    public byte[] data = new byte[0];
+    public int length;
+    public int flags;
+    public long ptsUs;
+    public long sequence;
+
+    public boolean isKeyFrame() {
+        return (flags & PacketRing.FLAG_KEY_FRAME) != 0;
+    }
+
+    byte[] ensureCapacity(int size) {
+        if (data.length < size) {
+            data = new byte[size];
+            FrameMetrics.get().increment(FrameMetrics.Counter.ALLOCATIONS);
+        }
+        return data;
+    }
+}
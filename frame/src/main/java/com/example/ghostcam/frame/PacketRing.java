@@ -0,0 +1,73 @@
+package com.example.ghostcam.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 压缩视频流的共享环形缓冲区布局，用于编码传输模式。
+ *
+ * 与 FrameRing 不同，解码器需要按顺序拿到每一个包，所以槽位更多，读者按序号逐个读取；
+ * 落后超过一圈的读者丢掉中间的包，等下一个关键帧重新同步。
+ * 文件头还保存编码器的配置数据 (如 H.264 的 SPS/PPS)，中途加入的读者也能初始化解码器。
+ * 配置和每个包都带 CRC32：撕裂的包直接交给解码器会破坏参考帧，直到下一个关键帧才恢复。
+ */
+public final class PacketRing {
+
+    public static final String STREAM_FILE = "ghostcam_stream.dat";
+
+    public static final int CODEC_AVC = 1;
+    public static final int CODEC_DEFLATE = 2;
+
+    public static final int FLAG_KEY_FRAME = 1;
+
+    static final int MAGIC = 0x47435053; // "GCPS"
+    static final int VERSION = 2;
+    static final int DEFAULT_SLOT_COUNT = 32;
+    static final int DEFAULT_SLOT_CAPACITY = 256 * 1024;
+
+    // 文件头，配置数据紧跟在固定字段之后
+    static final int HEADER_SIZE = 4096;
+    static final int OFF_MAGIC = 0;
+    static final int OFF_VERSION = 4;
+    static final int OFF_SLOT_COUNT = 8;
+    static final int OFF_SLOT_CAPACITY = 12;
+    static final int OFF_PUBLISHED_SEQ = 16;
+    // 配置生效的第一个包的序号，兼作配置区的 seqlock：写配置期间为 0
+    static final int OFF_CONFIG_SEQ = 24;
+    static final int OFF_CODEC = 32;
+    static final int OFF_WIDTH = 36;
+    static final int OFF_HEIGHT = 40;
+    static final int OFF_CONFIG_LENGTH = 44;
+    static final int OFF_CONFIG_CRC = 48;
+    static final int OFF_CONFIG_DATA = 64;
+    static final int CONFIG_CAPACITY = HEADER_SIZE - OFF_CONFIG_DATA;
+
+    // 槽位头
+    static final int SLOT_HEADER_SIZE = 64;
+    static final int SLOT_SEQ_BEGIN = 0;
+    static final int SLOT_FLAGS = 8;
+    static final int SLOT_LENGTH = 12;
+    static final int SLOT_PTS = 16;
+    static final int SLOT_CRC = 24;
+    static final int SLOT_SEQ_END = 56;
+
+    private PacketRing() {
+    }
+
+    static long fileSize(int slotCount, int slotCapacity) {
+        return HEADER_SIZE + (long) slotCount * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+
+    static int slotOffset(int slot, int slotCapacity) {
+        return HEADER_SIZE + slot * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+
+    static int slotFor(long seq, int slotCount) {
+        return (int) (seq % slotCount);
+    }
+
+    static boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.capacity() >= HEADER_SIZE
+            && buffer.getInt(OFF_MAGIC) == MAGIC
+            && buffer.getInt(OFF_VERSION) == VERSION;
+    }
+}
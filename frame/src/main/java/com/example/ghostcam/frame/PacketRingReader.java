@@ -0,0 +1,202 @@
+package com.example.ghostcam.frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 压缩视频流的消费端。按序号逐个读取包；丢包 (落后超过一圈、被覆盖或校验失败) 后
+ * 跳过后续的非关键帧，直到下一个关键帧重新同步。
+ */
+public final class PacketRingReader {
+
+    private static final long REOPEN_INTERVAL_MS = 1000;
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    private int slotCount;
+    private int slotCapacity;
+    private long lastOpenAttempt;
+
+    // 下一个要读的包序号；0 表示从环中最旧的包开始
+    private long nextSequence;
+    private long minSequence;
+    private boolean synced;
+    private final CRC32 crc = new CRC32();
+
+    public PacketRingReader(File file) {
+        this.file = file;
+    }
+
+    // 当前配置生效的序号，供调用方廉价地判断是否需要重建解码器；没有配置时返回 0
+    public synchronized long configSequence() {
+        if (!ensureMapped()) {
+            return 0;
+        }
+        if (layoutChanged() && !remap()) {
+            return 0;
+        }
+        return buffer.getLong(PacketRing.OFF_CONFIG_SEQ);
+    }
+
+    // 读取配置，并从配置生效的位置开始等待关键帧
+    public synchronized boolean readConfig(StreamConfig config) {
+        if (!ensureMapped()) {
+            return false;
+        }
+        long seq = buffer.getLong(PacketRing.OFF_CONFIG_SEQ);
+        if (seq <= 0) {
+            return false;
+        }
+        Fences.loadLoad();
+        int length = buffer.getInt(PacketRing.OFF_CONFIG_LENGTH);
+        if (length < 0 || length > PacketRing.CONFIG_CAPACITY) {
+            return false;
+        }
+        byte[] data = config.data.length == length ? config.data : new byte[length];
+        int codec = buffer.getInt(PacketRing.OFF_CODEC);
+        int width = buffer.getInt(PacketRing.OFF_WIDTH);
+        int height = buffer.getInt(PacketRing.OFF_HEIGHT);
+        int checksum = buffer.getInt(PacketRing.OFF_CONFIG_CRC);
+        buffer.position(PacketRing.OFF_CONFIG_DATA);
+        buffer.get(data, 0, length);
+        Fences.loadLoad();
+        if (buffer.getLong(PacketRing.OFF_CONFIG_SEQ) != seq) {
+            return false;
+        }
+        crc.reset();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return false;
+        }
+        config.codec = codec;
+        config.width = width;
+        config.height = height;
+        config.data = data;
+        config.sequence = seq;
+
+        minSequence = seq;
+        nextSequence = 0;
+        synced = false;
+        return true;
+    }
+
+    // 读取下一个可解码的包；暂时没有时返回 false
+    public synchronized boolean next(Packet packet) {
+        if (!ensureMapped()) {
+            return false;
+        }
+        if (layoutChanged()) {
+            if (!remap()) {
+                return false;
+            }
+            synced = false;
+        }
+        long published = buffer.getLong(PacketRing.OFF_PUBLISHED_SEQ);
+        if (published <= 0) {
+            return false;
+        }
+
+        // 首次读取或生产者重启后序号回退：从环中最旧的包开始找关键帧
+        long oldest = Math.max(minSequence, Math.max(1, published - slotCount + 1));
+        if (nextSequence == 0 || nextSequence > published + 1) {
+            nextSequence = oldest;
+            synced = false;
+        }
+        while (nextSequence <= published) {
+            if (nextSequence < oldest) {
+                nextSequence = oldest;
+                synced = false;
+            }
+            long seq = nextSequence++;
+            if (!readSlot(seq, packet)) {
+                synced = false;
+                continue;
+            }
+            if (!synced && !packet.isKeyFrame()) {
+                continue;
+            }
+            synced = true;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean readSlot(long seq, Packet packet) {
+        int base = PacketRing.slotOffset(PacketRing.slotFor(seq, slotCount), slotCapacity);
+        Fences.loadLoad();
+        if (buffer.getLong(base + PacketRing.SLOT_SEQ_BEGIN) != seq) {
+            return false;
+        }
+        Fences.loadLoad();
+        int flags = buffer.getInt(base + PacketRing.SLOT_FLAGS);
+        int length = buffer.getInt(base + PacketRing.SLOT_LENGTH);
+        long ptsUs = buffer.getLong(base + PacketRing.SLOT_PTS);
+        int checksum = buffer.getInt(base + PacketRing.SLOT_CRC);
+        if (length <= 0 || length > slotCapacity) {
+            return false;
+        }
+        byte[] data = packet.ensureCapacity(length);
+        buffer.position(base + PacketRing.SLOT_HEADER_SIZE);
+        buffer.get(data, 0, length);
+        Fences.loadLoad();
+        if (buffer.getLong(base + PacketRing.SLOT_SEQ_END) != seq
+                || buffer.getLong(base + PacketRing.SLOT_SEQ_BEGIN) != seq) {
+            return false;
+        }
+        crc.reset();
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return false;
+        }
+        packet.length = length;
+        packet.flags = flags;
+        packet.ptsUs = ptsUs;
+        packet.sequence = seq;
+        return true;
+    }
+
+    private boolean ensureMapped() {
+        if (buffer != null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastOpenAttempt < REOPEN_INTERVAL_MS) {
+            return false;
+        }
+        lastOpenAttempt = now;
+        return remap();
+    }
+
+    private boolean layoutChanged() {
+        return buffer.getInt(PacketRing.OFF_SLOT_COUNT) != slotCount
+            || buffer.getInt(PacketRing.OFF_SLOT_CAPACITY) != slotCapacity;
+    }
+
+    private boolean remap() {
+        buffer = null;
+        if (!file.exists()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (!PacketRing.isValidHeader(mapped)) {
+                return false;
+            }
+            int count = mapped.getInt(PacketRing.OFF_SLOT_COUNT);
+            int capacity = mapped.getInt(PacketRing.OFF_SLOT_CAPACITY);
+            if (count <= 0 || capacity <= 0 || PacketRing.fileSize(count, capacity) > mapped.capacity()) {
+                return false;
+            }
+            slotCount = count;
+            slotCapacity = capacity;
+            buffer = mapped;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 压缩视频流的生产端。包按序号写入槽位，槽位容量不够时扩大文件。
+ */
+public final class PacketRingWriter implements Closeable {
+
+    private final File file;
+    private final int slotCount;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int slotCapacity;
+    private long sequence;
+    private final CRC32 crc = new CRC32();
+    // ByteBuffer 形式的包分块经过这里拷贝，校验和随拷贝一起算出 (CRC32.update(ByteBuffer) 需要 API 26)
+    private final byte[] chunk = new byte[16 * 1024];
+
+    public PacketRingWriter(File file) {
+        this(file, PacketRing.DEFAULT_SLOT_COUNT);
+    }
+
+    public PacketRingWriter(File file, int slotCount) {
+        this.file = file;
+        this.slotCount = slotCount;
+    }
+
+    // 编码器 (重新) 配置后调用，之后发布的包都属于这个配置
+    public synchronized void configure(int codec, int width, int height, byte[] config, int length)
+            throws IOException {
+        if (length > PacketRing.CONFIG_CAPACITY) {
+            throw new IOException("Codec config too large: " + length);
+        }
+        if (buffer == null) {
+            remap(PacketRing.DEFAULT_SLOT_CAPACITY);
+        }
+        crc.reset();
+        crc.update(config, 0, length);
+        buffer.putLong(PacketRing.OFF_CONFIG_SEQ, 0);
+        Fences.storeStore();
+        buffer.putInt(PacketRing.OFF_CODEC, codec);
+        buffer.putInt(PacketRing.OFF_WIDTH, width);
+        buffer.putInt(PacketRing.OFF_HEIGHT, height);
+        buffer.putInt(PacketRing.OFF_CONFIG_LENGTH, length);
+        buffer.putInt(PacketRing.OFF_CONFIG_CRC, (int) crc.getValue());
+        buffer.position(PacketRing.OFF_CONFIG_DATA);
+        buffer.put(config, 0, length);
+        Fences.storeStore();
+        buffer.putLong(PacketRing.OFF_CONFIG_SEQ, sequence + 1);
+    }
+
+    public synchronized void publish(byte[] data, int offset, int length, long ptsUs, int flags)
+            throws IOException {
+        crc.reset();
+        crc.update(data, offset, length);
+        int base = beginSlot(length, ptsUs, flags);
+        buffer.position(base + PacketRing.SLOT_HEADER_SIZE);
+        buffer.put(data, offset, length);
+        endSlot(base, (int) crc.getValue());
+    }
+
+    // MediaCodec 的输出缓冲区直接拷贝进槽位，不经过中间数组
+    public synchronized void publish(ByteBuffer data, long ptsUs, int flags) throws IOException {
+        int base = beginSlot(data.remaining(), ptsUs, flags);
+        buffer.position(base + PacketRing.SLOT_HEADER_SIZE);
+        crc.reset();
+        while (data.hasRemaining()) {
+            int n = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+            buffer.put(chunk, 0, n);
+        }
+        endSlot(base, (int) crc.getValue());
+    }
+
+    private int beginSlot(int length, long ptsUs, int flags) throws IOException {
+        if (buffer == null || length > slotCapacity) {
+            remap(Math.max(length, PacketRing.DEFAULT_SLOT_CAPACITY));
+        }
+        long seq = ++sequence;
+        int base = PacketRing.slotOffset(PacketRing.slotFor(seq, slotCount), slotCapacity);
+        buffer.putLong(base + PacketRing.SLOT_SEQ_BEGIN, seq);
+        Fences.storeStore();
+        buffer.putInt(base + PacketRing.SLOT_FLAGS, flags);
+        buffer.putInt(base + PacketRing.SLOT_LENGTH, length);
+        buffer.putLong(base + PacketRing.SLOT_PTS, ptsUs);
+        return base;
+    }
+
+    private void endSlot(int base, int checksum) {
+        buffer.putInt(base + PacketRing.SLOT_CRC, checksum);
+        Fences.storeStore();
+        buffer.putLong(base + PacketRing.SLOT_SEQ_END, sequence);
+        Fences.storeStore();
+        buffer.putLong(PacketRing.OFF_PUBLISHED_SEQ, sequence);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // 与 FrameRingWriter 相同：文件只增不减，沿用文件中的序号，先让旧序号失效再写新头部
+    private void remap(int minCapacity) throws IOException {
+        int capacity = Math.max(minCapacity, slotCapacity);
+        long size = PacketRing.fileSize(slotCount, capacity);
+
+        if (raf == null) {
+            raf = new RandomAccessFile(file, "rw");
+        }
+        if (raf.length() < size) {
+            raf.setLength(size);
+        }
+        FileChannel channel = raf.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, raf.length()));
+
+        boolean valid = PacketRing.isValidHeader(buffer);
+        if (valid) {
+            sequence = Math.max(sequence, buffer.getLong(PacketRing.OFF_PUBLISHED_SEQ));
+        }
+
+        buffer.putLong(PacketRing.OFF_PUBLISHED_SEQ, 0);
+        Fences.storeStore();
+        for (int i = 0; i < slotCount; i++) {
+            int base = PacketRing.slotOffset(i, capacity);
+            buffer.putLong(base + PacketRing.SLOT_SEQ_BEGIN, 0);
+            buffer.putLong(base + PacketRing.SLOT_SEQ_END, 0);
+        }
+        if (!valid) {
+            buffer.putLong(PacketRing.OFF_CONFIG_SEQ, 0);
+        }
+        buffer.putInt(PacketRing.OFF_MAGIC, PacketRing.MAGIC);
+        buffer.putInt(PacketRing.OFF_VERSION, PacketRing.VERSION);
+        buffer.putInt(PacketRing.OFF_SLOT_COUNT, slotCount);
+        buffer.putInt(PacketRing.OFF_SLOT_CAPACITY, capacity);
+        slotCapacity = capacity;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer = null;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 单个图像平面的缩放内核。
+ *
+ * 宽高以元素为单位，channels 为每个元素的字节数：Y 平面为 1，NV21 的交错 VU 平面为 2。
+ * 实现应在构造时完成所有查找表的预计算，scale() 本身不做任何分配。
+ */
+public interface PlaneScaler {
+
+    void scale(byte[] src, int srcOffset, byte[] dst, int dstOffset);
+}
@@ -0,0 +1,368 @@
+package com.example.ghostcam.frame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 按行条带并行的 RGBA -> NV21 转换器。
+ *
+ * 调用线程自己处理第一个条带，其余条带交给常驻工作线程；每个条带先写 Y 平面，
+ * 再单独一遍按 2x2 块写 VU (取块左上角像素，与原实现一致)。工作线程通过同一个监视器
+ * 等待新任务，每帧不创建任何对象。
+ *
+ * convertChanged 按 TileHashes 分块，每个条带先算本条带各块的哈希，只重新转换内容与目标缓冲区不同的块。
+ *
+ * BT.601 系数保证 Y 落在 [16, 235]、U/V 落在 [16, 240]，因此不需要逐像素截断。
+ */
+public final class RgbaToNv21Converter {
+
+    private static final int MAX_THREADS = 4;
+
+    private final Thread[] workers;
+    private final int stripes;
+    private final Object lock = new Object();
+    private int generation;
+    private int pending;
+    private boolean closed;
+
+    // 当前任务：argb 与 rgba 二选一
+    private int[] argb;
+    private ByteBuffer rgba;
+    private int stride;
+    private int pixelStride;
+    private int width;
+    private int height;
+    private byte[] nv21;
+    // 分块转换时使用
+    private TileHashes previous;
+    private TileHashes target;
+    private long[] scratch = new long[0];
+    private final int[] changedTiles;
+
+    public RgbaToNv21Converter(int threads) {
+        stripes = Math.max(1, threads);
+        changedTiles = new int[stripes];
+        workers = new Thread[stripes - 1];
+        for (int i = 0; i < workers.length; i++) {
+            final int stripe = i + 1;
+            workers[i] = new Thread(() -> workLoop(stripe), "GhostCam-Convert-" + stripe);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    // 按大核数量决定线程数；读不到 cpufreq 时退回可用处理器数的一半
+    public static int defaultThreadCount() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        long maxFreq = 0;
+        int bigCores = 0;
+        for (int i = 0; i < cpus; i++) {
+            long freq = readCpuMaxFreq(i);
+            if (freq > maxFreq) {
+                maxFreq = freq;
+                bigCores = 1;
+            } else if (freq == maxFreq && freq > 0) {
+                bigCores++;
+            }
+        }
+        if (bigCores == 0) {
+            bigCores = cpus / 2;
+        }
+        return Math.max(1, Math.min(MAX_THREADS, bigCores));
+    }
+
+    private static long readCpuMaxFreq(int cpu) {
+        File file = new File("/sys/devices/system/cpu/cpu" + cpu + "/cpufreq/cpuinfo_max_freq");
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[32];
+            int n = in.read(buf);
+            return n > 0 ? Long.parseLong(new String(buf, 0, n).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public int getThreadCount() {
+        return stripes;
+    }
+
+    // 将 ARGB 像素 (Bitmap.getPixels 的格式) 转换为 NV21，结果写入 nv21
+    public void convert(int[] argb, int stride, int width, int height, byte[] nv21) {
+        run(argb, null, stride, 1, width, height, nv21, null, null);
+    }
+
+    // 直接读取 RGBA_8888 平面 (Image.Plane 的缓冲区)，按 rowStride / pixelStride 取像素，不经过 Bitmap
+    public void convert(ByteBuffer rgba, int rowStride, int pixelStride, int width, int height, byte[] nv21) {
+        rgba.order(ByteOrder.LITTLE_ENDIAN);
+        run(null, rgba, rowStride, pixelStride, width, height, nv21, null, null);
+    }
+
+    /**
+     * 只转换内容与 target 所记录的不同的块，其余块保留 nv21 中已有的数据，然后 target 和 previous 都更新为本帧的哈希。
+     * previous 是上一帧的哈希；返回与它相比发生变化的块数，0 表示本帧与上一帧完全相同。
+     * 奇数宽高的处理与 convert 相同；像素步长不为 4 时整帧转换并返回全部块数。
+     */
+    public int convertChanged(ByteBuffer rgba, int rowStride, int pixelStride, int width, int height,
+                              byte[] nv21, TileHashes previous, TileHashes target) {
+        if (!previous.matches(width, height) || !target.matches(width, height)) {
+            throw new IllegalArgumentException("tile hashes do not match " + width + "x" + height);
+        }
+        if (pixelStride != 4) {
+            convert(rgba, rowStride, pixelStride, width, height, nv21);
+            previous.invalidate();
+            target.invalidate();
+            return previous.getTileCount();
+        }
+        if (scratch.length < previous.hashes.length) {
+            scratch = new long[previous.hashes.length];
+        }
+        rgba.order(ByteOrder.LITTLE_ENDIAN);
+        run(null, rgba, rowStride, pixelStride, width, height, nv21, previous, target);
+        previous.valid = true;
+        target.valid = true;
+        int changed = 0;
+        for (int count : changedTiles) {
+            changed += count;
+        }
+        return changed;
+    }
+
+    private void run(int[] argb, ByteBuffer rgba, int stride, int pixelStride,
+                     int width, int height, byte[] nv21, TileHashes previous, TileHashes target) {
+        boolean inline;
+        synchronized (lock) {
+            this.argb = argb;
+            this.rgba = rgba;
+            this.stride = stride;
+            this.pixelStride = pixelStride;
+            this.width = width;
+            this.height = height;
+            this.nv21 = nv21;
+            this.previous = previous;
+            this.target = target;
+            // 关闭后工作线程已退出 (onDestroy 之后仍可能有一次静态图片转换)，所有条带在调用线程上完成
+            inline = closed;
+            if (!inline) {
+                pending = workers.length;
+                generation++;
+                lock.notifyAll();
+            }
+        }
+
+        if (inline) {
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                convertStripe(stripe);
+            }
+        } else {
+            convertStripe(0);
+        }
+
+        boolean interrupted = false;
+        synchronized (lock) {
+            // 被中断时也要等工作线程写完，否则返回后调用方复用的缓冲区还在被写入
+            while (pending > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            this.argb = null;
+            this.rgba = null;
+            this.nv21 = null;
+            this.previous = null;
+            this.target = null;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void workLoop(int stripe) {
+        int seen = 0;
+        while (true) {
+            synchronized (lock) {
+                while (generation == seen && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                // 关闭前已发出的任务仍要做完，run() 在等它的 pending
+                if (generation == seen) {
+                    return;
+                }
+                seen = generation;
+            }
+
+            convertStripe(stripe);
+
+            synchronized (lock) {
+                if (--pending == 0) {
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void convertStripe(int stripe) {
+        if (target != null) {
+            convertChangedStripe(stripe);
+            return;
+        }
+        // 条带边界对齐到偶数行，保证每个 2x2 色度块完整地落在同一条带内
+        int rowsPerStripe = ((height + stripes - 1) / stripes + 1) & ~1;
+        int top = Math.min(height, stripe * rowsPerStripe);
+        int bottom = Math.min(height, top + rowsPerStripe);
+        if (top >= bottom) {
+            return;
+        }
+        if (rgba != null && pixelStride == 4 && rgba.isDirect() && NativeFrameOps.isAvailable()) {
+            NativeFrameOps.rgbaToNv21(rgba, stride, width, height, nv21, 0, top, width, bottom);
+        } else if (rgba != null) {
+            convertLuma(rgba, 0, top, width, bottom);
+            convertChroma(rgba, 0, top, width, bottom);
+        } else {
+            convertLuma(top, bottom);
+            convertChroma(top, bottom);
+        }
+    }
+
+    // 条带按整行块划分；同一行中相邻的需转换块合并成一个区域再转换
+    private void convertChangedStripe(int stripe) {
+        TileHashes prev = previous;
+        TileHashes dst = target;
+        int perStripe = (prev.rows + stripes - 1) / stripes;
+        int first = Math.min(prev.rows, stripe * perStripe);
+        int last = Math.min(prev.rows, first + perStripe);
+        boolean nativeOps = rgba.isDirect() && NativeFrameOps.isAvailable();
+        if (first < last) {
+            if (nativeOps) {
+                NativeFrameOps.hashTiles(rgba, stride, width, height, TileHashes.TILE_WIDTH, TileHashes.TILE_HEIGHT,
+                        first, last, scratch);
+            } else {
+                TileHashes.hash(rgba, stride, width, height, first, last, scratch);
+            }
+        }
+        int changed = 0;
+        int columns = prev.columns;
+        for (int row = first; row < last; row++) {
+            int top = row * TileHashes.TILE_HEIGHT;
+            int bottom = Math.min(height, top + TileHashes.TILE_HEIGHT);
+            int spanStart = -1;
+            for (int c = 0; c <= columns; c++) {
+                boolean dirty = false;
+                if (c < columns) {
+                    int t = row * columns + c;
+                    long hash = scratch[t];
+                    if (!prev.valid || prev.hashes[t] != hash) {
+                        changed++;
+                    }
+                    prev.hashes[t] = hash;
+                    if (!dst.valid || dst.hashes[t] != hash) {
+                        dirty = true;
+                        dst.hashes[t] = hash;
+                    }
+                }
+                if (dirty && spanStart < 0) {
+                    spanStart = c;
+                } else if (!dirty && spanStart >= 0) {
+                    int left = spanStart * TileHashes.TILE_WIDTH;
+                    int right = Math.min(width, c * TileHashes.TILE_WIDTH);
+                    if (nativeOps) {
+                        NativeFrameOps.rgbaToNv21(rgba, stride, width, height, nv21, left, top, right, bottom);
+                    } else {
+                        convertLuma(rgba, left, top, right, bottom);
+                        convertChroma(rgba, left, top, right, bottom);
+                    }
+                    spanStart = -1;
+                }
+            }
+        }
+        changedTiles[stripe] = changed;
+    }
+
+    private void convertLuma(int top, int bottom) {
+        int[] src = argb;
+        byte[] dst = nv21;
+        int w = width;
+        for (int j = top; j < bottom; j++) {
+            int s = j * stride;
+            int d = j * w;
+            for (int i = 0; i < w; i++) {
+                int pixel = src[s + i];
+                int r = (pixel >> 16) & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = pixel & 0xff;
+                dst[d + i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+            }
+        }
+    }
+
+    private void convertChroma(int top, int bottom) {
+        int[] src = argb;
+        byte[] dst = nv21;
+        int w = width;
+        int uvBase = w * height;
+        for (int j = top; j < bottom; j += 2) {
+            int s = j * stride;
+            int d = uvBase + (j >> 1) * w;
+            for (int i = 0; i + 1 < w; i += 2) {
+                int pixel = src[s + i];
+                int r = (pixel >> 16) & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = pixel & 0xff;
+                dst[d + i] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);     // V
+                dst[d + i + 1] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128); // U
+            }
+        }
+    }
+
+    // 小端读取 RGBA 字节得到 0xAABBGGRR
+    private void convertLuma(ByteBuffer src, int left, int top, int right, int bottom) {
+        byte[] dst = nv21;
+        int w = width;
+        int ps = pixelStride;
+        for (int j = top; j < bottom; j++) {
+            int s = j * stride + left * ps;
+            int d = j * w;
+            for (int i = left; i < right; i++, s += ps) {
+                int pixel = src.getInt(s);
+                int r = pixel & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = (pixel >> 16) & 0xff;
+                dst[d + i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+            }
+        }
+    }
+
+    private void convertChroma(ByteBuffer src, int left, int top, int right, int bottom) {
+        byte[] dst = nv21;
+        int w = width;
+        int step = pixelStride * 2;
+        int uvBase = w * height;
+        for (int j = top; j < bottom; j += 2) {
+            int s = j * stride + left * pixelStride;
+            int d = uvBase + (j >> 1) * w;
+            for (int i = left; i + 1 < right; i += 2, s += step) {
+                int pixel = src.getInt(s);
+                int r = pixel & 0xff;
+                int g = (pixel >> 8) & 0xff;
+                int b = (pixel >> 16) & 0xff;
+                dst[d + i] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);     // V
+                dst[d + i + 1] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128); // U
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 缩放质量档位，由 GhostCamConfig 中的 scale_mode 选择。
+ */
+public enum ScaleMode {
+    NEAREST,
+    BILINEAR,
+    AREA;
+
+    public static final String PREF_KEY = "scale_mode";
+
+    public static ScaleMode fromName(String name) {
+        if (name != null) {
+            for (ScaleMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+        }
+        return NEAREST;
+    }
+
+    public PlaneScaler create(int srcWidth, int srcHeight, int srcStride,
+                              int dstWidth, int dstHeight, int dstStride, int channels) {
+        int factor = exactDownscaleFactor(srcWidth, srcHeight, dstWidth, dstHeight);
+        switch (this) {
+            case BILINEAR:
+                // 正好缩小一半时双线性插值退化为 2x2 平均
+                if (factor == 2) {
+                    return new DownsamplePlaneScaler(factor, dstWidth, dstHeight, srcStride, dstStride, channels);
+                }
+                return new BilinearPlaneScaler(srcWidth, srcHeight, srcStride, dstWidth, dstHeight, dstStride, channels);
+            case AREA:
+                if (factor != 0) {
+                    return new DownsamplePlaneScaler(factor, dstWidth, dstHeight, srcStride, dstStride, channels);
+                }
+                if (dstWidth >= srcWidth && dstHeight >= srcHeight) {
+                    return new BilinearPlaneScaler(srcWidth, srcHeight, srcStride, dstWidth, dstHeight, dstStride, channels);
+                }
+                return new AreaPlaneScaler(srcWidth, srcHeight, srcStride, dstWidth, dstHeight, dstStride, channels);
+            default:
+                return new NearestPlaneScaler(srcWidth, srcHeight, srcStride, dstWidth, dstHeight, dstStride, channels);
+        }
+    }
+
+    // 宽高都正好缩小 2 倍或 4 倍时返回倍数，否则返回 0
+    private static int exactDownscaleFactor(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        if (srcWidth == dstWidth * 2 && srcHeight == dstHeight * 2) {
+            return 2;
+        }
+        if (srcWidth == dstWidth * 4 && srcHeight == dstHeight * 4) {
+            return 4;
+        }
+        return 0;
+    }
+}
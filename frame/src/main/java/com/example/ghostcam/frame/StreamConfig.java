@@ -0,0 +1,14 @@
+package com.example.ghostcam.frame;
+
+/**
+ * 压缩视频流的配置：编码格式、尺寸和解码器初始化数据。
+ */
+public final class StreamConfig {
+
+    public int codec;
+    public int width;
+    public int height;
+    public byte[] data = new byte[0];
+    // 配置生效的第一个包的序号
+    public long sequence;
+}
@@ -0,0 +1,93 @@
+package com.example.ghostcam.frame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * RGBA 帧按 TILE_WIDTH x TILE_HEIGHT 分块后每块的 64 位哈希，记录某个缓冲区当前对应的内容。
+ *
+ * 块内每一像素行按 8 字节 (小端，两个像素) 轮流分给四路累加器 a = (a ^ word) * PRIME，
+ * 行末依次并入该块的哈希；与 libghostcam_frame 中的 gc_hash_tiles 逐位一致。
+ * 块的宽高都是偶数，每块的色度也完整地落在块内。
+ */
+public final class TileHashes {
+
+    public static final int TILE_WIDTH = 64;
+    public static final int TILE_HEIGHT = 16;
+
+    static final long SEED = 0xcbf29ce484222325L;
+    static final long PRIME = 0x9e3779b97f4a7c15L;
+
+    final int width;
+    final int height;
+    final int columns;
+    final int rows;
+    final long[] hashes;
+    // 为 false 时所有块都视为已变化
+    boolean valid;
+
+    public TileHashes(int width, int height) {
+        this.width = width;
+        this.height = height;
+        columns = (width + TILE_WIDTH - 1) / TILE_WIDTH;
+        rows = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+        hashes = new long[columns * rows];
+    }
+
+    public boolean matches(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public int getTileCount() {
+        return hashes.length;
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    // Java 参考实现：计算第 [firstRow, lastRow) 行块的哈希，写入 out[row * columns + column]
+    static void hash(ByteBuffer rgba, int rowStride, int width, int height,
+                     int firstRow, int lastRow, long[] out) {
+        int columns = (width + TILE_WIDTH - 1) / TILE_WIDTH;
+        for (int row = firstRow; row < lastRow; row++) {
+            int base = row * columns;
+            Arrays.fill(out, base, base + columns, SEED);
+            int top = row * TILE_HEIGHT;
+            int bottom = Math.min(height, top + TILE_HEIGHT);
+            for (int j = top; j < bottom; j++) {
+                int s = j * rowStride;
+                for (int c = 0; c < columns; c++) {
+                    int x = c * TILE_WIDTH;
+                    int end = Math.min(width, x + TILE_WIDTH);
+                    long a0 = SEED;
+                    long a1 = SEED;
+                    long a2 = SEED;
+                    long a3 = SEED;
+                    for (; x + 8 <= end; x += 8) {
+                        int p = s + x * 4;
+                        a0 = (a0 ^ rgba.getLong(p)) * PRIME;
+                        a1 = (a1 ^ rgba.getLong(p + 8)) * PRIME;
+                        a2 = (a2 ^ rgba.getLong(p + 16)) * PRIME;
+                        a3 = (a3 ^ rgba.getLong(p + 24)) * PRIME;
+                    }
+                    // 不足 8 个像素的尾部最多 4 个 8 字节 (宽度为奇数时最后一个包含行尾之后的一个像素)
+                    if (x < end) {
+                        a0 = (a0 ^ rgba.getLong(s + x * 4)) * PRIME;
+                    }
+                    if (x + 2 < end) {
+                        a1 = (a1 ^ rgba.getLong(s + x * 4 + 8)) * PRIME;
+                    }
+                    if (x + 4 < end) {
+                        a2 = (a2 ^ rgba.getLong(s + x * 4 + 16)) * PRIME;
+                    }
+                    if (x + 6 < end) {
+                        a3 = (a3 ^ rgba.getLong(s + x * 4 + 24)) * PRIME;
+                    }
+                    long h = out[base + c];
+                    out[base + c] = (((((h ^ a0) * PRIME) ^ a1) * PRIME ^ a2) * PRIME ^ a3) * PRIME;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.ghostcam.frame;
+
+import java.io.Closeable;
+
+/**
+ * 编码传输模式下消费端的解码器：按顺序送入压缩包，取出最新的 NV21 帧。
+ */
+public interface VideoDecoder extends Closeable {
+
+    // 送入一个压缩包；返回 false 表示解码器暂时无法接收，调用方稍后重试同一个包
+    boolean queue(Packet packet);
+
+    // 取出最新解码出的帧；没有新帧时返回 false，out 保持不变
+    boolean poll(Frame out);
+}
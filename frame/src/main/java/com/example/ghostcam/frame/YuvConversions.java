@@ -0,0 +1,70 @@
+package com.example.ghostcam.frame;
+
+/**
+ * NV21 与其他 YUV 420 布局之间的转换。native 库可用时走 SIMD 实现，否则使用这里的 Java 参考实现。
+ */
+public final class YuvConversions {
+
+    private YuvConversions() {
+    }
+
+    public static int i420Size(int width, int height) {
+        return width * height + 2 * (width / 2) * (height / 2);
+    }
+
+    // Android YV12 要求 Y 与色度的行跨度都按 16 字节对齐
+    public static int yv12YStride(int width) {
+        return (width + 15) & ~15;
+    }
+
+    public static int yv12CStride(int width) {
+        return (yv12YStride(width) / 2 + 15) & ~15;
+    }
+
+    public static int yv12Size(int width, int height) {
+        return yv12YStride(width) * height + 2 * yv12CStride(width) * (height / 2);
+    }
+
+    public static void nv21ToI420(byte[] src, int width, int height, byte[] dst) {
+        if (NativeFrameOps.isAvailable()) {
+            NativeFrameOps.nv21ToI420(src, width, height, dst);
+            return;
+        }
+        int ySize = width * height;
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        System.arraycopy(src, 0, dst, 0, ySize);
+        splitChroma(src, ySize, width, dst, ySize, ySize + chromaWidth * chromaHeight,
+            chromaWidth, chromaWidth, chromaHeight);
+    }
+
+    public static void nv21ToYv12(byte[] src, int width, int height, byte[] dst) {
+        int yStride = yv12YStride(width);
+        int cStride = yv12CStride(width);
+        if (NativeFrameOps.isAvailable()) {
+            NativeFrameOps.nv21ToYv12(src, width, height, dst, yStride, cStride);
+            return;
+        }
+        for (int j = 0; j < height; j++) {
+            System.arraycopy(src, j * width, dst, j * yStride, width);
+        }
+        int chromaHeight = height / 2;
+        int vBase = yStride * height;
+        int uBase = vBase + cStride * chromaHeight;
+        splitChroma(src, width * height, width, dst, uBase, vBase, cStride, width / 2, chromaHeight);
+    }
+
+    // 将交错的 VU 平面拆为独立的 U、V 平面
+    private static void splitChroma(byte[] src, int srcBase, int srcStride, byte[] dst,
+                                    int uBase, int vBase, int dstStride, int chromaWidth, int chromaHeight) {
+        for (int j = 0; j < chromaHeight; j++) {
+            int s = srcBase + j * srcStride;
+            int u = uBase + j * dstStride;
+            int v = vBase + j * dstStride;
+            for (int i = 0; i < chromaWidth; i++, s += 2) {
+                dst[v + i] = src[s];
+                dst[u + i] = src[s + 1];
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.ghostcam.frame;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * DropOldestQueue：队满丢最旧的一项、顺序不变、每一项恰好被取走或丢弃一次，
+ * 以及 flush 返回后不再处理 flush 之前入队的元素。
+ */
+public class DropOldestQueueTest {
+
+    private static final int ITEMS = 1_000_000;
+
+    @Test
+    public void dropsOldestWhenFull() {
+        List<Integer> dropped = new ArrayList<>();
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(3, dropped::add);
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+        }
+        assertEquals(dropped, Arrays.asList(1, 2));
+        assertEquals(queue.size(), 3);
+        assertEquals(queue.poll(), (Integer) 3);
+        assertEquals(queue.poll(), (Integer) 4);
+        assertEquals(queue.poll(), (Integer) 5);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void flushDropsQueuedItems() {
+        List<Integer> dropped = new ArrayList<>();
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(4, dropped::add);
+        queue.offer(1);
+        queue.offer(2);
+        queue.flush();
+        assertEquals(dropped, Arrays.asList(1, 2));
+        queue.offer(3);
+        List<Integer> processed = new ArrayList<>();
+        assertTrue(queue.process(0, TimeUnit.MILLISECONDS, processed::add));
+        assertEquals(processed, Arrays.asList(3));
+        assertFalse(queue.process(1, TimeUnit.MILLISECONDS, processed::add));
+    }
+
+    // 生产者持续入队，消费者取到的序列严格递增，取走与丢弃的合起来恰好是全部元素
+    @Test
+    public void concurrentProducerConsumerKeepsOrder() throws InterruptedException {
+        int[] seen = new int[ITEMS];
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(2, item -> seen[item]++);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < ITEMS; i++) {
+                queue.offer(i);
+            }
+        });
+        int[] last = {-1};
+        boolean[] ordered = {true};
+        Thread consumer = new Thread(() -> {
+            while (last[0] < ITEMS - 1) {
+                Integer item = queue.take(10, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    if (!producer.isAlive() && queue.size() == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                ordered[0] &= item > last[0];
+                last[0] = item;
+                seen[item]++;
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        assertTrue(ordered[0]);
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(seen[i], 1, "item " + i);
+        }
+    }
+
+    /**
+     * 另一个线程反复 flush：flush 开始前已经入队的元素，在 flush 返回之后都不能再被处理。
+     * 处理和 flush 返回各取一个全局序号，事后逐一核对。
+     */
+    @Test
+    public void nothingFromBeforeFlushIsProcessedAfterIt() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger offered = new AtomicInteger();
+        int[] seen = new int[ITEMS];
+        long[] processedAt = new long[ITEMS];
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(2, item -> seen[item]++);
+        List<long[]> flushes = new ArrayList<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < ITEMS; i++) {
+                queue.offer(i);
+                offered.set(i + 1);
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            while (producer.isAlive() || queue.size() > 0) {
+                queue.process(10, TimeUnit.MILLISECONDS, item -> {
+                    processedAt[item] = clock.incrementAndGet();
+                    seen[item]++;
+                });
+            }
+        });
+        Thread flusher = new Thread(() -> {
+            while (producer.isAlive()) {
+                int boundary = offered.get();
+                queue.flush();
+                flushes.add(new long[] {boundary, clock.incrementAndGet()});
+                Thread.yield();
+            }
+        });
+        producer.start();
+        consumer.start();
+        flusher.start();
+        producer.join();
+        flusher.join();
+        consumer.join();
+
+        assertTrue(flushes.size() > 0);
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(seen[i], 1, "item " + i);
+        }
+        // flushes 按时间先后排列，边界也单调不减：找出每一项处理之前最后一次返回的 flush
+        for (int item = 0; item < ITEMS; item++) {
+            long at = processedAt[item];
+            if (at == 0) {
+                continue;
+            }
+            int lo = 0;
+            int hi = flushes.size() - 1;
+            int f = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (flushes.get(mid)[1] < at) {
+                    f = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            if (f >= 0) {
+                assertTrue(item >= flushes.get(f)[0],
+                    "item " + item + " processed after a flush that began with " + flushes.get(f)[0] + " offered");
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.ghostcam.frame;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * 帧环的版本化槽位头和 CRC 校验：完整的帧原样读出，被破坏或版本不符的帧被拒绝。
+ */
+public class FrameRingTest {
+
+    private static final int SLOT_COUNT = 3;
+
+    private File file;
+    private FrameRingWriter writer;
+
+    @BeforeMethod
+    public void createRing() throws IOException {
+        file = File.createTempFile("ghostcam_frame", ".dat");
+        file.delete();
+        writer = new FrameRingWriter(file, SLOT_COUNT);
+    }
+
+    @AfterMethod
+    public void deleteRing() throws IOException {
+        writer.close();
+        file.delete();
+    }
+
+    @Test
+    public void frameRoundTrips() throws IOException {
+        FrameRingReader reader = new FrameRingReader(file);
+        Frame frame = new Frame();
+        for (int i = 0; i < 5; i++) {
+            byte[] nv21 = frame(32, 16, i);
+            writer.publish(nv21, nv21.length, 32, 16, i * 1000L, 90);
+            assertTrue(reader.readLatest(frame));
+            assertEquals(frame.sequence, writer.getSequence());
+            assertEquals(frame.width, 32);
+            assertEquals(frame.height, 16);
+            assertEquals(frame.length, nv21.length);
+            assertEquals(frame.format, FrameRing.FORMAT_NV21);
+            assertEquals(frame.timestampUs, i * 1000L);
+            assertEquals(frame.rotation, 90);
+            assertEquals(frame.data, nv21);
+        }
+    }
+
+    // 按行跨度发布的帧读出后去掉行尾填充
+    @Test
+    public void paddedFrameIsRepacked() throws IOException {
+        FrameRingReader reader = new FrameRingReader(file);
+        byte[] packed = frame(30, 16, 0);
+        int stride = 32;
+        byte[] padded = new byte[stride * 16 * 3 / 2];
+        for (int row = 0; row < 16 * 3 / 2; row++) {
+            System.arraycopy(packed, row * 30, padded, row * stride, 30);
+        }
+        writer.publish(padded, padded.length, 30, 16, stride, stride, 0, 0);
+        Frame frame = new Frame();
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.length, packed.length);
+        assertEquals(frame.data, packed);
+    }
+
+    @Test
+    public void corruptedPayloadIsRejected() throws IOException {
+        FrameRingReader reader = new FrameRingReader(file);
+        byte[] nv21 = frame(32, 16, 0);
+        writer.publish(nv21, nv21.length, 32, 16);
+        corrupt(payloadOffset(writer.getSequence(), nv21.length) + 100);
+        assertFalse(reader.readLatest(new Frame()));
+
+        // 下一帧写入另一个槽位，不受影响
+        writer.publish(nv21, nv21.length, 32, 16);
+        Frame frame = new Frame();
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.data, nv21);
+    }
+
+    // 生产者正在改写槽位 (首序号已更新、尾序号还是旧值) 时读到的内容不能被接受
+    @Test
+    public void tornSlotIsRejected() throws IOException {
+        FrameRingReader reader = new FrameRingReader(file);
+        byte[] nv21 = frame(32, 16, 0);
+        writer.publish(nv21, nv21.length, 32, 16);
+        long seq = writer.getSequence();
+        int base = FrameRing.slotOffset(FrameRing.slotFor(seq, SLOT_COUNT), nv21.length);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(base + FrameRing.SLOT_SEQ_END);
+            raf.writeLong(seq - 1);
+        }
+        assertFalse(reader.readLatest(new Frame()));
+    }
+
+    @Test
+    public void versionMismatchIsRejected() throws IOException {
+        byte[] nv21 = frame(32, 16, 0);
+        writer.publish(nv21, nv21.length, 32, 16);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(FrameRing.OFF_VERSION);
+            raf.writeInt(FrameRing.VERSION - 1);
+        }
+        FrameRingReader reader = new FrameRingReader(file);
+        assertFalse(reader.readLatest(new Frame()));
+        assertEquals(reader.latestSequence(), 0L);
+    }
+
+    // 槽位容量扩大后读者重新映射，继续读到新帧
+    @Test
+    public void readerFollowsLayoutChange() throws IOException {
+        FrameRingReader reader = new FrameRingReader(file);
+        Frame frame = new Frame();
+        byte[] small = frame(16, 16, 0);
+        writer.publish(small, small.length, 16, 16);
+        assertTrue(reader.readLatest(frame));
+        byte[] large = frame(64, 32, 1);
+        writer.publish(large, large.length, 64, 32);
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.width, 64);
+        assertEquals(frame.data, large);
+    }
+
+    // 生产者空闲一段时间后，退避上限决定了恢复发布的第一帧多久被发现
+    @Test
+    public void firstFrameAfterIdleIsSeenPromptly() throws Exception {
+        FrameRingReader reader = new FrameRingReader(file);
+        byte[] nv21 = frame(32, 16, 0);
+        writer.publish(nv21, nv21.length, 32, 16);
+        long seq = writer.getSequence();
+        assertEquals(reader.awaitNewer(0, TimeUnit.SECONDS.toNanos(1)), seq);
+        // 一整秒没有新帧，退避加倍到空闲上限并保留到下一次调用
+        assertEquals(reader.awaitNewer(seq, TimeUnit.SECONDS.toNanos(1)), 0L);
+
+        long[] publishedAt = new long[1];
+        Thread producer = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(300));
+            publishedAt[0] = System.nanoTime();
+            try {
+                writer.publish(nv21, nv21.length, 32, 16);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        producer.start();
+        long next = reader.awaitNewer(seq, TimeUnit.SECONDS.toNanos(2));
+        long seenAt = System.nanoTime();
+        producer.join();
+        assertEquals(next, seq + 1);
+        long latencyMs = TimeUnit.NANOSECONDS.toMillis(seenAt - publishedAt[0]);
+        assertTrue(latencyMs < 150, "first frame after idle seen after " + latencyMs + " ms");
+    }
+
+    private static int payloadOffset(long seq, int slotCapacity) {
+        return FrameRing.slotOffset(FrameRing.slotFor(seq, SLOT_COUNT), slotCapacity) + FrameRing.SLOT_HEADER_SIZE;
+    }
+
+    private static byte[] frame(int width, int height, int index) {
+        byte[] nv21 = new byte[NV21Scaler.frameSize(width, height)];
+        int seed = width * 31 + height + index;
+        for (int i = 0; i < nv21.length; i++) {
+            seed = seed * 1103515245 + 12345;
+            nv21[i] = (byte) (seed >>> 16);
+        }
+        return nv21;
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        }
+    }
+}
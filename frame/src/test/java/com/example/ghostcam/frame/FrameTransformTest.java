@@ -0,0 +1,176 @@
+package com.example.ghostcam.frame;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * FrameTransform 的单遍裁剪、旋转、翻转加缩放与朴素参考实现逐字节比对。
+ *
+ * 参考实现先逐像素把裁剪区域顺时针旋转、水平翻转成一帧，再按各内核的定义直接缩放。
+ * 最近邻的翻转作用在目标坐标上 (旋转 -> 缩放 -> 翻转)，参考实现对它在缩放之后再翻转。
+ * 每个组合覆盖放大、缩小、整数倍缩小、两个方向一放一缩，以及 fill 开关，Java 与 native 路径各跑一遍。
+ */
+public class FrameTransformTest {
+
+    private static final int[][] SIZES = {
+        // srcWidth, srcHeight, dstWidth, dstHeight
+        {64, 48, 32, 24}, {64, 48, 16, 12}, {64, 48, 40, 30}, {64, 48, 96, 72},
+        {68, 44, 30, 50}, {68, 44, 100, 20}, {36, 20, 20, 36}, {2, 2, 6, 4},
+    };
+
+    @AfterMethod
+    public void restore() {
+        NativeFrameOps.setEnabled(true);
+    }
+
+    @DataProvider
+    public Object[][] transforms() {
+        ScaleMode[] modes = ScaleMode.values();
+        Object[][] cases = new Object[4 * 2 * modes.length][];
+        int n = 0;
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            for (boolean mirror : new boolean[] {false, true}) {
+                for (ScaleMode mode : modes) {
+                    cases[n++] = new Object[] {rotation, mirror, mode};
+                }
+            }
+        }
+        return cases;
+    }
+
+    @Test(dataProvider = "transforms")
+    public void matchesReference(int rotation, boolean mirror, ScaleMode mode) {
+        for (boolean nativeOps : new boolean[] {false, true}) {
+            NativeFrameOps.setEnabled(nativeOps);
+            for (boolean fill : new boolean[] {false, true}) {
+                FrameTransform transform = FrameTransform.of(rotation, mirror, fill);
+                for (int[] size : SIZES) {
+                    int srcWidth = size[0];
+                    int srcHeight = size[1];
+                    int dstWidth = size[2];
+                    int dstHeight = size[3];
+                    byte[] src = frame(srcWidth, srcHeight);
+                    NV21Scaler scaler = new NV21Scaler();
+                    scaler.setMode(mode);
+                    byte[] actual = new byte[NV21Scaler.frameSize(dstWidth, dstHeight)];
+                    scaler.scaleInto(src, srcWidth, srcHeight, actual, dstWidth, dstHeight, transform);
+                    byte[] expected = reference(src, srcWidth, srcHeight, dstWidth, dstHeight, transform, mode);
+                    assertEquals(actual, expected, transform + ", " + mode + ", native " + nativeOps + ", "
+                        + srcWidth + "x" + srcHeight + " -> " + dstWidth + "x" + dstHeight);
+                }
+            }
+        }
+    }
+
+    private static byte[] reference(byte[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                    FrameTransform transform, ScaleMode mode) {
+        int[] crop = transform.cropRect(srcWidth, srcHeight, dstWidth, dstHeight);
+        byte[] dst = new byte[NV21Scaler.frameSize(dstWidth, dstHeight)];
+        referencePlane(src, 0, srcWidth, crop[0], crop[1], crop[2], crop[3], 1,
+            dst, 0, dstWidth, dstHeight, transform, mode);
+        referencePlane(src, srcWidth * srcHeight, srcWidth, crop[0] / 2, crop[1] / 2, crop[2] / 2, crop[3] / 2, 2,
+            dst, dstWidth * dstHeight, dstWidth / 2, dstHeight / 2, transform, mode);
+        return dst;
+    }
+
+    // 单个平面：stride 为字节，其余坐标与尺寸单位为元素 (亮度 1 字节，色度 VU 2 字节)
+    private static void referencePlane(byte[] src, int srcOffset, int stride, int left, int top, int width, int height,
+                                       int channels, byte[] dst, int dstOffset, int dstWidth, int dstHeight,
+                                       FrameTransform transform, ScaleMode mode) {
+        boolean swap = transform.rotation == 90 || transform.rotation == 270;
+        int w = swap ? height : width;
+        int h = swap ? width : height;
+        // 最近邻的翻转留到缩放之后
+        boolean mirrorFirst = transform.mirror && mode != ScaleMode.NEAREST;
+        int[][] plane = new int[h][w * channels];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int mx = mirrorFirst ? w - 1 - x : x;
+                int sx;
+                int sy;
+                switch (transform.rotation) {
+                    case 90:
+                        sx = y;
+                        sy = height - 1 - mx;
+                        break;
+                    case 180:
+                        sx = width - 1 - mx;
+                        sy = height - 1 - y;
+                        break;
+                    case 270:
+                        sx = width - 1 - y;
+                        sy = mx;
+                        break;
+                    default:
+                        sx = mx;
+                        sy = y;
+                        break;
+                }
+                for (int c = 0; c < channels; c++) {
+                    plane[y][x * channels + c] = src[srcOffset + (top + sy) * stride + (left + sx) * channels + c] & 0xff;
+                }
+            }
+        }
+
+        int dstStride = dstWidth * channels;
+        for (int y = 0; y < dstHeight; y++) {
+            for (int x = 0; x < dstWidth; x++) {
+                int dx = transform.mirror && !mirrorFirst ? dstWidth - 1 - x : x;
+                for (int c = 0; c < channels; c++) {
+                    dst[dstOffset + y * dstStride + dx * channels + c] =
+                        (byte) sample(plane, w, h, channels, c, x, y, dstWidth, dstHeight, mode);
+                }
+            }
+        }
+    }
+
+    private static int sample(int[][] plane, int w, int h, int channels, int c, int x, int y,
+                              int dstWidth, int dstHeight, ScaleMode mode) {
+        if (mode == ScaleMode.NEAREST) {
+            return plane[(int) ((long) y * h / dstHeight)][(int) ((long) x * w / dstWidth) * channels + c];
+        }
+        if (mode == ScaleMode.BILINEAR || (dstWidth >= w && dstHeight >= h)) {
+            // 像素中心对齐，8 位权重
+            long px = position(x, w, dstWidth);
+            long py = position(y, h, dstHeight);
+            int x0 = (int) (px >> 16);
+            int y0 = (int) (py >> 16);
+            int x1 = Math.min(x0 + 1, w - 1);
+            int y1 = Math.min(y0 + 1, h - 1);
+            int wx = (int) (px >> 8) & 0xff;
+            int wy = (int) (py >> 8) & 0xff;
+            int t = plane[y0][x0 * channels + c] * (256 - wx) + plane[y0][x1 * channels + c] * wx;
+            int b = plane[y1][x0 * channels + c] * (256 - wx) + plane[y1][x1 * channels + c] * wx;
+            return (t * (256 - wy) + b * wy + 32768) >> 16;
+        }
+        // 区域平均：目标元素覆盖的源区间，至少一个元素
+        int fromX = (int) ((long) x * w / dstWidth);
+        int countX = Math.max(1, (int) ((long) (x + 1) * w / dstWidth) - fromX);
+        int fromY = (int) ((long) y * h / dstHeight);
+        int countY = Math.max(1, (int) ((long) (y + 1) * h / dstHeight) - fromY);
+        int sum = 0;
+        for (int j = fromY; j < fromY + countY; j++) {
+            for (int i = fromX; i < fromX + countX; i++) {
+                sum += plane[j][i * channels + c];
+            }
+        }
+        int n = countX * countY;
+        return (sum * ((65536 + n / 2) / n) + 32768) >> 16;
+    }
+
+    private static long position(int i, int srcSize, int dstSize) {
+        long pos = ((2L * i + 1) * srcSize << 16) / (2L * dstSize) - (1 << 15);
+        return Math.max(0, Math.min(pos, (long) (srcSize - 1) << 16));
+    }
+
+    private static byte[] frame(int width, int height) {
+        byte[] nv21 = new byte[NV21Scaler.frameSize(width, height)];
+        new Random(width * 31L + height).nextBytes(nv21);
+        return nv21;
+    }
+}
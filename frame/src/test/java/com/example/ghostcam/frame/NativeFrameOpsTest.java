@@ -0,0 +1,215 @@
+package com.example.ghostcam.frame;
+
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * libghostcam_frame 与 Java 参考实现逐字节比对。
+ *
+ * 需要主机上编译的库：./gradlew :frame:test -PnativeLibDir=$PWD/build/native，库不存在时跳过。
+ * 同一个 Java 入口先关闭 native 开关取得参考结果，再打开开关走 native 路径。
+ */
+public class NativeFrameOpsTest {
+
+    @BeforeClass
+    public void requireLibrary() {
+        if (!NativeFrameOps.isLoaded()) {
+            throw new SkipException(NativeFrameOps.getStatus());
+        }
+    }
+
+    @AfterMethod
+    public void restore() {
+        NativeFrameOps.setEnabled(true);
+    }
+
+    @DataProvider
+    public Object[][] frameSizes() {
+        return new Object[][] {
+            {2, 2}, {4, 2}, {6, 4}, {8, 8}, {14, 6}, {16, 16}, {18, 10}, {34, 18},
+            {35, 17}, {33, 16}, {36, 19}, {63, 31}, {1, 1}, {3, 5},
+            {640, 480}, {1080, 2400},
+        };
+    }
+
+    @DataProvider
+    public Object[][] scaleSizes() {
+        return new Object[][] {
+            {2, 2, 4, 4}, {4, 4, 2, 2}, {36, 18, 20, 12}, {36, 18, 50, 30}, {35, 17, 18, 9},
+            {18, 10, 35, 17}, {640, 480, 1, 1}, {640, 480, 638, 478}, {640, 480, 642, 482},
+            {1080, 2400, 720, 1280}, {1080, 2400, 1920, 1080}, {1280, 720, 1080, 2400},
+        };
+    }
+
+    @Test(dataProvider = "frameSizes")
+    public void rgbaToNv21MatchesJava(int width, int height) {
+        // 行尾留空，覆盖 rowStride 大于 width * 4 的情况
+        int rowStride = width * 4 + 12;
+        ByteBuffer rgba = ByteBuffer.allocateDirect(rowStride * height);
+        fill(rgba);
+        RgbaToNv21Converter converter = new RgbaToNv21Converter(1);
+        // 奇数高度时最后一行像素也会写一行色度
+        int size = width * height + width * ((height + 1) / 2);
+
+        byte[] expected = new byte[size];
+        NativeFrameOps.setEnabled(false);
+        converter.convert(rgba, rowStride, 4, width, height, expected);
+
+        byte[] actual = new byte[size];
+        NativeFrameOps.setEnabled(true);
+        converter.convert(rgba, rowStride, 4, width, height, actual);
+        converter.close();
+        assertEquals(actual, expected);
+    }
+
+    @Test(dataProvider = "frameSizes")
+    public void tileHashesMatchJava(int width, int height) {
+        int rowStride = width * 4 + 12;
+        ByteBuffer rgba = ByteBuffer.allocateDirect(rowStride * height);
+        fill(rgba);
+        rgba.order(ByteOrder.LITTLE_ENDIAN);
+        TileHashes tiles = new TileHashes(width, height);
+        long[] expected = new long[tiles.getTileCount()];
+        long[] actual = new long[expected.length];
+        TileHashes.hash(rgba, rowStride, width, height, 0, tiles.rows, expected);
+        NativeFrameOps.hashTiles(rgba, rowStride, width, height, TileHashes.TILE_WIDTH, TileHashes.TILE_HEIGHT,
+            0, tiles.rows, actual);
+        assertEquals(actual, expected);
+    }
+
+    @Test(dataProvider = "frameSizes")
+    public void nv21ToI420MatchesJava(int width, int height) {
+        byte[] nv21 = nv21(width, height);
+        byte[] expected = new byte[YuvConversions.i420Size(width, height)];
+        byte[] actual = new byte[expected.length];
+        NativeFrameOps.setEnabled(false);
+        YuvConversions.nv21ToI420(nv21, width, height, expected);
+        NativeFrameOps.setEnabled(true);
+        YuvConversions.nv21ToI420(nv21, width, height, actual);
+        assertEquals(actual, expected);
+    }
+
+    @Test(dataProvider = "frameSizes")
+    public void nv21ToYv12MatchesJava(int width, int height) {
+        byte[] nv21 = nv21(width, height);
+        byte[] expected = new byte[YuvConversions.yv12Size(width, height)];
+        byte[] actual = new byte[expected.length];
+        NativeFrameOps.setEnabled(false);
+        YuvConversions.nv21ToYv12(nv21, width, height, expected);
+        NativeFrameOps.setEnabled(true);
+        YuvConversions.nv21ToYv12(nv21, width, height, actual);
+        assertEquals(actual, expected);
+    }
+
+    @Test(dataProvider = "scaleSizes")
+    public void scaleNearestMatchesJava(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        compareScale(ScaleMode.NEAREST, srcWidth, srcHeight, dstWidth, dstHeight);
+    }
+
+    @Test(dataProvider = "scaleSizes")
+    public void scaleBilinearMatchesJava(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        compareScale(ScaleMode.BILINEAR, srcWidth, srcHeight, dstWidth, dstHeight);
+    }
+
+    // 数组长度不够时 native 入口必须抛异常而不是越界写
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rgbaToNv21RejectsShortDestination() {
+        ByteBuffer rgba = ByteBuffer.allocateDirect(64 * 4 * 32);
+        NativeFrameOps.rgbaToNv21(rgba, 64 * 4, 64, 32, new byte[64 * 32], 0, 0, 64, 32);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rgbaToNv21RejectsShortSource() {
+        ByteBuffer rgba = ByteBuffer.allocateDirect(64 * 4 * 31);
+        NativeFrameOps.rgbaToNv21(rgba, 64 * 4, 64, 32, new byte[64 * 32 * 3 / 2], 0, 0, 64, 32);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void hashTilesRejectsShortOutput() {
+        ByteBuffer rgba = ByteBuffer.allocateDirect(128 * 4 * 32);
+        NativeFrameOps.hashTiles(rgba, 128 * 4, 128, 32, TileHashes.TILE_WIDTH, TileHashes.TILE_HEIGHT,
+            0, 2, new long[3]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void nv21ToI420RejectsShortDestination() {
+        NativeFrameOps.nv21ToI420(new byte[64 * 48 * 3 / 2], 64, 48, new byte[64 * 48]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void nv21ToYv12RejectsShortDestination() {
+        NativeFrameOps.nv21ToYv12(new byte[64 * 48 * 3 / 2], 64, 48, new byte[64 * 48 * 3 / 2 - 1],
+            YuvConversions.yv12YStride(64), YuvConversions.yv12CStride(64));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void scaleNearestRejectsShortDestination() {
+        NativeFrameOps.scaleNearest(new byte[64 * 48], 0, new byte[32 * 24 - 1], 0, 32, 32, 1,
+            new int[32], new int[24]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void scaleNearestRejectsTableOutsideSource() {
+        int[] rows = new int[24];
+        rows[23] = 64 * 48;
+        NativeFrameOps.scaleNearest(new byte[64 * 48], 0, new byte[32 * 24], 0, 32, 32, 1, new int[32], rows);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void scaleBilinearRejectsShortTable() {
+        NativeFrameOps.scaleBilinear(new byte[64 * 48], 0, new byte[32 * 24], 0, 32, 32, 1,
+            new int[32], new int[31], new int[32], new int[24], new int[24], new int[24]);
+    }
+
+    // 按 NV21 的两个平面分别缩放：Y 为单通道，交错的 VU 为双通道
+    private static void compareScale(ScaleMode mode, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        byte[] nv21 = nv21(srcWidth, srcHeight);
+        PlaneScaler luma = mode.create(srcWidth, srcHeight, srcWidth, dstWidth, dstHeight, dstWidth, 1);
+        int size = dstWidth * dstHeight;
+        PlaneScaler chroma = null;
+        if (srcWidth >= 2 && srcHeight >= 2 && dstWidth >= 2 && dstHeight >= 2) {
+            chroma = mode.create(srcWidth / 2, srcHeight / 2, srcWidth, dstWidth / 2, dstHeight / 2, dstWidth, 2);
+            size += dstWidth * (dstHeight / 2);
+        }
+
+        byte[] expected = new byte[size];
+        byte[] actual = new byte[size];
+        NativeFrameOps.setEnabled(false);
+        luma.scale(nv21, 0, expected, 0);
+        if (chroma != null) {
+            chroma.scale(nv21, srcWidth * srcHeight, expected, dstWidth * dstHeight);
+        }
+        NativeFrameOps.setEnabled(true);
+        luma.scale(nv21, 0, actual, 0);
+        if (chroma != null) {
+            chroma.scale(nv21, srcWidth * srcHeight, actual, dstWidth * dstHeight);
+        }
+        assertEquals(actual, expected);
+    }
+
+    private static byte[] nv21(int width, int height) {
+        byte[] nv21 = new byte[width * height + width * ((height + 1) / 2)];
+        int seed = width * 31 + height;
+        for (int i = 0; i < nv21.length; i++) {
+            seed = seed * 1103515245 + 12345;
+            nv21[i] = (byte) (seed >>> 16);
+        }
+        return nv21;
+    }
+
+    private static void fill(ByteBuffer buffer) {
+        int seed = buffer.capacity();
+        for (int i = 0; i < buffer.capacity(); i++) {
+            seed = seed * 1103515245 + 12345;
+            buffer.put(i, (byte) (seed >>> 16));
+        }
+    }
+}
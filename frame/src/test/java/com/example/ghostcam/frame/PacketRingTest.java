@@ -0,0 +1,187 @@
+package com.example.ghostcam.frame;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * 编码传输链路：DeflateVideoCodec 编码 -> PacketRingWriter -> 临时文件 -> PacketRingReader / EncodedFrameReader -> 解码。
+ */
+public class PacketRingTest {
+
+    private static final int SLOT_COUNT = 4;
+
+    private File file;
+    private PacketRingWriter writer;
+    private DeflateVideoCodec.Encoder encoder;
+
+    @BeforeMethod
+    public void createRing() throws IOException {
+        file = File.createTempFile("ghostcam_stream", ".dat");
+        file.delete();
+        writer = new PacketRingWriter(file, SLOT_COUNT);
+    }
+
+    @AfterMethod
+    public void deleteRing() throws IOException {
+        if (encoder != null) {
+            encoder.close();
+            encoder = null;
+        }
+        writer.close();
+        file.delete();
+    }
+
+    @Test
+    public void framesRoundTrip() throws IOException {
+        encoder = new DeflateVideoCodec.Encoder(4);
+        EncodedFrameReader reader = new EncodedFrameReader(file, EncodedFrameReader.SOFTWARE);
+        Frame frame = new Frame();
+        for (int i = 0; i < 10; i++) {
+            byte[] nv21 = frame(32, 16, i);
+            encoder.encode(nv21, nv21.length, 32, 16, i * 1000L, writer);
+            assertTrue(reader.readLatest(frame), "frame " + i);
+            assertEquals(frame.width, 32);
+            assertEquals(frame.height, 16);
+            assertEquals(frame.length, nv21.length);
+            assertEquals(frame.data, nv21, "frame " + i);
+        }
+        reader.close();
+    }
+
+    // 读者落后超过一圈后，覆盖之后剩下的非关键帧都要跳过，直到下一个关键帧
+    @Test
+    public void skipsDeltaFramesUntilKeyFrameAfterOverwrite() throws IOException {
+        encoder = new DeflateVideoCodec.Encoder(6);
+        EncodedFrameReader reader = new EncodedFrameReader(file, EncodedFrameReader.SOFTWARE);
+        Frame frame = new Frame();
+        byte[] nv21 = frame(32, 16, 0);
+        encoder.encode(nv21, nv21.length, 32, 16, 0, writer);
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.data, nv21);
+
+        // 序号 2..6 全是非关键帧，槽位只有 4 个，序号 2 已被覆盖
+        for (int i = 1; i <= 5; i++) {
+            nv21 = frame(32, 16, i);
+            encoder.encode(nv21, nv21.length, 32, 16, i * 1000L, writer);
+        }
+        assertFalse(reader.readLatest(frame));
+        assertEquals(frame.sequence, 1L);
+
+        // 第 7 个包是关键帧
+        nv21 = frame(32, 16, 6);
+        encoder.encode(nv21, nv21.length, 32, 16, 6000, writer);
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.sequence, 7L);
+        assertEquals(frame.data, nv21);
+
+        nv21 = frame(32, 16, 7);
+        encoder.encode(nv21, nv21.length, 32, 16, 7000, writer);
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.data, nv21);
+        reader.close();
+    }
+
+    @Test
+    public void readerResyncsOnKeyFrameAfterMissedSlot() throws IOException {
+        PacketRingReader reader = new PacketRingReader(file);
+        Packet packet = new Packet();
+        writer.configure(PacketRing.CODEC_DEFLATE, 32, 16, new byte[0], 0);
+        writer.publish(new byte[] {1}, 0, 1, 0, PacketRing.FLAG_KEY_FRAME);
+        StreamConfig config = new StreamConfig();
+        assertTrue(reader.readConfig(config));
+        assertTrue(reader.next(packet));
+        assertEquals(packet.sequence, 1L);
+
+        for (int i = 2; i <= 2 + SLOT_COUNT; i++) {
+            writer.publish(new byte[] {(byte) i}, 0, 1, 0, 0);
+        }
+        writer.publish(new byte[] {9}, 0, 1, 0, PacketRing.FLAG_KEY_FRAME);
+        assertTrue(reader.next(packet));
+        assertTrue(packet.isKeyFrame());
+        assertEquals(packet.sequence, (long) SLOT_COUNT + 3);
+        assertEquals(packet.data[0], (byte) 9);
+        assertFalse(reader.next(packet));
+    }
+
+    // 包内容被破坏 (撕裂或文件损坏) 时校验失败，按丢包处理，后面的非关键帧也不交给解码器
+    @Test
+    public void corruptedPacketIsDropped() throws IOException {
+        PacketRingReader reader = new PacketRingReader(file);
+        Packet packet = new Packet();
+        writer.configure(PacketRing.CODEC_DEFLATE, 32, 16, new byte[0], 0);
+        writer.publish(new byte[] {1, 2, 3}, 0, 3, 0, PacketRing.FLAG_KEY_FRAME);
+        writer.publish(new byte[] {4, 5, 6}, 0, 3, 0, 0);
+        StreamConfig config = new StreamConfig();
+        assertTrue(reader.readConfig(config));
+
+        corrupt(PacketRing.slotOffset(PacketRing.slotFor(1, SLOT_COUNT), PacketRing.DEFAULT_SLOT_CAPACITY)
+            + PacketRing.SLOT_HEADER_SIZE + 1);
+        assertFalse(reader.next(packet));
+
+        writer.publish(new byte[] {7, 8, 9}, 0, 3, 0, PacketRing.FLAG_KEY_FRAME);
+        assertTrue(reader.next(packet));
+        assertEquals(packet.sequence, 3L);
+    }
+
+    @Test
+    public void corruptedConfigIsRejected() throws IOException {
+        PacketRingReader reader = new PacketRingReader(file);
+        writer.configure(PacketRing.CODEC_AVC, 32, 16, new byte[] {0, 0, 0, 1, 0x67}, 5);
+        corrupt(PacketRing.OFF_CONFIG_DATA + 4);
+        assertFalse(reader.readConfig(new StreamConfig()));
+    }
+
+    // 采集尺寸变化后写入新配置，读者重建解码器并从新配置的关键帧开始
+    @Test
+    public void configChangeRebuildsDecoder() throws IOException {
+        encoder = new DeflateVideoCodec.Encoder(30);
+        EncodedFrameReader reader = new EncodedFrameReader(file, EncodedFrameReader.SOFTWARE);
+        Frame frame = new Frame();
+        byte[] nv21 = frame(32, 16, 0);
+        encoder.encode(nv21, nv21.length, 32, 16, 0, writer);
+        assertTrue(reader.readLatest(frame));
+        assertEquals(frame.width, 32);
+
+        for (int i = 1; i < 3; i++) {
+            nv21 = frame(16, 16, i);
+            encoder.encode(nv21, nv21.length, 16, 16, i * 1000L, writer);
+            assertTrue(reader.readLatest(frame));
+            assertEquals(frame.width, 16);
+            assertEquals(frame.height, 16);
+            assertEquals(frame.data, nv21);
+        }
+        reader.close();
+    }
+
+    // 相邻帧大部分相同，只有一小段随帧变化，接近静止屏幕的情况
+    private static byte[] frame(int width, int height, int index) {
+        byte[] nv21 = new byte[NV21Scaler.frameSize(width, height)];
+        int seed = width * 31 + height;
+        for (int i = 0; i < nv21.length; i++) {
+            seed = seed * 1103515245 + 12345;
+            nv21[i] = (byte) (seed >>> 16);
+        }
+        for (int i = 0; i < width; i++) {
+            nv21[(index * 7 + i) % nv21.length] = (byte) (index * 13 + i);
+        }
+        return nv21;
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xff);
+        }
+    }
+}
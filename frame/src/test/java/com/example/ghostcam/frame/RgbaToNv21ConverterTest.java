@@ -0,0 +1,98 @@
+package com.example.ghostcam.frame;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * convertChanged 分块重新转换与整帧 convert 逐字节比对。
+ *
+ * 模拟采集管线：两个输出缓冲区轮换，各自记录自己的块哈希，previous 记录上一帧。
+ * 每帧只改动几个随机矩形 (包括右侧和底部不满一块的部分)，转换后与整帧转换的结果比较。
+ * Java 路径和 native 路径 (库存在时) 都跑一遍。
+ */
+public class RgbaToNv21ConverterTest {
+
+    private static final int FRAMES = 12;
+
+    @AfterMethod
+    public void restore() {
+        NativeFrameOps.setEnabled(true);
+    }
+
+    @DataProvider
+    public Object[][] frameSizes() {
+        Object[][] sizes = {
+            {2, 2}, {64, 16}, {128, 48}, {130, 50}, {63, 31}, {35, 17}, {65, 17}, {1, 1}, {3, 5}, {200, 75},
+        };
+        Object[][] cases = new Object[sizes.length * 2][];
+        for (int i = 0; i < sizes.length; i++) {
+            cases[i * 2] = new Object[] {sizes[i][0], sizes[i][1], false};
+            cases[i * 2 + 1] = new Object[] {sizes[i][0], sizes[i][1], true};
+        }
+        return cases;
+    }
+
+    @Test(dataProvider = "frameSizes")
+    public void changedTilesMatchFullConversion(int width, int height, boolean nativeOps) {
+        NativeFrameOps.setEnabled(nativeOps);
+        int rowStride = width * 4 + 12;
+        ByteBuffer rgba = ByteBuffer.allocateDirect(rowStride * height);
+        Random random = new Random(width * 31L + height);
+        for (int i = 0; i < rgba.capacity(); i++) {
+            rgba.put(i, (byte) random.nextInt());
+        }
+        int size = width * height + width * ((height + 1) / 2);
+        byte[][] buffers = {new byte[size], new byte[size]};
+        TileHashes[] targets = {new TileHashes(width, height), new TileHashes(width, height)};
+        TileHashes previous = new TileHashes(width, height);
+        byte[] expected = new byte[size];
+        RgbaToNv21Converter converter = new RgbaToNv21Converter(3);
+        try {
+            for (int frame = 0; frame < FRAMES; frame++) {
+                if (frame > 0) {
+                    touch(rgba, rowStride, width, height, random);
+                }
+                int index = frame % buffers.length;
+                int changed = converter.convertChanged(rgba, rowStride, 4, width, height,
+                        buffers[index], previous, targets[index]);
+                assertTrue(changed > 0, "frame " + frame);
+                converter.convert(rgba, rowStride, 4, width, height, expected);
+                assertEquals(buffers[index], expected, "frame " + frame);
+            }
+
+            // 内容不变时不报告变化，两个缓冲区都补齐到当前帧
+            for (int i = 0; i < buffers.length; i++) {
+                int index = (FRAMES + i) % buffers.length;
+                int changed = converter.convertChanged(rgba, rowStride, 4, width, height,
+                        buffers[index], previous, targets[index]);
+                assertEquals(changed, 0);
+                assertEquals(buffers[index], expected);
+            }
+        } finally {
+            converter.close();
+        }
+    }
+
+    // 改写一到三个随机矩形，其中一个贴着右下角，落在不满一块的边缘上
+    private static void touch(ByteBuffer rgba, int rowStride, int width, int height, Random random) {
+        int rects = 1 + random.nextInt(3);
+        for (int r = 0; r < rects; r++) {
+            int w = 1 + random.nextInt(Math.min(width, 20));
+            int h = 1 + random.nextInt(Math.min(height, 20));
+            int x = r == 0 ? width - w : random.nextInt(width - w + 1);
+            int y = r == 0 ? height - h : random.nextInt(height - h + 1);
+            for (int j = y; j < y + h; j++) {
+                for (int i = x; i < x + w; i++) {
+                    rgba.putInt(j * rowStride + i * 4, random.nextInt());
+                }
+            }
+        }
+    }
+}